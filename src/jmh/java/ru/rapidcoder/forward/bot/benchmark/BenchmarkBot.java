@@ -0,0 +1,45 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import ru.rapidcoder.forward.bot.Bot;
+
+import java.util.List;
+
+/**
+ * Бот для бенчмарков: вместо вызовов Bot API запоминает последний отрисованный текст и клавиатуру
+ */
+public class BenchmarkBot extends Bot {
+
+    public static final long ADMIN_ID = 100L;
+    private String text;
+    private InlineKeyboardMarkup keyboard;
+
+    public BenchmarkBot(String storageFile) {
+        super("benchmarkBot", "benchmarkToken", storageFile, List.of(ADMIN_ID));
+    }
+
+    @Override
+    public void sendMessage(Long chatId, String text, InlineKeyboardMarkup keyboard) {
+        this.text = text;
+        this.keyboard = keyboard;
+    }
+
+    @Override
+    public void updateMessage(Long chatId, Integer messageId, String text, InlineKeyboardMarkup keyboard) {
+        this.text = text;
+        this.keyboard = keyboard;
+    }
+
+    @Override
+    public void showNotification(String callbackQueryId, String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public InlineKeyboardMarkup getKeyboard() {
+        return keyboard;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тестовые данные для бенчмарков
+ */
+public final class BenchmarkStorage {
+
+    private BenchmarkStorage() {
+    }
+
+    public static Path createFile() {
+        try {
+            Path file = Files.createTempFile("benchmark", ".db");
+            Files.delete(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static List<ChatMembership> createChats(int count) {
+        List<ChatMembership> chats = new ArrayList<>(count);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            ChatMembership chat = new ChatMembership();
+            chat.setChatId(-1001000000000L - i);
+            chat.setUserId(BenchmarkBot.ADMIN_ID);
+            chat.setUserName("admin");
+            chat.setChatTitle("Канал для проверки производительности №" + i);
+            chat.setChatType(i % 5 == 0 ? "supergroup" : "channel");
+            chat.setBotNewStatus("administrator");
+            chat.setBotOldStatus("left");
+            chat.setAddedDate(now);
+            chat.setUpdatedDate(now);
+            chats.add(chat);
+        }
+        return chats;
+    }
+
+    public static List<HistorySending> createHistory(int count) {
+        List<HistorySending> history = new ArrayList<>(count);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            HistorySending send = new HistorySending();
+            send.setChatId(-1001000000000L - i);
+            send.setUserId(BenchmarkBot.ADMIN_ID);
+            send.setUserName("admin");
+            send.setChatTitle("Канал для проверки производительности №" + i);
+            send.setMessageId(i + 1);
+            send.setText("Текст отправленного в канал сообщения длиной до 50");
+            send.setAddedDate(now);
+            history.add(send);
+        }
+        return history;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.rapidcoder.forward.bot.handler.CallbackRouter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск обработчика в таблице маршрутов callback_data в зависимости от количества маршрутов.
+ * Время поиска не должно расти с {@code routes}; запускать с {@code -prof gc}, чтобы убедиться в отсутствии аллокаций.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackRouterBenchmark {
+
+    @Param({"20", "200", "2000"})
+    private int routes;
+    @Param({"menu_help", "chat_toggle_3", "grant_access_active_1234567890", "unknown_callback"})
+    private String callbackData;
+    private CallbackRouter router;
+    private CallbackRouter.Callback callback;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        router = new CallbackRouter().route("menu_help", c -> this.blackhole.consume(c))
+                .routeNumeric("chat_toggle_", 10, (c, argument) -> this.blackhole.consume(argument))
+                .routeNumeric("grant_access_active_", 10, (c, argument) -> this.blackhole.consume(argument));
+        for (int i = router.size(); i < routes; i++) {
+            if (i % 2 == 0) {
+                router.route("menu_generated_" + i, c -> this.blackhole.consume(c));
+            } else {
+                router.routeNumeric("generated_" + i + "_", 10, (c, argument) -> this.blackhole.consume(argument));
+            }
+        }
+        callback = new CallbackRouter.Callback("1", callbackData, 1L, 1, null);
+    }
+
+    @Benchmark
+    public CallbackRouter.Result dispatch() {
+        return router.dispatch(callback);
+    }
+}
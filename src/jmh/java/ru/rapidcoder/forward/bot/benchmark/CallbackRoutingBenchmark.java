@@ -0,0 +1,72 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.handler.ChannelManager;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор callback_data и вызов обработчика меню
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackRoutingBenchmark {
+
+    @Param({"menu_help", "back_to_main", "chat_toggle_3", "settings_save", "unknown_callback"})
+    private String callbackData;
+    private Path storageFile;
+    private BenchmarkBot bot;
+    private Update update;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storageFile = BenchmarkStorage.createFile();
+        bot = new BenchmarkBot(storageFile.toString());
+        ChannelManager channelManager = new ChannelManager(storageFile.toString());
+        for (ChatMembership chat : BenchmarkStorage.createChats(10)) {
+            channelManager.save(chat.getChatId(), chat.getUserId(), chat.getUserName(), chat.getChatTitle(), chat.getChatType(), chat.getBotNewStatus(), chat.getBotOldStatus());
+        }
+        update = createUpdate(callbackData);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkStorage.deleteFile(storageFile);
+    }
+
+    @Benchmark
+    public String handleCallback() {
+        bot.handleCallback(update);
+        return bot.getText();
+    }
+
+    private Update createUpdate(String data) {
+        User user = new User();
+        user.setId(BenchmarkBot.ADMIN_ID);
+        user.setUserName("admin");
+        Chat chat = new Chat();
+        chat.setId(BenchmarkBot.ADMIN_ID);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setMessageId(1);
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setId("1");
+        callbackQuery.setFrom(user);
+        callbackQuery.setMessage(message);
+        callbackQuery.setData(data);
+        Update result = new Update();
+        result.setCallbackQuery(callbackQuery);
+        return result;
+    }
+}
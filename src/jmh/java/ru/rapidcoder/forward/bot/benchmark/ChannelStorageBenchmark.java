@@ -0,0 +1,88 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+import ru.rapidcoder.forward.bot.handler.ChannelStorage;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение и запись списка каналов и истории отправки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelStorageBenchmark {
+
+    @Param({"10", "200"})
+    private int chats;
+    @Param({"1000", "50000"})
+    private int history;
+    private Path storageFile;
+    private ChannelStorage storage;
+    private HistorySending send;
+    private ChatMembership chat;
+    private boolean administrator;
+    private Long oldestCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storageFile = BenchmarkStorage.createFile();
+        storage = ChannelStorage.getInstance(storageFile.toString());
+        for (ChatMembership chat : BenchmarkStorage.createChats(chats)) {
+            storage.saveOrUpdateChat(chat);
+        }
+        List<HistorySending> sendings = BenchmarkStorage.createHistory(history);
+        for (HistorySending sending : sendings) {
+            storage.saveHistorySendingToChatAsync(sending);
+        }
+        storage.saveHistorySendingToChat(sendings.get(0));
+        send = sendings.get(0);
+        chat = BenchmarkStorage.createChats(1)
+                .get(0);
+        oldestCursor = 1L;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkStorage.deleteFile(storageFile);
+    }
+
+    @Benchmark
+    public List<ChatMembership> getAllChats() {
+        return storage.getAllChats();
+    }
+
+    @Benchmark
+    public List<HistorySending> getHistorySendingToChat() {
+        return storage.getHistorySendingToChat();
+    }
+
+    @Benchmark
+    public HistoryPage<HistorySending> getHistorySendingLastPage() {
+        return storage.getHistorySendingPage(oldestCursor, false);
+    }
+
+    @Benchmark
+    public void saveHistorySendingToChat() {
+        storage.saveHistorySendingToChat(send);
+    }
+
+    @Benchmark
+    public void saveOrUpdateChat() {
+        storage.saveOrUpdateChat(chat);
+    }
+
+    @Benchmark
+    public void updateBotStatus() {
+        administrator = !administrator;
+        storage.updateBotStatus(chat.getChatId(), administrator ? "administrator" : "member", administrator ? "member" : "administrator");
+    }
+}
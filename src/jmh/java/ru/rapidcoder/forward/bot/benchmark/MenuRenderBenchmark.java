@@ -0,0 +1,57 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Формирование текста и клавиатуры меню рассылки и истории отправки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MenuRenderBenchmark {
+
+    private static final Long CHAT_ID = BenchmarkBot.ADMIN_ID;
+    private static final Integer MESSAGE_ID = 1;
+    @Param({"10", "100", "1000", "5000"})
+    private int chats;
+    private Path storageFile;
+    private BenchmarkBot bot;
+    private List<ChatMembership> chatList;
+    private HistoryPage<HistorySending> history;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storageFile = BenchmarkStorage.createFile();
+        bot = new BenchmarkBot(storageFile.toString());
+        chatList = BenchmarkStorage.createChats(chats);
+        history = new HistoryPage<>(BenchmarkStorage.createHistory(chats), 1L, 2L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkStorage.deleteFile(storageFile);
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup showSendMenu() {
+        bot.showSendMenu(CHAT_ID, MESSAGE_ID, chatList);
+        return bot.getKeyboard();
+    }
+
+    @Benchmark
+    public String showSendingHistoryMenu() {
+        bot.showSendingHistoryMenu(CHAT_ID, MESSAGE_ID, history);
+        return bot.getText();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.rapidcoder.forward.bot.handler.PermissionManager;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка доступа пользователя, выполняемая на каждое входящее обновление
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionBenchmark {
+
+    @Param({"10", "1000"})
+    private int users;
+    private Path storageFile;
+    private PermissionManager permissionManager;
+    private Long memberId;
+    private Long unknownId;
+    private Long adminId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storageFile = BenchmarkStorage.createFile();
+        permissionManager = new PermissionManager(storageFile.toString(), List.of(BenchmarkBot.ADMIN_ID, 200L, 300L));
+        for (long userId = 1000; userId < 1000 + users; userId++) {
+            permissionManager.saveUser(userId, "user" + userId);
+        }
+        memberId = 1000L + users / 2;
+        unknownId = 1L;
+        adminId = BenchmarkBot.ADMIN_ID;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkStorage.deleteFile(storageFile);
+    }
+
+    @Benchmark
+    public boolean hasAccessMember() {
+        return permissionManager.hasAccess(memberId);
+    }
+
+    @Benchmark
+    public boolean hasAccessUnknown() {
+        return permissionManager.hasAccess(unknownId);
+    }
+
+    @Benchmark
+    public boolean hasAccessAdmin() {
+        return permissionManager.hasAccess(adminId);
+    }
+}
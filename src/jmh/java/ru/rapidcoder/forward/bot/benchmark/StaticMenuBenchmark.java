@@ -0,0 +1,53 @@
+package ru.rapidcoder.forward.bot.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Показ статических меню. Выделение памяти на вызов: gradle jmh -PjmhArgs="StaticMenuBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticMenuBenchmark {
+
+    private static final Long CHAT_ID = BenchmarkBot.ADMIN_ID;
+    private static final Integer MESSAGE_ID = 1;
+    private Path storageFile;
+    private BenchmarkBot bot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storageFile = BenchmarkStorage.createFile();
+        bot = new BenchmarkBot(storageFile.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkStorage.deleteFile(storageFile);
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup showMainMenu() {
+        bot.showMainMenu(CHAT_ID, MESSAGE_ID, true);
+        return bot.getKeyboard();
+    }
+
+    @Benchmark
+    public String showHelpMenu() {
+        bot.showHelpMenu(CHAT_ID, MESSAGE_ID);
+        return bot.getText();
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup showSettingsMenu() {
+        bot.showSettingsMenu(CHAT_ID, MESSAGE_ID);
+        return bot.getKeyboard();
+    }
+}
@@ -5,35 +5,67 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.CopyMessage;
+import org.telegram.telegrambots.meta.api.methods.ForwardMessage;
 import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 import ru.rapidcoder.forward.bot.component.KeyboardButton;
+import ru.rapidcoder.forward.bot.component.MenuCatalog;
 import ru.rapidcoder.forward.bot.dto.*;
+import ru.rapidcoder.forward.bot.handler.ApiExecutor;
 import ru.rapidcoder.forward.bot.handler.MessageHandler;
+import ru.rapidcoder.forward.bot.handler.RateLimiter;
+import ru.rapidcoder.forward.bot.handler.RenderCache;
+import ru.rapidcoder.forward.bot.handler.SessionStore;
+import ru.rapidcoder.forward.bot.handler.UpdateDispatcher;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
 
+import java.io.Serializable;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 public class Bot extends TelegramLongPollingBot {
 
     public static final String BACK_TO_MAIN_CALLBACK_DATA = "back_to_main";
+    public static final String CHATS_HISTORY_OLDER_CALLBACK_DATA = "menu_chats_history_older_";
+    public static final String CHATS_HISTORY_NEWER_CALLBACK_DATA = "menu_chats_history_newer_";
+    public static final String SENDING_HISTORY_OLDER_CALLBACK_DATA = "menu_sending_history_older_";
+    public static final String SENDING_HISTORY_NEWER_CALLBACK_DATA = "menu_sending_history_newer_";
     private static final Logger logger = LoggerFactory.getLogger(Bot.class);
+    private static final ThreadLocal<RateLimiter.Mode> CALL_MODE = ThreadLocal.withInitial(() -> RateLimiter.Mode.WAIT);
     private final String botName;
     private final MessageHandler messageHandler;
-    private final Map<Long, List<Message>> messagesForSend = new ConcurrentHashMap<>();
-    private final Map<Long, Set<Integer>> selectedChats = new ConcurrentHashMap<>();
+    private final UpdateDispatcher updateDispatcher;
+    private final SessionStore sessions;
+    private final RenderCache renderCache;
+    private final ApiExecutor apiExecutor;
+    // Единые лимиты Bot API: через них проходят и меню, и рассылки
+    private final RateLimiter rateLimiter;
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    // MessageHandler получает бот после всех его полей и при создании вызывает только final-методы бота
+    @SuppressWarnings("this-escape")
     public Bot(String botName, String tokenId, String storageFile, List<Long> admins) {
         super(tokenId);
         this.botName = botName;
+        updateDispatcher = new UpdateDispatcher(UpdateDispatcher.DEFAULT_MAX_IN_FLIGHT);
+        sessions = new SessionStore();
+        renderCache = new RenderCache();
+        apiExecutor = new ApiExecutor(ApiExecutor.DEFAULT_MAX_IN_FLIGHT, ApiExecutor.DEFAULT_TIMEOUT);
+        rateLimiter = new RateLimiter();
 
         messageHandler = new MessageHandler(this, storageFile, admins);
     }
@@ -43,8 +75,38 @@ public class Bot extends TelegramLongPollingBot {
         return botName;
     }
 
+    /**
+     * Передать обновления в диспетчер: чаты обрабатываются параллельно, обновления одного чата — по порядку
+     *
+     * @param updates обновления из long polling или webhook
+     */
+    @Override
+    public void onUpdatesReceived(List<Update> updates) {
+        updates.forEach(update -> updateDispatcher.dispatch(update, this::onUpdateReceived));
+    }
+
+    /**
+     * Выполнить задачу в очереди обновлений чата: после уже принятых обновлений чата и до следующих
+     *
+     * @param chatId идентификатор чата
+     * @param task   задача
+     */
+    public final void submitToChat(Long chatId, Runnable task) {
+        updateDispatcher.submit(chatId, task);
+    }
+
+    @Override
+    public void onClosing() {
+        updateDispatcher.shutdown();
+        messageHandler.shutdown();
+        apiExecutor.shutdown();
+        super.onClosing();
+    }
+
     @Override
     public void onUpdateReceived(Update update) {
+        long start = System.nanoTime();
+        String type = getUpdateType(update);
         try {
             if (update.hasMessage()) {
                 Message message = update.getMessage();
@@ -64,7 +126,111 @@ public class Bot extends TelegramLongPollingBot {
                 handleChatMember(update);
             }
         } catch (Exception e) {
+            Metrics.incUpdateErrors(type);
             logger.error(e.getMessage(), e);
+        } finally {
+            Metrics.observeUpdate(type, start);
+        }
+    }
+
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) throws TelegramApiException {
+        rateLimiter.acquire(getTargetChat(method), null, CALL_MODE.get());
+        return Metrics.apiCall(method.getMethod(), () -> super.execute(method));
+    }
+
+    /**
+     * Вызов Bot API с соблюдением лимитов {@link RateLimiter}
+     *
+     * @param method метод Bot API
+     * @param mode   ждать свободного слота или завершиться ошибкой без ожидания
+     * @return результат вызова
+     * @throws TelegramApiException ошибка вызова или {@link RateLimiter.LimitExceededException}
+     */
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method, RateLimiter.Mode mode) throws TelegramApiException {
+        return withMode(mode, () -> execute(method));
+    }
+
+    @Override
+    public List<Message> execute(SendMediaGroup sendMediaGroup) throws TelegramApiException {
+        rateLimiter.acquire(parseChatId(sendMediaGroup.getChatId()), null, CALL_MODE.get());
+        return Metrics.apiCall(SendMediaGroup.PATH, () -> super.execute(sendMediaGroup));
+    }
+
+    /**
+     * Асинхронный вызов Bot API через {@link ApiExecutor}: с ограничением количества одновременных вызовов и таймаутом
+     * вместо пула потоков библиотеки
+     *
+     * @param method метод Bot API
+     * @return результат вызова
+     */
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> executeAsync(Method method) {
+        return executeAsync(method, RateLimiter.Mode.WAIT);
+    }
+
+    /**
+     * Асинхронный вызов Bot API с выбранным поведением при исчерпанном лимите
+     *
+     * @param method метод Bot API
+     * @param mode   поведение при занятом слоте отправки
+     * @return результат вызова
+     */
+    public <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> executeAsync(Method method, RateLimiter.Mode mode) {
+        return apiExecutor.submit(() -> rateLimiter.acquire(getTargetChat(method), null, mode), () -> withMode(RateLimiter.Mode.RESERVED, () -> execute(method)));
+    }
+
+    @Override
+    public CompletableFuture<List<Message>> executeAsync(SendMediaGroup sendMediaGroup) {
+        return executeAsync(sendMediaGroup, RateLimiter.Mode.WAIT);
+    }
+
+    public CompletableFuture<List<Message>> executeAsync(SendMediaGroup sendMediaGroup, RateLimiter.Mode mode) {
+        return apiExecutor.submit(() -> rateLimiter.acquire(parseChatId(sendMediaGroup.getChatId()), null, mode), () -> withMode(RateLimiter.Mode.RESERVED, () -> execute(sendMediaGroup)));
+    }
+
+    @Override
+    public CompletableFuture<Message> executeAsync(SendDocument sendDocument) {
+        // execute(SendDocument) в библиотеке final, поэтому лимит и метрики вызова соблюдаются здесь
+        return apiExecutor.submit(() -> rateLimiter.acquire(parseChatId(sendDocument.getChatId()), null, RateLimiter.Mode.WAIT), () -> Metrics.apiCall(SendDocument.PATH, () -> execute(sendDocument)));
+    }
+
+    // Режим передается в execute через поток вызова, поэтому переопределения execute (и их заглушки) остаются общими
+    private static <T> T withMode(RateLimiter.Mode mode, Metrics.ApiCall<T> call) throws TelegramApiException {
+        CALL_MODE.set(mode);
+        try {
+            return call.execute();
+        } finally {
+            CALL_MODE.remove();
+        }
+    }
+
+    public final RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    // Чат, к лимитам которого относится вызов; вызовы без чата (например, answerCallbackQuery) не ограничиваются
+    private static Long getTargetChat(BotApiMethod<?> method) {
+        if (method instanceof SendMessage sendMessage) {
+            return parseChatId(sendMessage.getChatId());
+        } else if (method instanceof EditMessageText editMessageText) {
+            return parseChatId(editMessageText.getChatId());
+        } else if (method instanceof EditMessageReplyMarkup editMessageReplyMarkup) {
+            return parseChatId(editMessageReplyMarkup.getChatId());
+        } else if (method instanceof CopyMessage copyMessage) {
+            return parseChatId(copyMessage.getChatId());
+        } else if (method instanceof ForwardMessage forwardMessage) {
+            return parseChatId(forwardMessage.getChatId());
+        }
+        return null;
+    }
+
+    // Чат, заданный именем (@channel), не ограничивается: его лимиты неотличимы от лимитов по идентификатору
+    private static Long parseChatId(String chatId) {
+        try {
+            return chatId != null ? Long.parseLong(chatId) : null;
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
@@ -85,31 +251,11 @@ public class Bot extends TelegramLongPollingBot {
     }
 
     public void showMainMenu(Long chatId, Integer messageId, boolean isAdmin) {
-        String text = "\uD83C\uDFE0 <b>Главное меню</b>";
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        if (getMessagesForSend().get(chatId) != null && !getMessagesForSend().get(chatId)
-                .isEmpty()) {
-            rows.add(List.of(new KeyboardButton("✉\uFE0F Рассылка текущего сообщения", "menu_send")));
-        }
-
-        rows.add(List.of(new KeyboardButton("\uD83D\uDCE2 Подписка на каналы", "menu_chats")));
-
-        if (isAdmin) { // Обработка запросов на доступ к боту доступна только админам бота
-            rows.add(List.of(new KeyboardButton("\uD83D\uDD12 Доступ к боту", "menu_access")));
-        }
-        if (isAdmin) {
-            rows.add(List.of(new KeyboardButton("❓Запросы на доступ к боту", "menu_access_requests")));
-        }
-        //rows.add(List.of(new KeyboardButton("⚙\uFE0F Настройки", "menu_settings")));
-        rows.add(List.of(new KeyboardButton("\uD83D\uDCCB История рассылок", "menu_sending_history"), new KeyboardButton("\uD83D\uDCAC Помощь", "menu_help")));
-        keyboard.setKeyboard(rows);
-
+        InlineKeyboardMarkup keyboard = MenuCatalog.mainKeyboard(getSessions().hasDrafts(chatId), isAdmin);
         if (messageId != null) {
-            updateMessage(chatId, messageId, text, keyboard);
+            updateMessage(chatId, messageId, MenuCatalog.MAIN_MENU_TEXT, keyboard);
         } else {
-            sendMessage(chatId, text, keyboard);
+            sendMessage(chatId, MenuCatalog.MAIN_MENU_TEXT, keyboard);
         }
     }
 
@@ -117,17 +263,10 @@ public class Bot extends TelegramLongPollingBot {
         StringBuilder sb = new StringBuilder();
         sb.append("\uD83D\uDCE2 <b>Подписка на каналы</b>\n\n");
 
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
         for (ChatMembership chat : chats) {
             sb.append(String.format("✔\uFE0F <b>%s</b> (тип: %s, роль: %s)%n", chat.getChatTitle(), chat.getChatType(), chat.getBotNewStatus()));
         }
-
-        rows.add(List.of(new KeyboardButton("\uD83D\uDCCB История подписок", "menu_chats_history")));
-        rows.add(List.of(new KeyboardButton("⬇\uFE0F Выгрузить данные о подписках", "menu_chats_upload")));
-        rows.add(List.of(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA)));
-        keyboard.setKeyboard(rows);
+        InlineKeyboardMarkup keyboard = MenuCatalog.keyboard(List.of(), MenuCatalog.CHATS_MENU_FOOTER);
 
         if (messageId != null) {
             updateMessage(chatId, messageId, sb.toString(), keyboard);
@@ -140,10 +279,8 @@ public class Bot extends TelegramLongPollingBot {
         StringBuilder sb = new StringBuilder();
         sb.append("✉\uFE0F <b>Отправка сообщения в каналы</b>\n\n");
 
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        Set<Integer> userSelection = selectedChats.getOrDefault(chatId, new HashSet<>());
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>(chats.size() + MenuCatalog.SEND_MENU_FOOTER.size());
+        Set<Integer> userSelection = getSessions().getSelection(chatId);
         for (int i = 0; i < chats.size(); i++) {
             ChatMembership chat = chats.get(i);
             String chatName = chat.getChatTitle();
@@ -158,9 +295,8 @@ public class Bot extends TelegramLongPollingBot {
             rows.add(List.of(chatButton));
         }
 
-        rows.add(List.of(new KeyboardButton("✉\uFE0F Отправить", "menu_send_message"), new KeyboardButton("\uD83D\uDDD1\uFE0F Очистить", "menu_send_message_clear")));
-        rows.add(List.of(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA)));
-        keyboard.setKeyboard(rows);
+        rows.addAll(MenuCatalog.SEND_MENU_FOOTER);
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(rows);
 
         if (messageId != null) {
             updateMessage(chatId, messageId, sb.toString(), keyboard);
@@ -169,19 +305,18 @@ public class Bot extends TelegramLongPollingBot {
         }
     }
 
-    public void showChatsHistoryMenu(Long chatId, Integer messageId, List<HistoryChatMembership> chats) {
+    public void showChatsHistoryMenu(Long chatId, Integer messageId, HistoryPage<HistoryChatMembership> page) {
         StringBuilder sb = new StringBuilder();
         sb.append("\uD83D\uDCCB <b>История подписок</b>\n\n");
 
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        for (HistoryChatMembership chat : chats) {
+        for (HistoryChatMembership chat : page.items()) {
             sb.append(String.format("%s deleted=%b, chatId=%d, userId=%d, userName=%s, channel='%s', currentStatus='%s', oldStatus='%s'%n", formatter.format(chat.getAddedDate()), chat.isDeleted(), chat.getChatId(), chat.getUserId(), chat.getUserName(), chat.getChatTitle(), chat.getBotNewStatus(), chat.getBotOldStatus()));
         }
 
-        rows.add(List.of(new KeyboardButton("\uD83D\uDCE2 Подписка на каналы", "menu_chats")));
-        keyboard.setKeyboard(rows);
+        addPageButtons(rows, page, CHATS_HISTORY_NEWER_CALLBACK_DATA, CHATS_HISTORY_OLDER_CALLBACK_DATA);
+        rows.add(MenuCatalog.CHATS_MENU_ROW);
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(rows);
 
         if (messageId != null) {
             updateMessage(chatId, messageId, sb.toString(), keyboard);
@@ -190,19 +325,18 @@ public class Bot extends TelegramLongPollingBot {
         }
     }
 
-    public void showSendingHistoryMenu(Long chatId, Integer messageId, List<HistorySending> history) {
+    public void showSendingHistoryMenu(Long chatId, Integer messageId, HistoryPage<HistorySending> page) {
         StringBuilder sb = new StringBuilder();
         sb.append("\uD83D\uDCCB <b>История отправки сообщений</b>\n\n");
 
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        for (HistorySending send : history) {
+        for (HistorySending send : page.items()) {
             sb.append(String.format("%s %s [%s...] (userName=%s, channel=%s)%n", formatter.format(send.getAddedDate()), getLinkMessage(send.getChatId(), send.getMessageId()), !StringUtils.isEmpty(send.getText()) ? send.getText() : "", send.getUserName(), send.getChatTitle()));
         }
 
-        rows.add(List.of(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA)));
-        keyboard.setKeyboard(rows);
+        addPageButtons(rows, page, SENDING_HISTORY_NEWER_CALLBACK_DATA, SENDING_HISTORY_OLDER_CALLBACK_DATA);
+        rows.add(MenuCatalog.BACK_TO_MAIN_ROW);
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(rows);
 
         if (messageId != null) {
             updateMessage(chatId, messageId, sb.toString(), keyboard);
@@ -211,66 +345,46 @@ public class Bot extends TelegramLongPollingBot {
         }
     }
 
+    private void addPageButtons(List<List<InlineKeyboardButton>> rows, HistoryPage<?> page, String newerCallbackData, String olderCallbackData) {
+        List<InlineKeyboardButton> buttons = new ArrayList<>();
+        if (page.newerCursor() != null) {
+            buttons.add(new KeyboardButton("⬅\uFE0F Новее", newerCallbackData + HistoryPage.encodeCursor(page.newerCursor())));
+        }
+        if (page.olderCursor() != null) {
+            buttons.add(new KeyboardButton("Старее ➡\uFE0F", olderCallbackData + HistoryPage.encodeCursor(page.olderCursor())));
+        }
+        if (!buttons.isEmpty()) {
+            rows.add(buttons);
+        }
+    }
+
     public String getLinkMessage(Long chatId, Integer messageId) {
         return String.format("https://t.me/c/%s/%d", chatId.toString()
                 .substring(4), messageId);
     }
 
     public void showHelpMenu(Long chatId, Integer messageId) {
-        String text = """
-                \uD83D\uDCAC <b>Помощь по боту</b>
-                
-                <b>Основные команды:</b>
-                /start - Главное меню
-                /help - Помощь
-                
-                Для того чтобы бот смог отправлять сообщения в каналы, его необходимо добавить администратором в эти каналы с соответствующим доступом.
-                
-                В боте реализована ролевая модель доступа к боту. Список администраторов, которые могут управлять доступом к боту для других пользователей, указывается при установке бота на сервер. Обычный пользователь запустив бот, не сможет получить к нему доступ. Он увидит кнопку *[Запросить доступ]*, нажав на которую, отправит уведомление на предоставления доступа.
-                
-                Если пользователю предоставлен доступ, или пользователь является администратором бота, то ему доступен следующий функционал:
-                <b>[Подписка на каналы]</b> - список каналов, в которых бот является администратором и может отправлять в них сообщения.
-                     • <b>[История подписок]</b> - история действий, которые производились с ботом в каналах, включая исключение его из администраторов.
-                     • <b>[Выгрузить данные о подписках]</b> - выгружается бэкап с данными сервера.
-                <b>[Доступ к боту]</b> - (доступно только администраторам) управление предоставлением доступа пользователей к боту (возможно как заблокировать, так и разблокировать пользователя).
-                <b>[Запросы на доступ к боту]</b> - (доступно только администраторам) список запросов от пользователей на предоставление доступа.
-                <b>[История рассылок]</b> - список сообщений, которые отправлялись из бота в каналы.
-                
-                Как работает отправка сообщений в каналы:
-                1. Пользователь пересылает сообщение в бот.
-                2. Спустя 2 секунды появляется список каналов, на который подписан бот, а также кнопки <b>[Отправить]</b> и <b>[Очистить]</b>.
-                3. Пользователь может убрать из списка каналов те, в которые он не хочет отправлять сообщение.
-                4. После нажатия кнопки <b>[Отправить]</b> сообщение будет отправлено в выбранные каналы, история о рассылке сохранится.
-                5. После завершения рассылки вверху интерфейса телеграм появится соответствующее всплывающее сообщение и пропадут кнопки управления отправкой.
-                6. Бот снова готов к приему пересылаемого сообщения.
-                """;
-
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(List.of(List.of(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA))));
         if (messageId != null) {
-            updateMessage(chatId, messageId, text, keyboard);
+            updateMessage(chatId, messageId, MenuCatalog.HELP_MENU_TEXT, MenuCatalog.HELP_KEYBOARD);
         } else {
-            sendMessage(chatId, text, keyboard);
+            sendMessage(chatId, MenuCatalog.HELP_MENU_TEXT, MenuCatalog.HELP_KEYBOARD);
         }
     }
 
     public void showRequestAccessMenu(Long userId) {
-        String text = "<b>Запрос на доступ к боту</b>";
-
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(List.of(List.of(new KeyboardButton("❓ Запросить доступ", "menu_request_access"))));
-        sendMessage(userId, text, keyboard);
+        sendMessage(userId, MenuCatalog.REQUEST_ACCESS_TEXT, MenuCatalog.REQUEST_ACCESS_KEYBOARD);
     }
 
     public void showAccessRequestsMenu(Long chatId, Integer messageId, List<AccessRequest> accessRequests) {
         String text = String.format("❓ <b>Запросы на доступ к боту</b>%n%n%s", accessRequests.isEmpty() ? "Запросов на доступ к боту нет" : "");
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
         for (AccessRequest request : accessRequests) {
             Long userId = request.getUserId();
             rows.add(List.of(new KeyboardButton(String.format("\uD83D\uDC64 %s (%s)%n", request.getUserName(), request.getStatus()), "access_request_info" + userId)));
             rows.add(List.of(new KeyboardButton("✅ Принять", "access_request_accept_" + userId), new KeyboardButton("❌ Отклонить", "access_request_reject_" + userId)));
         }
-        rows.add(List.of(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA)));
-        keyboard.setKeyboard(rows);
+        rows.add(MenuCatalog.BACK_TO_MAIN_ROW);
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(rows);
 
         if (messageId != null) {
             updateMessage(chatId, messageId, text, keyboard);
@@ -280,9 +394,7 @@ public class Bot extends TelegramLongPollingBot {
     }
 
     public void showGrantedAccessMenu(Long chatId, Integer messageId, List<PermissionUser> users) {
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
         String text = "\uD83D\uDD12 <b>Доступ к боту</b>";
         for (PermissionUser user : users) {
             KeyboardButton action = null;
@@ -293,8 +405,8 @@ public class Bot extends TelegramLongPollingBot {
             }
             rows.add(List.of(new KeyboardButton(String.format("\uD83D\uDC64 %s (%s)%n", user.getUserName(), user.getStatus()), "grant_access_" + user.getUserId()), action));
         }
-        rows.add(List.of(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA)));
-        keyboard.setKeyboard(rows);
+        rows.add(MenuCatalog.BACK_TO_MAIN_ROW);
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(rows);
 
         if (messageId != null) {
             updateMessage(chatId, messageId, text, keyboard);
@@ -304,57 +416,112 @@ public class Bot extends TelegramLongPollingBot {
     }
 
     public void showSettingsMenu(Long chatId, Integer messageId) {
-        String text = "⚙\uFE0F <b>Настройки бота</b>\n";
         if (messageId != null) {
-            updateMessage(chatId, messageId, text, createSettingsKeyboard());
+            updateMessage(chatId, messageId, MenuCatalog.SETTINGS_MENU_TEXT, MenuCatalog.SETTINGS_KEYBOARD);
         } else {
-            sendMessage(chatId, text, createSettingsKeyboard());
+            sendMessage(chatId, MenuCatalog.SETTINGS_MENU_TEXT, MenuCatalog.SETTINGS_KEYBOARD);
         }
     }
 
-    private InlineKeyboardMarkup createSettingsKeyboard() {
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        List<InlineKeyboardButton> row3 = new ArrayList<>();
-        row3.add(new KeyboardButton("🔄 Сбросить настройки", "settings_reset"));
-        row3.add(new KeyboardButton("💾 Сохранить", "settings_save"));
-        rows.add(row3);
-
-        List<InlineKeyboardButton> row4 = new ArrayList<>();
-        row4.add(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA));
-        rows.add(row4);
-
-        markup.setKeyboard(rows);
-
-        return markup;
-    }
-
     public void sendMessage(Long chatId, String text, InlineKeyboardMarkup keyboard) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(text);
         message.setParseMode(ParseMode.HTML);
         message.setReplyMarkup(keyboard);
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            logger.error(e.getMessage(), e);
-        }
+        submitToChatQueue(chatId, () -> {
+                    Message sent = execute(message);
+                    if (sent != null) {
+                        renderCache.remember(chatId, sent.getMessageId(), text, keyboard);
+                    }
+                    return sent;
+                })
+                .exceptionally(e -> failed("sendMessage", chatId, e));
     }
 
-    public void updateMessage(Long chatId, Integer messageId, String text, InlineKeyboardMarkup keyboard) {
-        EditMessageText message = new EditMessageText();
+    /**
+     * Отправить сообщение без клавиатуры, которое затем будет изменяться через
+     * {@link #updateMessage(Long, Integer, String, InlineKeyboardMarkup)}
+     *
+     * @param chatId идентификатор чата
+     * @param text   текст
+     * @return идентификатор отправленного сообщения
+     */
+    public CompletableFuture<Integer> sendStatusMessage(Long chatId, String text) {
+        SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(text);
-        message.setMessageId(messageId);
         message.setParseMode(ParseMode.HTML);
-        message.setReplyMarkup(keyboard);
+        return submitToChatQueue(chatId, () -> {
+            Message sent = execute(message);
+            renderCache.remember(chatId, sent.getMessageId(), text, null);
+            return sent.getMessageId();
+        });
+    }
+
+    /**
+     * Показать в сообщении новый текст и клавиатуру. Если сообщение уже показано с тем же содержимым, запрос к Bot API
+     * не выполняется, если изменилась только клавиатура — обновляется только она
+     *
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения
+     * @param text      текст
+     * @param keyboard  клавиатура
+     */
+    public void updateMessage(Long chatId, Integer messageId, String text, InlineKeyboardMarkup keyboard) {
+        // Сравнение с показанным содержимым выполняется один раз в очереди чата, после завершения предыдущих вызовов,
+        // поэтому до редактирования оно не устареет. Слот лимитов нужен, только если содержимое сообщения изменится
+        RenderCache.Change[] change = new RenderCache.Change[1];
+        apiExecutor.submit(chatId, () -> {
+                    change[0] = renderCache.diff(chatId, messageId, text, keyboard);
+                    if (change[0] != RenderCache.Change.NONE) {
+                        rateLimiter.acquire(chatId, null, RateLimiter.Mode.WAIT);
+                    }
+                }, () -> withMode(RateLimiter.Mode.RESERVED, () -> edit(chatId, messageId, text, keyboard, change[0])))
+                .exceptionally(e -> failed("editMessage", chatId, e));
+    }
+
+    // Вызов в очереди чата: слот лимитов берется до того, как вызов займет место среди одновременных вызовов
+    private <T> CompletableFuture<T> submitToChatQueue(Long chatId, Metrics.ApiCall<T> call) {
+        return apiExecutor.submit(chatId, () -> rateLimiter.acquire(chatId, null, RateLimiter.Mode.WAIT), () -> withMode(RateLimiter.Mode.RESERVED, call));
+    }
+
+    private RenderCache.Change edit(Long chatId, Integer messageId, String text, InlineKeyboardMarkup keyboard, RenderCache.Change change) throws TelegramApiException {
+        if (change == RenderCache.Change.NONE) {
+            Metrics.incMenuEdits(Metrics.EDIT_SKIPPED);
+            logger.debug("Message {} in chatId={} not modified, edit skipped", messageId, chatId);
+            return change;
+        }
         try {
-            execute(message);
+            if (change == RenderCache.Change.MARKUP) {
+                EditMessageReplyMarkup markup = new EditMessageReplyMarkup();
+                markup.setChatId(chatId);
+                markup.setMessageId(messageId);
+                markup.setReplyMarkup(keyboard);
+                execute(markup);
+                Metrics.incMenuEdits(Metrics.EDIT_MARKUP);
+            } else {
+                EditMessageText message = new EditMessageText();
+                message.setChatId(chatId);
+                message.setText(text);
+                message.setMessageId(messageId);
+                message.setParseMode(ParseMode.HTML);
+                message.setReplyMarkup(keyboard);
+                execute(message);
+                Metrics.incMenuEdits(Metrics.EDIT_TEXT);
+            }
+            renderCache.remember(chatId, messageId, text, keyboard);
         } catch (TelegramApiException e) {
-            logger.error(e.getMessage(), e);
+            if (!isNotModified(e)) {
+                renderCache.forget(chatId, messageId);
+                throw e;
+            }
+            // Содержимое сообщения неизвестно (например, после перезапуска), но совпало с новым
+            Metrics.incMenuEdits(Metrics.EDIT_NOT_MODIFIED);
+            renderCache.remember(chatId, messageId, text, keyboard);
+            logger.debug("Message {} in chatId={} not modified", messageId, chatId);
         }
+        return change;
     }
 
     public void showNotification(String callbackQueryId, String text) {
@@ -362,18 +529,37 @@ public class Bot extends TelegramLongPollingBot {
         answer.setCallbackQueryId(callbackQueryId);
         answer.setText(text);
         answer.setShowAlert(false); // false - всплывающее уведомление, true - alert-окно
-        try {
-            execute(answer);
-        } catch (TelegramApiException e) {
-            logger.error(e.getMessage(), e);
+        executeAsync(answer).exceptionally(e -> failed("answerCallbackQuery", null, e));
+    }
+
+    private <T> T failed(String method, Long chatId, Throwable e) {
+        Throwable cause = ApiExecutor.unwrap(e);
+        if (cause instanceof TimeoutException) {
+            logger.warn("Bot API call {} for chatId={} timed out", method, chatId);
+        } else {
+            logger.error(cause.getMessage(), cause);
         }
+        return null;
     }
 
-    public Map<Long, List<Message>> getMessagesForSend() {
-        return messagesForSend;
+    private static boolean isNotModified(TelegramApiException e) {
+        return e instanceof TelegramApiRequestException requestException && requestException.getApiResponse() != null && requestException.getApiResponse()
+                .contains("message is not modified");
+    }
+
+    private static String getUpdateType(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage()
+                    .getForwardDate() != null ? "forward" : "message";
+        } else if (update.hasCallbackQuery()) {
+            return "callback_query";
+        } else if (update.hasMyChatMember()) {
+            return "my_chat_member";
+        }
+        return "other";
     }
 
-    public Map<Long, Set<Integer>> getSelectedChats() {
-        return selectedChats;
+    public SessionStore getSessions() {
+        return sessions;
     }
 }
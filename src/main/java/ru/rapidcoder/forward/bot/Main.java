@@ -1,11 +1,21 @@
 package ru.rapidcoder.forward.bot;
 
+import io.prometheus.metrics.exporter.httpserver.HTTPServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.HistoryRetention;
+import ru.rapidcoder.forward.bot.handler.StorageBackend;
+import ru.rapidcoder.forward.bot.handler.StorageWriter;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -13,6 +23,8 @@ import java.util.stream.Collectors;
 
 public class Main {
 
+    public static final String WEBHOOK_MODE = "webhook";
+    public static final int DEFAULT_PORT = 8080;
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
     public static void main(String[] args) {
@@ -22,9 +34,36 @@ public class Main {
             String tokenId = System.getenv(environment + "TokenId");
             String storageFile = System.getenv(environment + "StorageFile");
             List<Long> admins = getAdmins(environment);
-            TelegramBotsApi telegramBotsApi = createTelegramBotsApi();
             Bot bot = createBot(botName, tokenId, storageFile, admins);
-            telegramBotsApi.registerBot(bot);
+            WebhookServer webhookServer = null;
+            if (WEBHOOK_MODE.equalsIgnoreCase(System.getenv("botMode"))) {
+                webhookServer = startWebhook(bot, environment);
+            } else {
+                TelegramBotsApi telegramBotsApi = createTelegramBotsApi();
+                telegramBotsApi.registerBot(bot);
+            }
+            HTTPServer metricsServer = startMetrics();
+            // Перенос истории в архив работает только с файлом SQLite
+            HistoryRetention retention = StorageBackend.isServer(storageFile) ? null : createHistoryRetention(environment, storageFile);
+            if (retention != null) {
+                retention.start(HistoryRetention.DEFAULT_INTERVAL);
+            }
+            WebhookServer server = webhookServer;
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(() -> {
+                        if (server != null) {
+                            server.stop();
+                        }
+                        bot.onClosing();
+                        if (metricsServer != null) {
+                            metricsServer.stop();
+                        }
+                        if (retention != null) {
+                            retention.stop();
+                        }
+                        StorageWriter.closeAll();
+                        ConnectionPool.closeAll();
+                    }));
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
@@ -38,6 +77,68 @@ public class Main {
         return new Bot(botName, tokenId, storageFile, admins);
     }
 
+    public static WebhookServer createWebhookServer(Bot bot, int port, String secretToken) {
+        return new WebhookServer(bot, port, secretToken);
+    }
+
+    /**
+     * Настроить срок хранения истории. Возраст задается в днях, количество — в строках, 0 отключает ограничение
+     *
+     * @param environment окружение
+     * @param storageFile файл базы данных
+     * @return срок хранения истории
+     */
+    public static HistoryRetention createHistoryRetention(String environment, String storageFile) {
+        Path archiveDir = Optional.ofNullable(System.getenv(environment + "HistoryArchiveDir"))
+                .filter(value -> !value.isBlank())
+                .map(Path::of)
+                .orElse(HistoryRetention.defaultArchiveDir(storageFile));
+        List<HistoryRetention.Policy> policies = List.of(createRetentionPolicy(environment, "SendingHistory", HistoryRetention.SENDING_HISTORY),
+                createRetentionPolicy(environment, "ChatsHistory", HistoryRetention.CHATS_HISTORY));
+        return new HistoryRetention(storageFile, archiveDir, policies, HistoryRetention.DEFAULT_BATCH_SIZE);
+    }
+
+    private static HistoryRetention.Policy createRetentionPolicy(String environment, String name, String table) {
+        long days = getLong(environment + name + "RetentionDays", HistoryRetention.DEFAULT_MAX_AGE.toDays());
+        long maxRows = getLong(environment + name + "MaxRows", HistoryRetention.DEFAULT_MAX_ROWS);
+        return new HistoryRetention.Policy(table, days > 0 ? Duration.ofDays(days) : null, maxRows);
+    }
+
+    private static long getLong(String name, long defaultValue) {
+        return Optional.ofNullable(System.getenv(name))
+                .filter(value -> !value.isBlank())
+                .map(value -> Long.parseLong(value.trim()))
+                .orElse(defaultValue);
+    }
+
+    private static WebhookServer startWebhook(Bot bot, String environment) throws Exception {
+        String webhookUrl = Optional.ofNullable(System.getenv(environment + "WebhookUrl"))
+                .filter(value -> !value.isBlank())
+                .orElseThrow(() -> new IllegalArgumentException("Webhook url not defined in environment"));
+        String secretToken = System.getenv(environment + "WebhookSecret");
+        int port = Optional.ofNullable(System.getenv("PORT"))
+                .map(Integer::parseInt)
+                .orElse(DEFAULT_PORT);
+        WebhookServer webhookServer = createWebhookServer(bot, port, secretToken);
+        webhookServer.start();
+        bot.execute(SetWebhook.builder()
+                .url(webhookUrl.replaceAll("/+$", "") + WebhookServer.PATH)
+                .secretToken(secretToken)
+                .build());
+        logger.info("Webhook registered at {}", webhookUrl);
+        return webhookServer;
+    }
+
+    private static HTTPServer startMetrics() throws IOException {
+        String metricsPort = System.getenv("metricsPort");
+        if (metricsPort == null || metricsPort.isBlank()) {
+            return null;
+        }
+        HTTPServer metricsServer = Metrics.startServer(Integer.parseInt(metricsPort.trim()));
+        logger.info("Metrics available on port {}", metricsServer.getPort());
+        return metricsServer;
+    }
+
     private static List<Long> getAdmins(String environment) {
         return Optional.ofNullable(System.getenv(environment + "Admins"))
                 .map(value -> {
@@ -0,0 +1,110 @@
+package ru.rapidcoder.forward.bot;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Прием обновлений от Telegram через webhook.
+ * <p>
+ * Встроенный HTTP-сервер принимает POST-запросы на {@link #PATH}, проверяет заголовок
+ * {@code X-Telegram-Bot-Api-Secret-Token} и передает обновление в {@link Bot#onUpdatesReceived(List)},
+ * как при long polling. Ответ отправляется после постановки обновления в очередь, до его обработки.
+ */
+public class WebhookServer {
+
+    public static final String PATH = "/webhook";
+    public static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    public static final int HTTP_THREADS = 4;
+    private static final Logger logger = LoggerFactory.getLogger(WebhookServer.class);
+    private final Bot bot;
+    private final int port;
+    private final byte[] secretToken;
+    private final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private HttpServer server;
+    private ExecutorService httpExecutor;
+
+    public WebhookServer(Bot bot, int port, String secretToken) {
+        if (secretToken == null || secretToken.isBlank()) {
+            throw new IllegalArgumentException("Webhook secret token cannot be empty");
+        }
+        this.bot = bot;
+        this.port = port;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Запустить HTTP-сервер
+     *
+     * @throws IOException если порт недоступен
+     */
+    public synchronized void start() throws IOException {
+        httpExecutor = Executors.newFixedThreadPool(HTTP_THREADS);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(httpExecutor);
+        server.start();
+        logger.info("Webhook server started on port {}", getPort());
+    }
+
+    /**
+     * Остановить прием обновлений
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            httpExecutor.shutdown();
+            server = null;
+        }
+        logger.info("Webhook server stopped");
+    }
+
+    /**
+     * Порт, на котором запущен сервер (при запуске с портом 0 — выбранный системой)
+     *
+     * @return номер порта
+     */
+    public int getPort() {
+        return server != null ? server.getAddress()
+                .getPort() : port;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String token = exchange.getRequestHeaders()
+                    .getFirst(SECRET_TOKEN_HEADER);
+            if (token == null || !MessageDigest.isEqual(secretToken, token.getBytes(StandardCharsets.UTF_8))) {
+                logger.warn("Rejected webhook request from {}: invalid secret token", exchange.getRemoteAddress());
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            Update update;
+            try (InputStream body = exchange.getRequestBody()) {
+                update = objectMapper.readValue(body, Update.class);
+            } catch (IOException e) {
+                logger.warn("Failed to parse webhook update: {}", e.getMessage());
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            bot.onUpdatesReceived(List.of(update));
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+}
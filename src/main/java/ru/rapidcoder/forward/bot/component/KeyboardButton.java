@@ -2,7 +2,9 @@ package ru.rapidcoder.forward.bot.component;
 
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
-public class KeyboardButton extends InlineKeyboardButton {
+public final class KeyboardButton extends InlineKeyboardButton {
+
+    private static final long serialVersionUID = 1L;
 
     public KeyboardButton(String text, String callbackData) {
         setText(text);
@@ -0,0 +1,111 @@
+package ru.rapidcoder.forward.bot.component;
+
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.rapidcoder.forward.bot.Bot.BACK_TO_MAIN_CALLBACK_DATA;
+
+/**
+ * Тексты и клавиатуры статических меню, а также общие строки кнопок динамических меню.
+ * <p>
+ * Все объекты создаются один раз при загрузке класса и разделяются между потоками обработки обновлений. Списки строк
+ * неизменяемые, а кнопки и клавиатуры после создания не изменяются: вызывать их сеттеры нельзя. Динамические меню
+ * (списки каналов, история) собирают в новом списке только свои строки и добавляют к ним готовые строки отсюда.
+ */
+public final class MenuCatalog {
+
+    public static final List<InlineKeyboardButton> BACK_TO_MAIN_ROW = List.of(new KeyboardButton("\uD83C\uDFE0 Главное меню", BACK_TO_MAIN_CALLBACK_DATA));
+    public static final List<InlineKeyboardButton> CHATS_MENU_ROW = List.of(new KeyboardButton("\uD83D\uDCE2 Подписка на каналы", "menu_chats"));
+    public static final List<List<InlineKeyboardButton>> CHATS_MENU_FOOTER = List.of(List.of(new KeyboardButton("\uD83D\uDCCB История подписок", "menu_chats_history")), List.of(new KeyboardButton("⬇\uFE0F Выгрузить данные о подписках", "menu_chats_upload")), BACK_TO_MAIN_ROW);
+    public static final List<List<InlineKeyboardButton>> SEND_MENU_FOOTER = List.of(List.of(new KeyboardButton("✉\uFE0F Отправить", "menu_send_message"), new KeyboardButton("\uD83D\uDDD1\uFE0F Очистить", "menu_send_message_clear")), BACK_TO_MAIN_ROW);
+
+    public static final String MAIN_MENU_TEXT = "\uD83C\uDFE0 <b>Главное меню</b>";
+    public static final String SETTINGS_MENU_TEXT = "⚙\uFE0F <b>Настройки бота</b>\n";
+    public static final String REQUEST_ACCESS_TEXT = "<b>Запрос на доступ к боту</b>";
+    public static final String HELP_MENU_TEXT = """
+            \uD83D\uDCAC <b>Помощь по боту</b>
+
+            <b>Основные команды:</b>
+            /start - Главное меню
+            /help - Помощь
+
+            Для того чтобы бот смог отправлять сообщения в каналы, его необходимо добавить администратором в эти каналы с соответствующим доступом.
+
+            В боте реализована ролевая модель доступа к боту. Список администраторов, которые могут управлять доступом к боту для других пользователей, указывается при установке бота на сервер. Обычный пользователь запустив бот, не сможет получить к нему доступ. Он увидит кнопку *[Запросить доступ]*, нажав на которую, отправит уведомление на предоставления доступа.
+
+            Если пользователю предоставлен доступ, или пользователь является администратором бота, то ему доступен следующий функционал:
+            <b>[Подписка на каналы]</b> - список каналов, в которых бот является администратором и может отправлять в них сообщения.
+                 • <b>[История подписок]</b> - история действий, которые производились с ботом в каналах, включая исключение его из администраторов.
+                 • <b>[Выгрузить данные о подписках]</b> - выгружается бэкап с данными сервера.
+            <b>[Доступ к боту]</b> - (доступно только администраторам) управление предоставлением доступа пользователей к боту (возможно как заблокировать, так и разблокировать пользователя).
+            <b>[Запросы на доступ к боту]</b> - (доступно только администраторам) список запросов от пользователей на предоставление доступа.
+            <b>[История рассылок]</b> - список сообщений, которые отправлялись из бота в каналы.
+
+            Как работает отправка сообщений в каналы:
+            1. Пользователь пересылает сообщение в бот.
+            2. Сразу после получения сообщения (для альбома — как только пришли все его части) появляется список каналов, на который подписан бот, а также кнопки <b>[Отправить]</b> и <b>[Очистить]</b>.
+            3. Пользователь может убрать из списка каналов те, в которые он не хочет отправлять сообщение.
+            4. После нажатия кнопки <b>[Отправить]</b> сообщение будет отправлено в выбранные каналы, история о рассылке сохранится.
+            5. После завершения рассылки вверху интерфейса телеграм появится соответствующее всплывающее сообщение и пропадут кнопки управления отправкой.
+            6. Бот снова готов к приему пересылаемого сообщения.
+            """;
+
+    public static final InlineKeyboardMarkup HELP_KEYBOARD = new InlineKeyboardMarkup(List.of(BACK_TO_MAIN_ROW));
+    public static final InlineKeyboardMarkup REQUEST_ACCESS_KEYBOARD = new InlineKeyboardMarkup(List.of(List.of(new KeyboardButton("❓ Запросить доступ", "menu_request_access"))));
+    public static final InlineKeyboardMarkup SETTINGS_KEYBOARD = new InlineKeyboardMarkup(List.of(List.of(new KeyboardButton("🔄 Сбросить настройки", "settings_reset"), new KeyboardButton("💾 Сохранить", "settings_save")), BACK_TO_MAIN_ROW));
+
+    // Индекс варианта главного меню: бит 0 — есть сообщение для рассылки, бит 1 — пользователь администратор
+    private static final InlineKeyboardMarkup[] MAIN_KEYBOARDS = new InlineKeyboardMarkup[4];
+
+    static {
+        for (int i = 0; i < MAIN_KEYBOARDS.length; i++) {
+            MAIN_KEYBOARDS[i] = createMainKeyboard((i & 1) != 0, (i & 2) != 0);
+        }
+    }
+
+    private MenuCatalog() {
+    }
+
+    /**
+     * Клавиатура главного меню
+     *
+     * @param hasDrafts есть ли у пользователя сообщение для рассылки
+     * @param isAdmin   является ли пользователь администратором бота
+     * @return общий для всех пользователей экземпляр клавиатуры
+     */
+    public static InlineKeyboardMarkup mainKeyboard(boolean hasDrafts, boolean isAdmin) {
+        return MAIN_KEYBOARDS[(hasDrafts ? 1 : 0) | (isAdmin ? 2 : 0)];
+    }
+
+    /**
+     * Клавиатура из строк динамического меню и общих строк каталога
+     *
+     * @param rows   строки меню, собранные для запроса
+     * @param footer общие строки в конце меню
+     * @return клавиатура
+     */
+    public static InlineKeyboardMarkup keyboard(List<List<InlineKeyboardButton>> rows, List<List<InlineKeyboardButton>> footer) {
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>(rows.size() + footer.size());
+        keyboard.addAll(rows);
+        keyboard.addAll(footer);
+        return new InlineKeyboardMarkup(keyboard);
+    }
+
+    private static InlineKeyboardMarkup createMainKeyboard(boolean hasDrafts, boolean isAdmin) {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        if (hasDrafts) {
+            rows.add(List.of(new KeyboardButton("✉\uFE0F Рассылка текущего сообщения", "menu_send")));
+        }
+        rows.add(CHATS_MENU_ROW);
+        if (isAdmin) { // Обработка запросов на доступ к боту доступна только админам бота
+            rows.add(List.of(new KeyboardButton("\uD83D\uDD12 Доступ к боту", "menu_access")));
+            rows.add(List.of(new KeyboardButton("❓Запросы на доступ к боту", "menu_access_requests")));
+        }
+        //rows.add(List.of(new KeyboardButton("⚙\uFE0F Настройки", "menu_settings")));
+        rows.add(List.of(new KeyboardButton("\uD83D\uDCCB История рассылок", "menu_sending_history"), new KeyboardButton("\uD83D\uDCAC Помощь", "menu_help")));
+        return new InlineKeyboardMarkup(List.copyOf(rows));
+    }
+}
@@ -0,0 +1,18 @@
+package ru.rapidcoder.forward.bot.dto;
+
+import java.util.List;
+
+/**
+ * Сохраненная рассылка
+ *
+ * @param jobId    идентификатор рассылки
+ * @param userId   идентификатор пользователя, запустившего рассылку
+ * @param userName имя пользователя
+ * @param drafts   рассылаемые сообщения
+ */
+public record BroadcastJob(long jobId, Long userId, String userName, List<Draft> drafts) {
+
+    public BroadcastJob {
+        drafts = List.copyOf(drafts);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.rapidcoder.forward.bot.dto;
+
+/**
+ * Отправка рассылки в один чат, взятая обработчиком из очереди
+ *
+ * @param jobId    идентификатор рассылки
+ * @param target   чат для отправки
+ * @param attempts количество уже сделанных попыток
+ */
+public record BroadcastTask(long jobId, ChatMembership target, int attempts) {
+}
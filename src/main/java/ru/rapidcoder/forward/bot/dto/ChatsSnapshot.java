@@ -0,0 +1,16 @@
+package ru.rapidcoder.forward.bot.dto;
+
+import java.util.List;
+
+/**
+ * Неизменяемый список активных каналов/групп бота на момент версии {@code version}
+ *
+ * @param version версия списка, увеличивается при каждом изменении каналов
+ * @param chats   каналы/группы
+ */
+public record ChatsSnapshot(long version, List<ChatMembership> chats) {
+
+    public ChatsSnapshot {
+        chats = List.copyOf(chats);
+    }
+}
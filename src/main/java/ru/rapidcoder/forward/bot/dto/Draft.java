@@ -0,0 +1,78 @@
+package ru.rapidcoder.forward.bot.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.commons.lang3.StringUtils;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.MessageEntity;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+
+import java.util.List;
+
+/**
+ * Сообщение, подготовленное к рассылке.
+ * <p>
+ * Хранит только то, что нужно для копирования сообщения или отправки альбома, вместо полного {@link Message} с
+ * отправителем, цепочкой ответов и всеми размерами фото.
+ *
+ * @param chatId          идентификатор исходного чата
+ * @param messageId       идентификатор исходного сообщения
+ * @param mediaType       тип вложения
+ * @param fileId          идентификатор файла вложения (для фото — наибольшего размера)
+ * @param caption         подпись к вложению
+ * @param captionEntities форматирование подписи
+ * @param mediaGroupId    идентификатор альбома
+ * @param preview         начало текста или подписи для истории рассылок
+ */
+public record Draft(@JsonProperty("chat_id") Long chatId, @JsonProperty("message_id") Integer messageId,
+                    @JsonProperty("media_type") MediaType mediaType, @JsonProperty("file_id") String fileId,
+                    @JsonProperty("caption") String caption,
+                    @JsonProperty("caption_entities") List<MessageEntity> captionEntities,
+                    @JsonProperty("media_group_id") String mediaGroupId, @JsonProperty("preview") String preview) {
+
+    public static final int PREVIEW_LENGTH = 50;
+
+    public Draft {
+        captionEntities = captionEntities == null ? null : List.copyOf(captionEntities);
+    }
+
+    /**
+     * Подготовить сообщение к рассылке
+     *
+     * @param message полученное сообщение
+     * @return черновик сообщения
+     */
+    public static Draft of(Message message) {
+        MediaType mediaType = MediaType.OTHER;
+        String fileId = null;
+        if (message.hasPhoto()) {
+            List<PhotoSize> photos = message.getPhoto();
+            mediaType = MediaType.PHOTO;
+            fileId = photos.get(photos.size() - 1)
+                    .getFileId();
+        } else if (message.hasVideo()) {
+            mediaType = MediaType.VIDEO;
+            fileId = message.getVideo()
+                    .getFileId();
+        }
+        return new Draft(message.getChatId(), message.getMessageId(), mediaType, fileId, message.getCaption(), message.getCaptionEntities(), message.getMediaGroupId(), preview(message.getText(), message.getCaption()));
+    }
+
+    /**
+     * Начало текста сообщения, а при его отсутствии — подписи
+     *
+     * @param text    текст сообщения
+     * @param caption подпись
+     * @return первые {@link #PREVIEW_LENGTH} символов или null, если текста нет
+     */
+    public static String preview(String text, String caption) {
+        String value = !StringUtils.isEmpty(text) ? text : caption;
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+        return value.substring(0, Math.min(value.length(), PREVIEW_LENGTH));
+    }
+
+    public enum MediaType {
+        PHOTO, VIDEO, OTHER
+    }
+}
@@ -0,0 +1,31 @@
+package ru.rapidcoder.forward.bot.dto;
+
+import java.util.List;
+
+/**
+ * Страница истории, от новых записей к старым.
+ * <p>
+ * Курсоры — ключи граничных записей страницы: по {@code olderCursor} читается следующая (более старая) страница,
+ * по {@code newerCursor} — предыдущая. Отсутствующий курсор означает, что страницы в этом направлении нет.
+ * В callback_data курсор передается в base36, поэтому помещается в ограничение Telegram в 64 байта.
+ *
+ * @param items       записи страницы
+ * @param olderCursor курсор более старой страницы
+ * @param newerCursor курсор более новой страницы
+ */
+public record HistoryPage<T>(List<T> items, Long olderCursor, Long newerCursor) {
+
+    public static final int CURSOR_RADIX = Character.MAX_RADIX;
+
+    public HistoryPage {
+        items = List.copyOf(items);
+    }
+
+    public static String encodeCursor(long cursor) {
+        return Long.toString(cursor, CURSOR_RADIX);
+    }
+
+    public static long decodeCursor(String cursor) {
+        return Long.parseLong(cursor, CURSOR_RADIX);
+    }
+}
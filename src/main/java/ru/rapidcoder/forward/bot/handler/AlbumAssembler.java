@@ -0,0 +1,207 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Сборка пересланных альбомов.
+ * <p>
+ * Telegram присылает части альбома отдельными сообщениями с общим {@code media_group_id} и не сообщает их количество.
+ * Сообщение без {@code media_group_id} передается дальше сразу. Альбом закрывается, как только в нем
+ * {@link #MAX_ALBUM_SIZE} частей, или когда новые части не приходят дольше окна ожидания. Окно подстраивается под
+ * наблюдаемые интервалы между частями: в пределах альбома — по самому большому интервалу, для нового альбома — по
+ * сглаженному интервалу прошлых альбомов. Альбом, закрытый по таймеру, передается через {@code chatQueue} —
+ * очередь обновлений чата, поэтому он обрабатывается по порядку с сообщениями, пришедшими после него.
+ */
+public class AlbumAssembler {
+
+    public static final int MAX_ALBUM_SIZE = 10;
+    public static final long MIN_WINDOW_MILLIS = 250;
+    public static final long MAX_WINDOW_MILLIS = 2000;
+    public static final String REASON_SINGLE = "single";
+    public static final String REASON_COMPLETE = "complete";
+    public static final String REASON_QUIET = "quiet";
+    private static final Logger logger = LoggerFactory.getLogger(AlbumAssembler.class);
+    private static final int WINDOW_GAPS = 3;
+    private static final long INITIAL_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+    private final Consumer<Album> consumer;
+    private final BiConsumer<Long, Runnable> chatQueue;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Group> groups = new HashMap<>();
+    private long typicalGapNanos = INITIAL_GAP_NANOS;
+
+    public AlbumAssembler(Consumer<Album> consumer) {
+        this(consumer, System::nanoTime);
+    }
+
+    public AlbumAssembler(Consumer<Album> consumer, LongSupplier clock) {
+        this(consumer, (chatId, task) -> task.run(), clock);
+    }
+
+    public AlbumAssembler(Consumer<Album> consumer, BiConsumer<Long, Runnable> chatQueue) {
+        this(consumer, chatQueue, System::nanoTime);
+    }
+
+    public AlbumAssembler(Consumer<Album> consumer, BiConsumer<Long, Runnable> chatQueue, LongSupplier clock) {
+        this.consumer = consumer;
+        this.chatQueue = chatQueue;
+        this.clock = clock;
+    }
+
+    /**
+     * Добавить пересланное сообщение
+     *
+     * @param draft черновик сообщения
+     */
+    public void add(Draft draft) {
+        String mediaGroupId = draft.mediaGroupId();
+        if (mediaGroupId == null) {
+            emit(new Album(draft.chatId(), null, List.of(draft), Duration.ZERO), REASON_SINGLE);
+            return;
+        }
+        String key = draft.chatId() + ":" + mediaGroupId;
+        Album complete = null;
+        synchronized (groups) {
+            long now = clock.getAsLong();
+            Group group = groups.computeIfAbsent(key, k -> new Group(draft.chatId(), mediaGroupId, now));
+            group.add(draft, now);
+            if (group.timer != null) {
+                group.timer.cancel(false);
+            }
+            if (group.drafts.size() >= MAX_ALBUM_SIZE) {
+                complete = close(key, now);
+            } else {
+                group.timer = scheduler.schedule(() -> closeQuiet(key, group), window(group), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (complete != null) {
+            emit(complete, REASON_COMPLETE);
+        }
+    }
+
+    /**
+     * Текущее окно ожидания следующей части для нового альбома
+     *
+     * @return окно ожидания
+     */
+    public Duration getInitialWindow() {
+        synchronized (groups) {
+            return Duration.ofNanos(clamp(typicalGapNanos * WINDOW_GAPS));
+        }
+    }
+
+    /**
+     * Количество собираемых альбомов
+     *
+     * @return количество альбомов
+     */
+    public int getPending() {
+        synchronized (groups) {
+            return groups.size();
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void closeQuiet(String key, Group group) {
+        Album album;
+        synchronized (groups) {
+            if (groups.get(key) != group) {
+                return;
+            }
+            album = close(key, clock.getAsLong());
+        }
+        // Таймер срабатывает вне очереди обновлений чата: альбом ставится в нее, а не обрабатывается сразу
+        chatQueue.accept(album.chatId(), () -> emit(album, REASON_QUIET));
+    }
+
+    private Album close(String key, long now) {
+        Group group = groups.remove(key);
+        if (group.maxGapNanos > 0) {
+            typicalGapNanos = (typicalGapNanos + group.maxGapNanos) / 2;
+        }
+        List<Draft> drafts = new ArrayList<>(group.drafts);
+        drafts.sort(Comparator.comparing(Draft::messageId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return new Album(group.chatId, group.mediaGroupId, drafts, Duration.ofNanos(now - group.startNanos));
+    }
+
+    private long window(Group group) {
+        long gap = group.maxGapNanos > 0 ? group.maxGapNanos : typicalGapNanos;
+        return clamp(gap * WINDOW_GAPS);
+    }
+
+    private static long clamp(long windowNanos) {
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(MIN_WINDOW_MILLIS), Math.min(TimeUnit.MILLISECONDS.toNanos(MAX_WINDOW_MILLIS), windowNanos));
+    }
+
+    private void emit(Album album, String reason) {
+        Metrics.observeAlbumWait(reason, album.waited());
+        logger.debug("Album {} of {} messages assembled in {} ms ({})", album.mediaGroupId(), album.drafts()
+                .size(), album.waited()
+                .toMillis(), reason);
+        try {
+            consumer.accept(album);
+        } catch (RuntimeException e) {
+            logger.error("Failed to handle album {}: {}", album.mediaGroupId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Собранный альбом или одиночное сообщение
+     *
+     * @param chatId       идентификатор чата
+     * @param mediaGroupId идентификатор альбома, null для одиночного сообщения
+     * @param drafts       части альбома в порядке отправки
+     * @param waited       время от первой части до закрытия альбома
+     */
+    public record Album(Long chatId, String mediaGroupId, List<Draft> drafts, Duration waited) {
+
+        public Album {
+            drafts = List.copyOf(drafts);
+        }
+    }
+
+    private static class Group {
+        private final Long chatId;
+        private final String mediaGroupId;
+        private final long startNanos;
+        private final List<Draft> drafts = new ArrayList<>();
+        private long lastNanos;
+        private long maxGapNanos;
+        private ScheduledFuture<?> timer;
+
+        Group(Long chatId, String mediaGroupId, long startNanos) {
+            this.chatId = chatId;
+            this.mediaGroupId = mediaGroupId;
+            this.startNanos = startNanos;
+            this.lastNanos = startNanos;
+        }
+
+        void add(Draft draft, long now) {
+            if (!drafts.isEmpty()) {
+                maxGapNanos = Math.max(maxGapNanos, now - lastNanos);
+            }
+            drafts.add(draft);
+            lastNanos = now;
+        }
+    }
+}
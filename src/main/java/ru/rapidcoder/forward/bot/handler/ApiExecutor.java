@@ -0,0 +1,218 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Асинхронное выполнение вызовов Bot API.
+ * <p>
+ * Каждый вызов выполняется на виртуальном потоке, поэтому ожидание ответа Telegram не занимает поток платформы и
+ * одновременно могут выполняться сотни вызовов. Количество одновременных вызовов ограничено {@code maxInFlight},
+ * остальные ждут своей очереди. Ожидание слота лимитов Bot API передается отдельным шагом и выполняется до того, как
+ * вызов займет место среди одновременных. Результат вызова, не завершившегося за {@code timeout} с начала запроса,
+ * завершается {@link java.util.concurrent.TimeoutException}; ожидание очереди и лимитов в таймаут не входит. По
+ * таймауту поток вызова прерывается, а его место среди одновременных и очередь ключа сразу освобождаются, поэтому
+ * зависший запрос не задерживает следующие. Вызовы с одним ключом (например, редактирование меню одного чата)
+ * выполняются строго по очереди, чтобы Telegram получил их в порядке отправки.
+ */
+public class ApiExecutor {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final long timeoutNanos;
+    private static final Step NO_WAIT = () -> {
+    };
+    // Завершение последнего вызова по ключу или его таймаут: следующий вызов с тем же ключом выполняется после него
+    private final Map<Object, CompletableFuture<Void>> tails = new HashMap<>();
+
+    public ApiExecutor(int maxInFlight, Duration timeout) {
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Выполнить вызов асинхронно
+     *
+     * @param call вызов
+     * @return результат вызова
+     */
+    public <T> CompletableFuture<T> submit(Metrics.ApiCall<T> call) {
+        return submit(NO_WAIT, call);
+    }
+
+    /**
+     * Выполнить вызов асинхронно после ожидания, например, слота лимитов Bot API
+     *
+     * @param wait ожидание перед вызовом; ошибка ожидания завершает результат без вызова
+     * @param call вызов
+     * @return результат вызова
+     */
+    public <T> CompletableFuture<T> submit(Step wait, Metrics.ApiCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        start(wait, call, result, new CompletableFuture<>());
+        return result;
+    }
+
+    /**
+     * Выполнить вызов асинхронно после завершения предыдущего вызова с тем же ключом
+     *
+     * @param key  ключ очереди, например, идентификатор чата
+     * @param call вызов
+     * @return результат вызова
+     */
+    public <T> CompletableFuture<T> submit(Object key, Metrics.ApiCall<T> call) {
+        return submit(key, NO_WAIT, call);
+    }
+
+    /**
+     * Выполнить вызов асинхронно после завершения предыдущего вызова с тем же ключом и ожидания
+     *
+     * @param key  ключ очереди, например, идентификатор чата
+     * @param wait ожидание перед вызовом, начинается после завершения предыдущего вызова
+     * @param call вызов
+     * @return результат вызова
+     */
+    public <T> CompletableFuture<T> submit(Object key, Step wait, Metrics.ApiCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> tail;
+        synchronized (tails) {
+            tail = tails.put(key, done);
+        }
+        done.whenComplete((r, e) -> {
+            synchronized (tails) {
+                tails.remove(key, done);
+            }
+        });
+        if (tail == null) {
+            start(wait, call, result, done);
+        } else {
+            tail.whenComplete((r, e) -> start(wait, call, result, done));
+        }
+        return result;
+    }
+
+    /**
+     * Дождаться результата асинхронного вызова
+     *
+     * @param future результат вызова
+     * @return значение результата
+     * @throws TelegramApiException ошибка вызова; ошибки, не связанные с Bot API (например, таймаут), оборачиваются
+     */
+    public static <T> T join(CompletableFuture<T> future) throws TelegramApiException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new TelegramApiException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof TelegramApiException apiException) {
+                throw apiException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TelegramApiException(cause);
+        }
+    }
+
+    /**
+     * Исходная ошибка асинхронного вызова
+     *
+     * @param e ошибка из {@link CompletableFuture}
+     * @return ошибка без оберток {@link CompletionException} и {@link ExecutionException}
+     */
+    public static Throwable unwrap(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Количество выполняемых вызовов
+     *
+     * @return количество вызовов
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> void start(Step wait, Metrics.ApiCall<T> call, CompletableFuture<T> result, CompletableFuture<Void> done) {
+        try {
+            executor.execute(() -> run(wait, call, result, done));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            done.complete(null);
+        }
+    }
+
+    private <T> void run(Step wait, Metrics.ApiCall<T> call, CompletableFuture<T> result, CompletableFuture<Void> done) {
+        try {
+            wait.run();
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            done.complete(null);
+            return;
+        }
+        permits.acquireUninterruptibly();
+        Metrics.incApiInFlight();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                Metrics.decApiInFlight();
+                permits.release();
+                done.complete(null);
+            }
+        };
+        // Таймаут отсчитывается с начала запроса. Блокирующий ввод-вывод виртуального потока прерываемый, поэтому
+        // прерывание завершает зависший запрос, а место и очередь ключа освобождаются, не дожидаясь его
+        Thread thread = Thread.currentThread();
+        result.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS)
+                .whenComplete((r, e) -> {
+                    if (e instanceof TimeoutException) {
+                        thread.interrupt();
+                        release.run();
+                    }
+                });
+        try {
+            result.complete(call.execute());
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        } finally {
+            release.run();
+        }
+    }
+
+    /**
+     * Ожидание перед вызовом
+     */
+    @FunctionalInterface
+    public interface Step {
+        void run() throws TelegramApiException;
+    }
+}
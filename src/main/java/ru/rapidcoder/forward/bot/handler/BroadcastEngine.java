@@ -0,0 +1,214 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельная рассылка сообщения в несколько чатов.
+ * <p>
+ * Моменты отправки назначает {@link RateLimiter}, поэтому время рассылки определяется лимитами Bot API, а не
+ * количеством чатов. Потоки пула только запускают асинхронные отправки и не ждут ответа Telegram. Ответ 429
+ * возвращает чат в очередь через указанное в {@code retry_after} время. Отправка без ответа Bot API (таймаут, ошибка
+ * соединения) не повторяется: сообщение могло быть доставлено.
+ */
+public class BroadcastEngine {
+
+    public static final int DEFAULT_WORKERS = 8;
+    public static final int MAX_ATTEMPTS = 5;
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastEngine.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private final ScheduledExecutorService executor;
+    private final RateLimiter rateLimiter;
+
+    public BroadcastEngine(RateLimiter rateLimiter, int workers) {
+        this.rateLimiter = rateLimiter;
+        this.executor = Executors.newScheduledThreadPool(workers);
+    }
+
+    /**
+     * Запустить рассылку
+     *
+     * @param targets чаты для отправки
+     * @param sender  отправка сообщения в один чат
+     * @return состояние рассылки
+     */
+    public Broadcast submit(List<ChatMembership> targets, Sender sender) {
+        long start = System.nanoTime();
+        Broadcast broadcast = new Broadcast(targets.size(), Duration.ofNanos(rateLimiter.estimate(targets.size())));
+        if (!targets.isEmpty()) {
+            broadcast.getCompletion()
+                    .thenRun(() -> Metrics.observeBroadcast(start));
+        }
+        for (ChatMembership target : targets) {
+            schedule(broadcast, target, sender, 1);
+        }
+        broadcast.checkDone();
+        return broadcast;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Остановить рассылки. Запланированные, но не начатые отправки отменяются, а неудачные после остановки отправки
+     * не повторяются и не считаются окончательно неудавшимися: их судьбу решит владелец рассылки при следующем запуске
+     */
+    public void shutdown() {
+        List<Runnable> cancelled = executor.shutdownNow();
+        cancelled.forEach(task -> Metrics.decBroadcastQueue());
+    }
+
+    private void schedule(Broadcast broadcast, ChatMembership target, Sender sender, int attempt) {
+        long delay = rateLimiter.reserve(target.getChatId(), target.getChatType());
+        Metrics.incBroadcastQueue();
+        try {
+            executor.schedule(() -> {
+                Metrics.decBroadcastQueue();
+                send(broadcast, target, sender, attempt);
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            Metrics.decBroadcastQueue();
+            logger.debug("Broadcast stopped, message into '{}' not scheduled", target.getChatTitle());
+        }
+    }
+
+    private void send(Broadcast broadcast, ChatMembership target, Sender sender, int attempt) {
+        CompletionStage<?> sending;
+        try {
+            sending = sender.sendAsync(target);
+        } catch (RuntimeException e) {
+            sending = CompletableFuture.failedFuture(e);
+        }
+        sending.whenComplete((result, e) -> {
+            if (e == null) {
+                broadcast.onSent();
+            } else {
+                failed(broadcast, target, sender, attempt, ApiExecutor.unwrap(e));
+            }
+        });
+    }
+
+    private void failed(Broadcast broadcast, ChatMembership target, Sender sender, int attempt, Throwable e) {
+        if (executor.isShutdown()) {
+            logger.warn("Broadcast stopped, message into '{}' left unresolved: {}", target.getChatTitle(), e.getMessage());
+            return;
+        }
+        if (e instanceof TelegramApiRequestException requestException && requestException.getErrorCode() != null && requestException.getErrorCode() == TOO_MANY_REQUESTS && attempt < MAX_ATTEMPTS) {
+            int retryAfter = retryAfter(requestException.getParameters());
+            logger.warn("Too many requests to chat '{}', retry after {} s (attempt {})", target.getChatTitle(), retryAfter, attempt);
+            rateLimiter.penalize(target.getChatId(), retryAfter);
+            schedule(broadcast, target, sender, attempt + 1);
+        } else {
+            logger.error("Failed to send message into '{}': {}", target.getChatTitle(), e.getMessage(), e);
+            Exception cause = e instanceof Exception exception ? exception : new IllegalStateException(e);
+            sender.failed(target, cause);
+            broadcast.onFailed();
+        }
+    }
+
+    private int retryAfter(ResponseParameters parameters) {
+        if (parameters == null || parameters.getRetryAfter() == null) {
+            return 1;
+        }
+        return Math.max(1, parameters.getRetryAfter());
+    }
+
+    /**
+     * Отправка сообщения в один чат рассылки
+     */
+    @FunctionalInterface
+    public interface Sender {
+        /**
+         * Отправить сообщение в чат
+         *
+         * @param target чат
+         * @return завершение отправки
+         */
+        CompletionStage<?> sendAsync(ChatMembership target);
+
+        /**
+         * Отправка в чат окончательно не удалась, повторов не будет
+         *
+         * @param target чат
+         * @param e      последняя ошибка
+         */
+        default void failed(ChatMembership target, Exception e) {
+        }
+    }
+
+    /**
+     * Состояние запущенной рассылки
+     */
+    public static class Broadcast {
+        private final int total;
+        private final Duration estimated;
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final CompletableFuture<Broadcast> completion = new CompletableFuture<>();
+
+        Broadcast(int total, Duration estimated) {
+            this.total = total;
+            this.estimated = estimated;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getSent() {
+            return sent.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getPending() {
+            return total - sent.get() - failed.get();
+        }
+
+        /**
+         * Оценка длительности рассылки по лимитам Bot API
+         *
+         * @return оценка длительности
+         */
+        public Duration getEstimated() {
+            return estimated;
+        }
+
+        public CompletableFuture<Broadcast> getCompletion() {
+            return completion;
+        }
+
+        private void onSent() {
+            sent.incrementAndGet();
+            checkDone();
+        }
+
+        private void onFailed() {
+            failed.incrementAndGet();
+            checkDone();
+        }
+
+        private void checkDone() {
+            if (getPending() == 0) {
+                completion.complete(this);
+            }
+        }
+    }
+}
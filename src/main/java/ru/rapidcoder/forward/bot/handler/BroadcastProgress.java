@@ -0,0 +1,190 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Сообщение с ходом рассылки.
+ * <p>
+ * При запуске рассылки пользователю отправляется сообщение, которое затем редактируется по событиям завершения
+ * отправок из {@link BroadcastQueue}. События только отмечают, что показанные данные устарели; само сообщение
+ * редактируется не чаще одного раза за {@code interval}, счетчики при этом читаются из {@link BroadcastStorage}.
+ * Поэтому количество вызовов Bot API определяется длительностью рассылки, а не количеством чатов. Ход рассылки
+ * хранится в памяти: рассылки, продолженные после перезапуска, сообщение не обновляют.
+ */
+public class BroadcastProgress {
+
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(3);
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastProgress.class);
+    private final Map<Long, Tracker> trackers = new ConcurrentHashMap<>();
+    private final BroadcastStorage storage;
+    private final Display display;
+    private final long intervalNanos;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual()
+            .name("broadcast-progress")
+            .factory());
+
+    public BroadcastProgress(BroadcastStorage storage, Display display, Duration interval) {
+        this(storage, display, interval, System::nanoTime);
+    }
+
+    public BroadcastProgress(BroadcastStorage storage, Display display, Duration interval, LongSupplier clock) {
+        this.storage = storage;
+        this.display = display;
+        this.intervalNanos = interval.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Отправить сообщение с ходом рассылки
+     *
+     * @param jobId     идентификатор рассылки
+     * @param chatId    чат пользователя, запустившего рассылку
+     * @param total     количество чатов рассылки
+     * @param estimated оценка длительности рассылки по лимитам Bot API
+     */
+    public void start(long jobId, Long chatId, int total, Duration estimated) {
+        Tracker tracker = new Tracker(jobId, chatId, total, estimated, clock.getAsLong());
+        trackers.put(jobId, tracker);
+        display.send(chatId, render(tracker, 0, 0, false))
+                .whenComplete((messageId, e) -> {
+                    if (e != null || messageId == null) {
+                        logger.warn("Failed to show broadcast job {} progress", jobId);
+                        trackers.remove(jobId);
+                        return;
+                    }
+                    synchronized (tracker) {
+                        tracker.messageId = messageId;
+                        tracker.lastEdit = clock.getAsLong();
+                        // Отправки могли завершиться до появления сообщения
+                        tracker.dirty = true;
+                    }
+                    schedule(tracker);
+                });
+    }
+
+    /**
+     * Отметить завершение отправки в один из чатов рассылки
+     *
+     * @param jobId идентификатор рассылки
+     */
+    public void update(long jobId) {
+        Tracker tracker = trackers.get(jobId);
+        if (tracker == null) {
+            return;
+        }
+        synchronized (tracker) {
+            tracker.dirty = true;
+        }
+        schedule(tracker);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void schedule(Tracker tracker) {
+        long delay;
+        synchronized (tracker) {
+            if (tracker.messageId == null || !tracker.dirty || tracker.scheduled) {
+                return;
+            }
+            tracker.scheduled = true;
+            delay = Math.max(0, tracker.lastEdit + intervalNanos - clock.getAsLong());
+        }
+        scheduler.schedule(() -> edit(tracker), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void edit(Tracker tracker) {
+        synchronized (tracker) {
+            tracker.scheduled = false;
+            tracker.dirty = false;
+            tracker.lastEdit = clock.getAsLong();
+        }
+        Map<String, Integer> counts = storage.getTaskCounts(tracker.jobId);
+        int sent = counts.getOrDefault(BroadcastStorage.SENT, 0);
+        int failed = counts.getOrDefault(BroadcastStorage.FAILED, 0);
+        boolean done = sent + failed >= tracker.total;
+        if (done) {
+            trackers.remove(tracker.jobId);
+        }
+        try {
+            display.edit(tracker.chatId, tracker.messageId, render(tracker, sent, failed, done));
+        } catch (RuntimeException e) {
+            logger.error("Failed to update broadcast job {} progress: {}", tracker.jobId, e.getMessage(), e);
+        }
+    }
+
+    private String render(Tracker tracker, int sent, int failed, boolean done) {
+        int pending = Math.max(0, tracker.total - sent - failed);
+        if (done) {
+            return String.format("✅ Рассылка завершена%nОтправлено: %d из %d%nОшибок: %d", sent, tracker.total, failed);
+        }
+        return String.format("⏳ Рассылка выполняется%nОтправлено: %d из %d%nОшибок: %d%nОсталось: %d%nОриентировочно еще %d сек.", sent, tracker.total, failed, pending, eta(tracker, sent + failed, pending));
+    }
+
+    // Пока отправок нет, время оценивается по лимитам Bot API, затем — по фактической скорости рассылки
+    private long eta(Tracker tracker, int completed, int pending) {
+        long nanos;
+        if (completed == 0) {
+            nanos = tracker.estimated.toNanos();
+        } else {
+            long elapsed = clock.getAsLong() - tracker.start;
+            nanos = (long) ((double) elapsed / completed * pending);
+        }
+        return Math.max(pending > 0 ? 1 : 0, TimeUnit.NANOSECONDS.toSeconds(nanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Показ сообщения с ходом рассылки
+     */
+    public interface Display {
+        /**
+         * Отправить сообщение
+         *
+         * @param chatId идентификатор чата
+         * @param text   текст
+         * @return идентификатор отправленного сообщения
+         */
+        CompletionStage<Integer> send(Long chatId, String text);
+
+        /**
+         * Изменить текст отправленного сообщения
+         *
+         * @param chatId    идентификатор чата
+         * @param messageId идентификатор сообщения
+         * @param text      новый текст
+         */
+        void edit(Long chatId, Integer messageId, String text);
+    }
+
+    private static final class Tracker {
+        private final long jobId;
+        private final Long chatId;
+        private final int total;
+        private final Duration estimated;
+        private final long start;
+        private Integer messageId;
+        private long lastEdit;
+        private boolean dirty;
+        private boolean scheduled;
+
+        Tracker(long jobId, Long chatId, int total, Duration estimated, long start) {
+            this.jobId = jobId;
+            this.chatId = chatId;
+            this.total = total;
+            this.estimated = estimated;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.rapidcoder.forward.bot.dto.BroadcastJob;
+import ru.rapidcoder.forward.bot.dto.BroadcastTask;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.Draft;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработчик очереди рассылок из {@link BroadcastStorage}.
+ * <p>
+ * Рассылка сначала сохраняется в базу, затем обработчик пачками по {@link #CLAIM_BATCH_SIZE} берет ожидающие
+ * отправки и передает их в {@link BroadcastEngine}. Следующая пачка берется после завершения предыдущей, поэтому
+ * в памяти находится не больше одной пачки. При запуске незавершенные рассылки прошлого процесса продолжаются.
+ * Результат отправки сохраняется в базу в отдельных потоках, а не в потоке, завершившем запрос к Bot API.
+ */
+public class BroadcastQueue {
+
+    public static final int CLAIM_BATCH_SIZE = 100;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastQueue.class);
+    private final BroadcastStorage storage;
+    private final BroadcastEngine engine;
+    private final JobSender sender;
+    private final Semaphore signal = new Semaphore(0);
+    private final ExecutorService storageExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+            .name("broadcast-storage-", 0)
+            .factory());
+    private volatile boolean running;
+    private Thread worker;
+
+    public BroadcastQueue(BroadcastStorage storage, BroadcastEngine engine, JobSender sender) {
+        this.storage = storage;
+        this.engine = engine;
+        this.sender = sender;
+    }
+
+    /**
+     * Восстановить очередь после перезапуска и запустить обработку
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        signal.release();
+        worker = Thread.ofVirtual()
+                .name("broadcast-queue")
+                .start(this::run);
+    }
+
+    /**
+     * Остановить обработку очереди и {@link BroadcastEngine}. Взятые, но не начатые отправки остаются взятыми и
+     * продолжатся при следующем запуске. Результаты уже завершенных отправок сохраняются до возврата из метода
+     */
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        engine.shutdown();
+        storageExecutor.shutdown();
+        try {
+            storageExecutor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+
+    /**
+     * Поставить рассылку в очередь
+     *
+     * @param userId   идентификатор пользователя
+     * @param userName имя пользователя
+     * @param drafts   рассылаемые сообщения
+     * @param targets  чаты для отправки
+     * @return идентификатор рассылки
+     */
+    public long enqueue(Long userId, String userName, List<Draft> drafts, List<ChatMembership> targets) {
+        long jobId = storage.createJob(userId, userName, drafts, targets);
+        signal.release();
+        return jobId;
+    }
+
+    private void run() {
+        try {
+            storage.recover();
+        } catch (RuntimeException e) {
+            logger.error("Failed to recover broadcast queue: {}", e.getMessage(), e);
+        }
+        while (running) {
+            try {
+                signal.acquire();
+                signal.drainPermits();
+                List<BroadcastTask> tasks;
+                while (running && !(tasks = storage.claimTasks(CLAIM_BATCH_SIZE)).isEmpty()) {
+                    process(tasks).get();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException | RuntimeException e) {
+                logger.error("Failed to process broadcast queue: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> process(List<BroadcastTask> tasks) {
+        Map<Long, List<ChatMembership>> targetsByJob = new LinkedHashMap<>();
+        for (BroadcastTask task : tasks) {
+            targetsByJob.computeIfAbsent(task.jobId(), k -> new ArrayList<>())
+                    .add(task.target());
+        }
+        List<CompletableFuture<?>> completions = new ArrayList<>();
+        targetsByJob.forEach((jobId, targets) -> {
+            BroadcastJob job = storage.getJob(jobId);
+            if (job == null || job.drafts()
+                    .isEmpty()) {
+                logger.error("Broadcast job {} not found, {} targets skipped", jobId, targets.size());
+                targets.forEach(target -> finished(jobId, storage.markFailed(jobId, target.getChatId(), "job not found")));
+                return;
+            }
+            completions.add(engine.submit(targets, new TaskSender(job))
+                    .getCompletion());
+        });
+        return CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private void finished(long jobId, boolean done) {
+        sender.progress(jobId);
+        if (done) {
+            Map<String, Integer> counts = storage.getTaskCounts(jobId);
+            logger.info("Broadcast job {} finished: sent={}, failed={}", jobId, counts.getOrDefault(BroadcastStorage.SENT, 0), counts.getOrDefault(BroadcastStorage.FAILED, 0));
+        }
+    }
+
+    /**
+     * Отправка сообщений рассылки в один чат
+     */
+    @FunctionalInterface
+    public interface JobSender {
+        /**
+         * Отправить сообщения рассылки в чат
+         *
+         * @param job    рассылка
+         * @param target чат
+         * @return завершение отправки
+         */
+        CompletionStage<?> sendAsync(BroadcastJob job, ChatMembership target);
+
+        /**
+         * Отправка в один из чатов рассылки завершена: успешно или окончательно не удалась
+         *
+         * @param jobId идентификатор рассылки
+         */
+        default void progress(long jobId) {
+        }
+    }
+
+    private class TaskSender implements BroadcastEngine.Sender {
+        private final BroadcastJob job;
+
+        TaskSender(BroadcastJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public CompletionStage<?> sendAsync(ChatMembership target) {
+            long chatId = target.getChatId();
+            if (!storage.markSending(job.jobId(), chatId)) {
+                logger.warn("Broadcast task {} already handled, skipped", BroadcastStorage.idempotencyKey(job.jobId(), chatId));
+                return CompletableFuture.completedFuture(null);
+            }
+            return sender.sendAsync(job, target)
+                    .handleAsync((result, e) -> {
+                        if (e == null) {
+                            finished(job.jobId(), storage.markSent(job.jobId(), chatId));
+                            return null;
+                        }
+                        Throwable cause = ApiExecutor.unwrap(e);
+                        if (cause instanceof TelegramApiRequestException) {
+                            // Bot API ответил ошибкой, сообщение не отправлено: попытку можно повторить.
+                            // Без ответа (таймаут, ошибка соединения) сообщение могло быть доставлено, отправка
+                            // остается начатой и считается неудавшейся
+                            storage.release(job.jobId(), chatId, cause.getMessage());
+                        }
+                        throw new CompletionException(cause);
+                    }, storageExecutor);
+        }
+
+        @Override
+        public void failed(ChatMembership target, Exception e) {
+            finished(job.jobId(), storage.markFailed(job.jobId(), target.getChatId(), e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.dto.BroadcastJob;
+import ru.rapidcoder.forward.bot.dto.BroadcastTask;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.Draft;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Очередь рассылок в базе данных.
+ * <p>
+ * Рассылка хранится в {@code broadcast_jobs}, отправка в каждый чат — строкой {@code broadcast_tasks} со статусом
+ * и числом попыток. Ключ идемпотентности {@code <job_id>:<chat_id>} не дает поставить чат в рассылку дважды,
+ * а переход в {@link #SENDING} выполняется только из {@link #CLAIMED}, поэтому одну отправку не начнут два
+ * обработчика.
+ */
+public class BroadcastStorage {
+
+    public static final String PENDING = "pending";
+    public static final String CLAIMED = "claimed";
+    public static final String SENDING = "sending";
+    public static final String SENT = "sent";
+    public static final String FAILED = "failed";
+    private static final String STORAGE_NAME = "broadcast";
+    private static final String JOB_DONE = "done";
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastStorage.class);
+    private static BroadcastStorage instance;
+    private final ConnectionPool pool;
+    private final StorageWriter writer;
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(MapperFeature.AUTO_DETECT_GETTERS, MapperFeature.AUTO_DETECT_IS_GETTERS)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+
+    private BroadcastStorage(String storageFile) {
+        logger.info("Initializing BroadcastStorage with storage file: {}", storageFile);
+        if (StringUtils.isEmpty(storageFile)) {
+            throw new IllegalArgumentException("Storage file not defined");
+        }
+        this.pool = ConnectionPool.getInstance(storageFile);
+        this.writer = StorageWriter.getInstance(storageFile);
+        SchemaMigrations.migrate(pool);
+    }
+
+    public static synchronized BroadcastStorage getInstance(String storageFile) {
+        if (instance == null) {
+            instance = new BroadcastStorage(storageFile);
+        }
+        return instance;
+    }
+
+    /**
+     * Ключ идемпотентности отправки рассылки в чат
+     *
+     * @param jobId  идентификатор рассылки
+     * @param chatId идентификатор чата
+     * @return ключ
+     */
+    public static String idempotencyKey(long jobId, long chatId) {
+        return jobId + ":" + chatId;
+    }
+
+    private PooledConnection getConnection(String query) throws SQLException {
+        return pool.acquire()
+                .timed(STORAGE_NAME, query);
+    }
+
+    /**
+     * Сохранить рассылку и ее отправки одной транзакцией
+     *
+     * @param userId   идентификатор пользователя
+     * @param userName имя пользователя
+     * @param drafts   рассылаемые сообщения
+     * @param targets  чаты для отправки, повторы игнорируются
+     * @return идентификатор рассылки
+     */
+    public long createJob(Long userId, String userName, List<Draft> drafts, List<ChatMembership> targets) {
+        String sqlJob = "INSERT INTO broadcast_jobs (user_id, user_name, messages) VALUES (?, ?, ?) RETURNING job_id";
+        String sqlTask = """
+                INSERT OR IGNORE INTO broadcast_tasks (job_id, chat_id, chat_title, chat_type, idempotency_key)
+                VALUES (?, ?, ?, ?, ?)
+                """;
+        long[] jobId = new long[1];
+        try {
+            String json = objectMapper.writeValueAsString(drafts);
+            writer.execute(STORAGE_NAME, "createJob", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sqlJob);
+                if (userId != null) {
+                    stmt.setLong(1, userId);
+                } else {
+                    stmt.setNull(1, Types.INTEGER);
+                }
+                stmt.setString(2, userName);
+                stmt.setString(3, json);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    jobId[0] = rs.getLong(1);
+                }
+                int rows = 1;
+                PreparedStatement taskStmt = conn.prepareStatement(sqlTask);
+                for (ChatMembership target : targets) {
+                    taskStmt.setLong(1, jobId[0]);
+                    taskStmt.setLong(2, target.getChatId());
+                    taskStmt.setString(3, target.getChatTitle());
+                    taskStmt.setString(4, target.getChatType());
+                    taskStmt.setString(5, idempotencyKey(jobId[0], target.getChatId()));
+                    rows += taskStmt.executeUpdate();
+                }
+                return rows;
+            });
+            logger.debug("Broadcast job {} saved with {} targets", jobId[0], targets.size());
+            return jobId[0];
+        } catch (JsonProcessingException | SQLException e) {
+            throw new IllegalArgumentException("Failed to save broadcast job", e);
+        }
+    }
+
+    /**
+     * Получить рассылку
+     *
+     * @param jobId идентификатор рассылки
+     * @return рассылка или null, если не найдена
+     */
+    public BroadcastJob getJob(long jobId) {
+        String sql = "SELECT user_id, user_name, messages FROM broadcast_jobs WHERE job_id = ?";
+        try (PooledConnection conn = getConnection("getJob")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, jobId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Long userId = rs.getObject("user_id") != null ? rs.getLong("user_id") : null;
+                    List<Draft> drafts = objectMapper.readValue(rs.getString("messages"), new TypeReference<>() {
+                    });
+                    return new BroadcastJob(jobId, userId, rs.getString("user_name"), drafts);
+                }
+            }
+        } catch (SQLException | JsonProcessingException e) {
+            logger.error("Failed to get broadcast job {}: {}", jobId, e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Взять пачку ожидающих отправок в обработку
+     *
+     * @param limit максимальный размер пачки
+     * @return взятые отправки в порядке постановки в очередь
+     */
+    public List<BroadcastTask> claimTasks(int limit) {
+        String sql = """
+                UPDATE broadcast_tasks SET status = 'claimed', updated_at = CURRENT_TIMESTAMP
+                WHERE task_id IN (SELECT task_id FROM broadcast_tasks WHERE status = 'pending' ORDER BY task_id LIMIT ?)
+                RETURNING task_id, job_id, chat_id, chat_title, chat_type, attempts
+                """;
+        List<BroadcastTask> tasks = new ArrayList<>();
+        try {
+            writer.execute(STORAGE_NAME, "claimTasks", conn -> {
+                tasks.clear();
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setInt(1, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ChatMembership target = new ChatMembership();
+                        target.setChatId(rs.getLong("chat_id"));
+                        target.setChatTitle(rs.getString("chat_title"));
+                        target.setChatType(rs.getString("chat_type"));
+                        tasks.add(new BroadcastTask(rs.getLong("job_id"), target, rs.getInt("attempts")));
+                    }
+                }
+                return tasks.size();
+            });
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("Failed to claim broadcast tasks", e);
+        }
+        tasks.sort((a, b) -> Long.compare(a.jobId(), b.jobId()));
+        return tasks;
+    }
+
+    /**
+     * Отметить начало отправки. Удается только для взятой в обработку и еще не начатой отправки
+     *
+     * @param jobId  идентификатор рассылки
+     * @param chatId идентификатор чата
+     * @return true, если отправку можно выполнять
+     */
+    public boolean markSending(long jobId, long chatId) {
+        String sql = """
+                UPDATE broadcast_tasks SET status = 'sending', attempts = attempts + 1, last_error = COALESCE(?, last_error),
+                    updated_at = CURRENT_TIMESTAMP
+                WHERE idempotency_key = ? AND status = 'claimed'
+                """;
+        return updateTask("markSending", sql, jobId, chatId, null) > 0;
+    }
+
+    /**
+     * Вернуть неудавшуюся попытку отправки в обработку для повтора
+     *
+     * @param jobId  идентификатор рассылки
+     * @param chatId идентификатор чата
+     * @param error  текст ошибки
+     */
+    public void release(long jobId, long chatId, String error) {
+        String sql = """
+                UPDATE broadcast_tasks SET status = 'claimed', last_error = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE idempotency_key = ? AND status = 'sending'
+                """;
+        updateTask("release", sql, jobId, chatId, error);
+    }
+
+    /**
+     * Отметить успешную отправку
+     *
+     * @param jobId  идентификатор рассылки
+     * @param chatId идентификатор чата
+     * @return true, если этой отправкой рассылка завершена
+     */
+    public boolean markSent(long jobId, long chatId) {
+        String sql = """
+                UPDATE broadcast_tasks SET status = 'sent', last_error = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE idempotency_key = ? AND status = 'sending'
+                """;
+        return completeTask("markSent", sql, jobId, chatId, null);
+    }
+
+    /**
+     * Отметить окончательно неудавшуюся отправку
+     *
+     * @param jobId  идентификатор рассылки
+     * @param chatId идентификатор чата
+     * @param error  текст ошибки
+     * @return true, если этой отправкой рассылка завершена
+     */
+    public boolean markFailed(long jobId, long chatId, String error) {
+        String sql = """
+                UPDATE broadcast_tasks SET status = 'failed', last_error = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE idempotency_key = ? AND status IN ('claimed', 'sending')
+                """;
+        return completeTask("markFailed", sql, jobId, chatId, error);
+    }
+
+    /**
+     * Восстановить очередь после перезапуска: взятые, но не начатые отправки возвращаются в ожидание, а прерванные
+     * во время запроса к Bot API считаются неудавшимися, чтобы чат не получил сообщение дважды
+     *
+     * @return количество возвращенных в ожидание отправок
+     */
+    public int recover() {
+        String sqlResume = "UPDATE broadcast_tasks SET status = 'pending', updated_at = CURRENT_TIMESTAMP WHERE status = 'claimed'";
+        String sqlInterrupted = """
+                UPDATE broadcast_tasks SET status = 'failed', last_error = 'interrupted', updated_at = CURRENT_TIMESTAMP
+                WHERE status = 'sending'
+                """;
+        String sqlFinish = """
+                UPDATE broadcast_jobs SET status = 'done', finished_at = CURRENT_TIMESTAMP
+                WHERE status = 'active' AND NOT EXISTS (
+                    SELECT 1 FROM broadcast_tasks t
+                    WHERE t.job_id = broadcast_jobs.job_id AND t.status IN ('pending', 'claimed', 'sending'))
+                """;
+        int[] counts = new int[2];
+        try {
+            writer.execute(STORAGE_NAME, "recover", conn -> {
+                counts[0] = conn.prepareStatement(sqlResume)
+                        .executeUpdate();
+                counts[1] = conn.prepareStatement(sqlInterrupted)
+                        .executeUpdate();
+                return counts[0] + counts[1] + conn.prepareStatement(sqlFinish)
+                        .executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("Failed to recover broadcast tasks", e);
+        }
+        if (counts[0] > 0 || counts[1] > 0) {
+            logger.info("Broadcast queue recovered: resumed={}, interrupted={}", counts[0], counts[1]);
+        }
+        return counts[0];
+    }
+
+    /**
+     * Количество отправок рассылки по статусам
+     *
+     * @param jobId идентификатор рассылки
+     * @return количество отправок для каждого статуса
+     */
+    public Map<String, Integer> getTaskCounts(long jobId) {
+        String sql = "SELECT status, COUNT(*) FROM broadcast_tasks WHERE job_id = ? GROUP BY status";
+        Map<String, Integer> counts = new HashMap<>();
+        try (PooledConnection conn = getConnection("getTaskCounts")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, jobId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to get broadcast job {} progress: {}", jobId, e.getMessage(), e);
+        }
+        return counts;
+    }
+
+    /**
+     * Проверить, завершена ли рассылка
+     *
+     * @param jobId идентификатор рассылки
+     * @return true, если все отправки рассылки выполнены или окончательно не удались
+     */
+    public boolean isJobDone(long jobId) {
+        String sql = "SELECT status FROM broadcast_jobs WHERE job_id = ?";
+        try (PooledConnection conn = getConnection("isJobDone")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, jobId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && JOB_DONE.equals(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to get broadcast job {} status: {}", jobId, e.getMessage(), e);
+        }
+        return false;
+    }
+
+    private int updateTask(String query, String sql, long jobId, long chatId, String error) {
+        try {
+            return writer.execute(STORAGE_NAME, query, conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setString(1, StringUtils.abbreviate(error, MAX_ERROR_LENGTH));
+                stmt.setString(2, idempotencyKey(jobId, chatId));
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to update broadcast task %s", idempotencyKey(jobId, chatId)), e);
+        }
+    }
+
+    private boolean completeTask(String query, String sql, long jobId, long chatId, String error) {
+        String sqlFinish = """
+                UPDATE broadcast_jobs SET status = 'done', finished_at = CURRENT_TIMESTAMP
+                WHERE job_id = ? AND status = 'active' AND NOT EXISTS (
+                    SELECT 1 FROM broadcast_tasks WHERE job_id = ? AND status IN ('pending', 'claimed', 'sending'))
+                """;
+        boolean[] finished = new boolean[1];
+        try {
+            writer.execute(STORAGE_NAME, query, conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setString(1, StringUtils.abbreviate(error, MAX_ERROR_LENGTH));
+                stmt.setString(2, idempotencyKey(jobId, chatId));
+                int rows = stmt.executeUpdate();
+                PreparedStatement finishStmt = conn.prepareStatement(sqlFinish);
+                finishStmt.setLong(1, jobId);
+                finishStmt.setLong(2, jobId);
+                finished[0] = finishStmt.executeUpdate() > 0;
+                return rows + (finished[0] ? 1 : 0);
+            });
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to complete broadcast task %s", idempotencyKey(jobId, chatId)), e);
+        }
+        return finished[0];
+    }
+}
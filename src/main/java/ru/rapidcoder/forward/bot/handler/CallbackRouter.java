@@ -0,0 +1,224 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.util.Arrays;
+
+/**
+ * Таблица маршрутов callback_data.
+ * <p>
+ * Маршруты хранятся в сжатом префиксном дереве, поэтому поиск обработчика проходит {@code callback_data} один раз
+ * и не зависит от количества зарегистрированных маршрутов. Маршрут бывает точным ({@code menu_help}) или префиксным с
+ * числовым аргументом ({@code chat_toggle_3}); аргумент разбирается прямо из строки без создания подстрок, при
+ * совпадении нескольких префиксов выбирается самый длинный. Маршруты регистрируются до начала обработки обновлений,
+ * после этого таблица только читается и может использоваться из нескольких потоков.
+ */
+public class CallbackRouter {
+
+    private final Node root = new Node("");
+    private int size;
+
+    /**
+     * Зарегистрировать обработчик точного значения callback_data
+     *
+     * @param data    значение callback_data
+     * @param handler обработчик
+     * @return эта таблица
+     */
+    public CallbackRouter route(String data, Action handler) {
+        Node node = insert(data);
+        if (node.exact != null) {
+            throw new IllegalArgumentException("Callback route '" + data + "' already registered");
+        }
+        node.exact = handler;
+        size++;
+        return this;
+    }
+
+    /**
+     * Зарегистрировать обработчик callback_data вида префикс + число
+     *
+     * @param prefix  префикс
+     * @param radix   основание системы счисления аргумента
+     * @param handler обработчик
+     * @return эта таблица
+     */
+    public CallbackRouter routeNumeric(String prefix, int radix, Handler handler) {
+        Node node = insert(prefix);
+        if (node.numeric != null) {
+            throw new IllegalArgumentException("Callback route '" + prefix + "*' already registered");
+        }
+        node.numeric = handler;
+        node.radix = radix;
+        size++;
+        return this;
+    }
+
+    /**
+     * Количество зарегистрированных маршрутов
+     *
+     * @return количество маршрутов
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Найти маршрут и вызвать его обработчик
+     *
+     * @param callback нажатие кнопки
+     * @return результат маршрутизации
+     */
+    public Result dispatch(Callback callback) {
+        String data = callback.data();
+        if (data == null) {
+            return Result.NOT_FOUND;
+        }
+        int length = data.length();
+        Node node = root;
+        Node numeric = null;
+        int argumentStart = 0;
+        int position = 0;
+        while (true) {
+            if (node.numeric != null) {
+                numeric = node;
+                argumentStart = position;
+            }
+            if (position == length) {
+                break;
+            }
+            Node child = node.child(data.charAt(position));
+            if (child == null || !data.startsWith(child.label, position)) {
+                break;
+            }
+            position += child.label.length();
+            node = child;
+        }
+        if (position == length && node.exact != null) {
+            node.exact.handle(callback);
+            return Result.HANDLED;
+        }
+        if (numeric == null) {
+            return Result.NOT_FOUND;
+        }
+        long argument;
+        try {
+            argument = Long.parseLong(data, argumentStart, length, numeric.radix);
+        } catch (NumberFormatException e) {
+            return Result.INVALID_ARGUMENT;
+        }
+        numeric.numeric.handle(callback, argument);
+        return Result.HANDLED;
+    }
+
+    private Node insert(String key) {
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = node.indexOf(key.charAt(position));
+            if (index < 0) {
+                Node child = new Node(key.substring(position));
+                node.add(child);
+                return child;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, position);
+            if (common < child.label.length()) {
+                // Разделить ребро: общая часть становится отдельным узлом
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.add(child);
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+        return node;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    public enum Result {
+        HANDLED, NOT_FOUND, INVALID_ARGUMENT
+    }
+
+    /**
+     * Обработчик точного маршрута
+     */
+    @FunctionalInterface
+    public interface Action {
+        void handle(Callback callback);
+    }
+
+    /**
+     * Обработчик маршрута с числовым аргументом
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(Callback callback, long argument);
+    }
+
+    /**
+     * Нажатие кнопки меню
+     *
+     * @param id        идентификатор callback query
+     * @param data      callback_data кнопки
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения с меню
+     * @param from      пользователь
+     */
+    public record Callback(String id, String data, Long chatId, Integer messageId, User from) {
+
+        public Long userId() {
+            return from.getId();
+        }
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private String label;
+        // Первые символы меток дочерних узлов, отсортированы для двоичного поиска
+        private char[] firsts = new char[0];
+        private Node[] children = NO_CHILDREN;
+        private Action exact;
+        private Handler numeric;
+        private int radix;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int index = indexOf(first);
+            return index < 0 ? null : children[index];
+        }
+
+        int indexOf(char first) {
+            int index = Arrays.binarySearch(firsts, first);
+            return index < 0 ? -1 : index;
+        }
+
+        void add(Node child) {
+            char first = child.label.charAt(0);
+            int index = -Arrays.binarySearch(firsts, first) - 1;
+            char[] newFirsts = new char[firsts.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newFirsts[index] = first;
+            newChildren[index] = child;
+            System.arraycopy(firsts, index, newFirsts, index + 1, firsts.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            firsts = newFirsts;
+            children = newChildren;
+        }
+    }
+}
@@ -1,22 +1,31 @@
 package ru.rapidcoder.forward.bot.handler;
 
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
-import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import ru.rapidcoder.forward.bot.dto.ChatMembership;
 import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
 import ru.rapidcoder.forward.bot.dto.HistorySending;
 
-import java.io.File;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ChannelManager {
 
-    private final ChannelStorage storage;
-    private final String storageFile;
+    private final ChannelStore storage;
+    private final StorageExporter exporter;
 
     public ChannelManager(String storageFile) {
-        this.storageFile = storageFile;
-        this.storage = ChannelStorage.getInstance(storageFile);
+        this(StorageBackend.channels(storageFile), StorageBackend.exporter(storageFile));
+    }
+
+    /**
+     * @param storage  хранилище каналов
+     * @param exporter выгрузка базы или {@code null}, если хранилище ее не поддерживает
+     */
+    public ChannelManager(ChannelStore storage, StorageExporter exporter) {
+        this.storage = storage;
+        this.exporter = exporter;
     }
 
     /**
@@ -64,6 +73,28 @@ public class ChannelManager {
         storage.saveHistorySendingToChat(send);
     }
 
+    /**
+     * Поставить отправленное сообщение в очередь записи истории отправки, не дожидаясь фиксации
+     *
+     * @param chatId    идентификатор чата
+     * @param userId    идетификатор пользователя
+     * @param userName  имя пользователя
+     * @param title     название чата
+     * @param messageId идентификатор сообщения
+     * @param text      часть текста отправленного сообщения
+     * @return завершается после фиксации записи
+     */
+    public CompletableFuture<Integer> saveHistorySendingAsync(Long chatId, Long userId, String userName, String title, Integer messageId, String text) {
+        HistorySending send = new HistorySending();
+        send.setChatId(chatId);
+        send.setUserId(userId);
+        send.setUserName(userName);
+        send.setChatTitle(title);
+        send.setMessageId(messageId);
+        send.setText(text);
+        return storage.saveHistorySendingToChatAsync(send);
+    }
+
     /**
      * Получить информацию о канале/группе
      *
@@ -95,12 +126,23 @@ public class ChannelManager {
     }
 
     /**
-     * Получить список всех каналов/групп, на которые подписан бот
+     * Получить список всех каналов/групп, на которые подписан бот. Список берется из памяти и не должен изменяться
      *
-     * @return список каналов/групп подписки бота
+     * @return неизменяемый список каналов/групп подписки бота
      */
     public List<ChatMembership> getAll() {
-        return storage.getAllChats();
+        return storage.getChatsSnapshot()
+                .chats();
+    }
+
+    /**
+     * Получить версию списка каналов/групп. Версия меняется при каждом сохранении или удалении канала
+     *
+     * @return версия списка {@link #getAll()}
+     */
+    public long getVersion() {
+        return storage.getChatsSnapshot()
+                .version();
     }
 
     /**
@@ -112,6 +154,28 @@ public class ChannelManager {
         return storage.getHistoryChats();
     }
 
+    /**
+     * Получить страницу истории подписок бота
+     *
+     * @param cursor курсор страницы или {@code null} для последних записей
+     * @param older  направление: к более старым записям или к более новым
+     * @return страница истории подписок
+     */
+    public HistoryPage<HistoryChatMembership> getHistoryPage(Long cursor, boolean older) {
+        return storage.getHistoryChatsPage(cursor, older);
+    }
+
+    /**
+     * Получить страницу истории отправки сообщений в каналы/группы
+     *
+     * @param cursor курсор страницы или {@code null} для последних записей
+     * @param older  направление: к более старым записям или к более новым
+     * @return страница истории отправки
+     */
+    public HistoryPage<HistorySending> getHistorySendingPage(Long cursor, boolean older) {
+        return storage.getHistorySendingPage(cursor, older);
+    }
+
     /**
      * Получить историю отправки сообщений в каналы/группы
      *
@@ -125,13 +189,28 @@ public class ChannelManager {
      * Выгрузить данные из базы
      *
      * @param chatId идентификатор чата
-     * @return файл с данными из базы
+     * @return сжатый снимок базы или ранее загруженный файл, если данные не изменились; {@code null}, если
+     * хранилище не поддерживает выгрузку
      */
     public SendDocument uploadData(Long chatId) {
-        File file = new File(storageFile);
+        if (exporter == null) {
+            return null;
+        }
         SendDocument document = new SendDocument();
         document.setChatId(chatId);
-        document.setDocument(new InputFile(file, file.getName()));
+        document.setDocument(exporter.export());
         return document;
     }
+
+    /**
+     * Завершить отправку выгрузки: удалить временный архив и запомнить отправленный файл для повторного использования
+     *
+     * @param document отправленная выгрузка из {@link #uploadData(Long)}
+     * @param message  сообщение с выгрузкой или {@code null}, если отправка не удалась
+     */
+    public void uploadCompleted(SendDocument document, Message message) {
+        if (exporter != null && document != null) {
+            exporter.uploaded(document.getDocument(), message);
+        }
+    }
 }
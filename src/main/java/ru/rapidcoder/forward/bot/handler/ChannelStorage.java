@@ -3,9 +3,10 @@ package ru.rapidcoder.forward.bot.handler;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ru.rapidcoder.forward.bot.dto.BaseChatMembership;
 import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.ChatsSnapshot;
 import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
 import ru.rapidcoder.forward.bot.dto.HistorySending;
 
 import java.sql.*;
@@ -13,21 +14,38 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class ChannelStorage {
+public class ChannelStorage implements ChannelStore {
+    public static final int HISTORY_PAGE_SIZE = 20;
+    private static final String STORAGE_NAME = "channel";
+    private static final String HISTORY_SENDING_COLUMNS = "chat_id, user_id, user_name, chat_title, message_id, msg, created_at";
+    private static final String HISTORY_CHATS_COLUMNS = "chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, created_at, deleted";
+    // Запись истории копирует текущее состояние чата, выполняется в той же транзакции, что и его изменение
+    private static final String APPEND_HISTORY_CHAT_SQL = """
+            INSERT INTO history_monitored_chats
+                (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted)
+                SELECT chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted
+                FROM monitored_chats WHERE chat_id=?
+            """;
     private static final Logger logger = LoggerFactory.getLogger(ChannelStorage.class);
-    private static final String DB_URL = "jdbc:sqlite:";
     private static ChannelStorage instance;
-    private final String storageFile;
+    private final ConnectionPool pool;
+    private final StorageWriter writer;
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final HistoryQueries queries = new HistoryQueries("rowid", (rs, column) -> LocalDateTime.parse(rs.getString(column), formatter));
+    private final AtomicLong chatsVersion = new AtomicLong();
+    private volatile ChatsSnapshot chatsSnapshot;
 
     private ChannelStorage(String storageFile) {
         logger.info("Initializing ChatStorage with storage file: {}", storageFile);
         if (StringUtils.isEmpty(storageFile)) {
             throw new IllegalArgumentException("Storage file not defined");
         }
-        this.storageFile = storageFile;
-        initDataBase();
+        this.pool = ConnectionPool.getInstance(storageFile);
+        this.writer = StorageWriter.getInstance(storageFile);
+        SchemaMigrations.migrate(pool);
     }
 
     public static synchronized ChannelStorage getInstance(String storageFile) {
@@ -37,197 +55,178 @@ public class ChannelStorage {
         return instance;
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL + storageFile);
+    private PooledConnection getConnection(String query) throws SQLException {
+        return pool.acquire()
+                .timed(STORAGE_NAME, query);
     }
 
-    private void initDataBase() {
-        String sqlMonitoredChats = """
-                CREATE TABLE IF NOT EXISTS monitored_chats (
-                    chat_id INTEGER PRIMARY KEY,
-                    user_id INTEGER NOT NULL,
-                    user_name TEXT NOT NULL,
-                    chat_title TEXT NOT NULL,
-                    chat_type TEXT NOT NULL,
-                    bot_new_status TEXT NOT NULL,
-                    bot_old_status TEXT,
-                    deleted INTEGER DEFAULT 0,
-                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-                    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                )
-                """;
-        String sqlMonitoredChatsUpdate = """
-                CREATE TRIGGER IF NOT EXISTS monitored_chats_update
-                AFTER UPDATE ON monitored_chats
-                FOR EACH ROW
-                BEGIN
-                    UPDATE monitored_chats
-                    SET updated_at = CURRENT_TIMESTAMP
-                    WHERE chat_id = NEW.chat_id;
-                
-                    INSERT INTO history_monitored_chats
-                    (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted)
-                    VALUES
-                    (NEW.chat_id, NEW.user_id, NEW.user_name, NEW.chat_title, NEW.chat_type, NEW.bot_new_status, NEW.bot_old_status, NEW.deleted);
-                END;
-                """;
-        String sqlHistoryMonitoredChats = """
-                CREATE TABLE IF NOT EXISTS history_monitored_chats (
-                    chat_id INTEGER NOT NULL,
-                    user_id INTEGER NOT NULL,
-                    user_name TEXT NOT NULL,
-                    chat_title TEXT NOT NULL,
-                    chat_type TEXT NOT NULL,
-                    bot_new_status TEXT NOT NULL,
-                    bot_old_status TEXT,
-                    deleted INTEGER,
-                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                )
-                """;
-        String sqlTriggerMonitoredChatsInsert = """
-                CREATE TRIGGER IF NOT EXISTS monitored_chats_insert
-                AFTER INSERT ON monitored_chats
-                BEGIN
-                    INSERT INTO history_monitored_chats
-                    (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted)
-                    VALUES
-                    (NEW.chat_id, NEW.user_id, NEW.user_name, NEW.chat_title, NEW.chat_type, NEW.bot_new_status, NEW.bot_old_status, NEW.deleted);
-                END;
-                """;
-        String sqlHistorySendingToChats = """
-                CREATE TABLE IF NOT EXISTS history_sending_to_chat (
-                    chat_id INTEGER NOT NULL,
-                    user_id INTEGER NOT NULL,
-                    user_name TEXT NOT NULL,
-                    chat_title TEXT NOT NULL,
-                    message_id TEXT NOT NULL,
-                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                )
+    @Override
+    public void saveOrUpdateChat(ChatMembership chat) {
+        String sql = """
+                INSERT INTO monitored_chats
+                    (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT (chat_id) DO UPDATE SET
+                    user_id=excluded.user_id,
+                    user_name=excluded.user_name,
+                    chat_title=excluded.chat_title,
+                    chat_type=excluded.chat_type,
+                    bot_new_status=excluded.bot_new_status,
+                    bot_old_status=excluded.bot_old_status,
+                    deleted=0,
+                    updated_at=CURRENT_TIMESTAMP
                 """;
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.execute(sqlMonitoredChats);
-            stmt.execute(sqlHistoryMonitoredChats);
-            stmt.execute(sqlMonitoredChatsUpdate);
-            stmt.execute(sqlTriggerMonitoredChatsInsert);
-            stmt.execute(sqlHistorySendingToChats);
-            logger.info("Chat's storage database initialized successfully");
+        try {
+            writer.execute(STORAGE_NAME, "saveOrUpdateChat", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, chat.getChatId());
+                stmt.setLong(2, chat.getUserId());
+                stmt.setString(3, chat.getUserName());
+                stmt.setString(4, chat.getChatTitle());
+                stmt.setString(5, chat.getChatType());
+                stmt.setString(6, chat.getBotNewStatus());
+                stmt.setString(7, chat.getBotOldStatus());
+                return appendHistoryChat(conn, chat.getChatId(), stmt.executeUpdate());
+            });
+            logger.debug("Information of chat '{}' saved into database", chat.getChatTitle());
         } catch (SQLException e) {
-            logger.error("Failed to initialize chat's storage database: {}", e.getMessage(), e);
+            throw new IllegalArgumentException(String.format("Failed to save chat by chatId %d", chat.getChatId()), e);
+        } finally {
+            invalidateChats();
         }
-
-        addColumnIfNotExists("history_sending_to_chat", "msg", "TEXT");
     }
 
-    private boolean columnExists(String tableName, String columnName) {
-        String sql = "PRAGMA table_info(" + tableName + ")";
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                if (columnName.equals(rs.getString("name"))) {
-                    return true;
-                }
-            }
-        } catch (SQLException e) {
-            logger.error("Failed checking column exists: {}", e.getMessage(), e);
+    private int appendHistoryChat(PooledConnection conn, long chatId, int affectedRows) throws SQLException {
+        if (affectedRows > 0) {
+            PreparedStatement stmt = conn.prepareStatement(APPEND_HISTORY_CHAT_SQL);
+            stmt.setLong(1, chatId);
+            stmt.executeUpdate();
         }
-        return false;
+        return affectedRows;
     }
 
-    public void addColumnIfNotExists(String tableName, String columnName, String columnType) {
-        if (!columnExists(tableName, columnName)) {
-            String sql = String.format("ALTER TABLE %s ADD COLUMN %s %s;", tableName, columnName, columnType);
-
-            try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-                stmt.execute(sql);
-                logger.info("Column {} added to {} successful", columnName, tableName);
-            } catch (SQLException e) {
-                logger.error("Failed add column to database: {}", e.getMessage(), e);
-            }
+    @Override
+    public void saveHistorySendingToChat(HistorySending send) {
+        try {
+            writer.execute(STORAGE_NAME, "saveHistorySendingToChat", historySendingWrite(send));
+            logger.debug("Sending history to chat '{}' saved into database", send.getChatTitle());
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to save sending history to chat by chatId %d", send.getMessageId()), e);
         }
     }
 
-    public void saveOrUpdateChat(ChatMembership chat) {
-        String sql = """
-                INSERT OR REPLACE INTO monitored_chats
-                    (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status)
-                    VALUES (?, ?, ?, ?, ?, ?, ?)
-                """;
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, chat.getChatId());
-            stmt.setLong(2, chat.getUserId());
-            stmt.setString(3, chat.getUserName());
-            stmt.setString(4, chat.getChatTitle());
-            stmt.setString(5, chat.getChatType());
-            stmt.setString(6, chat.getBotNewStatus());
-            stmt.setString(7, chat.getBotOldStatus());
-            stmt.executeUpdate();
-            logger.debug("Information of chat '{}' saved into database", chat.getChatTitle());
-        } catch (SQLException e) {
-            throw new IllegalArgumentException(String.format("Failed to save chat by chatId %d", chat.getChatId()), e);
-        }
+    @Override
+    public CompletableFuture<Integer> saveHistorySendingToChatAsync(HistorySending send) {
+        return writer.submit(STORAGE_NAME, "saveHistorySendingToChat", historySendingWrite(send));
     }
 
-    public void saveHistorySendingToChat(HistorySending send) {
+    private StorageWriter.Write historySendingWrite(HistorySending send) {
         String sql = """
                 INSERT INTO history_sending_to_chat
                     (chat_id, user_id, user_name, chat_title, message_id, msg)
                     VALUES (?, ?, ?, ?, ?, ?)
                 """;
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        return conn -> {
+            PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setLong(1, send.getChatId());
             stmt.setLong(2, send.getUserId());
             stmt.setString(3, send.getUserName());
             stmt.setString(4, send.getChatTitle());
             stmt.setInt(5, send.getMessageId());
             stmt.setString(6, send.getText());
-            stmt.executeUpdate();
-            logger.debug("Sending history to chat '{}' saved into database", send.getChatTitle());
-        } catch (SQLException e) {
-            throw new IllegalArgumentException(String.format("Failed to save sending history to chat by chatId %d", send.getMessageId()), e);
-        }
+            return stmt.executeUpdate();
+        };
     }
 
+    @Override
     public List<HistorySending> getHistorySendingToChat() {
-        List<HistorySending> history = new ArrayList<>();
-        String sql = """
-                    SELECT
-                        chat_id,
-                        user_id,
-                        user_name,
-                        chat_title,
-                        message_id,
-                        msg,
-                        created_at
-                    FROM history_sending_to_chat
-                    ORDER BY created_at DESC LIMIT 20
-                """;
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                HistorySending send = resultSetToHistorySendingChat(rs);
-                history.add(send);
-            }
+        return getHistorySendingPage(null, true)
+                .items();
+    }
+
+    /**
+     * Получить страницу истории отправки сообщений
+     *
+     * @param cursor курсор из {@link HistoryPage} или {@code null} для первой страницы
+     * @param older  направление: к более старым записям или к более новым
+     * @return страница истории
+     */
+    @Override
+    public HistoryPage<HistorySending> getHistorySendingPage(Long cursor, boolean older) {
+        try (PooledConnection conn = getConnection("getHistorySendingPage")) {
+            return queries.page(conn, "history_sending_to_chat", HISTORY_SENDING_COLUMNS, cursor, older, queries::toHistorySending);
         } catch (SQLException e) {
-            logger.error("Failed to get chats {}", e.getMessage(), e);
+            logger.error("Failed to get sending history {}", e.getMessage(), e);
+            return new HistoryPage<>(List.of(), null, null);
         }
-        return history;
     }
 
+    @Override
     public void deleteChat(Long chatId) {
-        String sql = "UPDATE monitored_chats SET deleted=? WHERE chat_id=?";
+        String sql = "UPDATE monitored_chats SET deleted=?, updated_at=CURRENT_TIMESTAMP WHERE chat_id=?";
 
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, 1);
-            stmt.setLong(2, chatId);
-            int affectedRows = stmt.executeUpdate();
+        try {
+            int affectedRows = writer.execute(STORAGE_NAME, "deleteChat", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setInt(1, 1);
+                stmt.setLong(2, chatId);
+                return appendHistoryChat(conn, chatId, stmt.executeUpdate());
+            });
             if (affectedRows > 0) {
                 logger.debug("Chat deleted from database: {}", +chatId);
             }
         } catch (SQLException e) {
             logger.error("Failed to delete chat by chatId {}: {}", chatId, e.getMessage(), e);
+        } finally {
+            invalidateChats();
         }
     }
 
+    @Override
     public List<ChatMembership> getAllChats() {
+        try {
+            return loadChats();
+        } catch (SQLException e) {
+            logger.error("Failed to get chats {}", e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Получить список активных каналов из памяти. Список перечитывается из базы только после изменения каналов
+     *
+     * @return неизменяемый список каналов и его версия
+     */
+    @Override
+    public ChatsSnapshot getChatsSnapshot() {
+        ChatsSnapshot snapshot = chatsSnapshot;
+        long version = chatsVersion.get();
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot;
+        }
+        try {
+            ChatsSnapshot loaded = new ChatsSnapshot(version, loadChats());
+            synchronized (chatsVersion) {
+                // Каналы могли измениться во время чтения: такой список не кэшируется
+                if (chatsVersion.get() == version) {
+                    chatsSnapshot = loaded;
+                }
+            }
+            return loaded;
+        } catch (SQLException e) {
+            logger.error("Failed to get chats {}", e.getMessage(), e);
+            return snapshot != null ? snapshot : new ChatsSnapshot(version, List.of());
+        }
+    }
+
+    private void invalidateChats() {
+        synchronized (chatsVersion) {
+            chatsVersion.incrementAndGet();
+            chatsSnapshot = null;
+        }
+    }
+
+    private List<ChatMembership> loadChats() throws SQLException {
         List<ChatMembership> chats = new ArrayList<>();
         String sql = """
                     SELECT
@@ -243,47 +242,43 @@ public class ChannelStorage {
                     FROM monitored_chats
                     WHERE deleted=?
                 """;
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = getConnection("getAllChats")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setInt(1, 0);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ChatMembership chat = resultSetToChat(rs);
-                chats.add(chat);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ChatMembership chat = queries.toChat(rs);
+                    chats.add(chat);
+                }
             }
-        } catch (SQLException e) {
-            logger.error("Failed to get chats {}", e.getMessage(), e);
         }
         return chats;
     }
 
+    @Override
     public List<HistoryChatMembership> getHistoryChats() {
-        List<HistoryChatMembership> chats = new ArrayList<>();
-        String sql = """
-                    SELECT
-                        chat_id,
-                        user_id,
-                        user_name,
-                        chat_title,
-                        chat_type,
-                        bot_new_status,
-                        bot_old_status,
-                        created_at,
-                        deleted
-                    FROM history_monitored_chats
-                    ORDER BY created_at DESC LIMIT 20
-                """;
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                HistoryChatMembership chat = resultSetToHistoryChat(rs);
-                chats.add(chat);
-            }
+        return getHistoryChatsPage(null, true)
+                .items();
+    }
+
+    /**
+     * Получить страницу истории подписок бота
+     *
+     * @param cursor курсор из {@link HistoryPage} или {@code null} для первой страницы
+     * @param older  направление: к более старым записям или к более новым
+     * @return страница истории
+     */
+    @Override
+    public HistoryPage<HistoryChatMembership> getHistoryChatsPage(Long cursor, boolean older) {
+        try (PooledConnection conn = getConnection("getHistoryChatsPage")) {
+            return queries.page(conn, "history_monitored_chats", HISTORY_CHATS_COLUMNS, cursor, older, queries::toHistoryChat);
         } catch (SQLException e) {
-            logger.error("Failed to get chats {}", e.getMessage(), e);
+            logger.error("Failed to get chats history {}", e.getMessage(), e);
+            return new HistoryPage<>(List.of(), null, null);
         }
-        return chats;
     }
 
+    @Override
     public ChatMembership findChatById(Long chatId) {
         String sql = """
                     SELECT
@@ -299,12 +294,14 @@ public class ChannelStorage {
                     FROM monitored_chats WHERE chat_id=? AND deleted=?
                 """;
 
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = getConnection("findChatById")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setLong(1, chatId);
             stmt.setInt(2, 0);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return resultSetToChat(rs);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return queries.toChat(rs);
+                }
             }
         } catch (SQLException e) {
             logger.error("Failed to define chat by chatId {}: {}", chatId, e.getMessage(), e);
@@ -312,55 +309,23 @@ public class ChannelStorage {
         return null;
     }
 
+    @Override
     public void updateBotStatus(Long chatId, String newStatus, String oldStatus) {
-        String sql = "UPDATE monitored_chats SET bot_new_status=?, bot_old_status=? WHERE chat_id=?";
+        String sql = "UPDATE monitored_chats SET bot_new_status=?, bot_old_status=?, updated_at=CURRENT_TIMESTAMP WHERE chat_id=?";
 
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, newStatus);
-            stmt.setString(2, oldStatus);
-            stmt.setLong(3, chatId);
-            stmt.executeUpdate();
+        try {
+            writer.execute(STORAGE_NAME, "updateBotStatus", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setString(1, newStatus);
+                stmt.setString(2, oldStatus);
+                stmt.setLong(3, chatId);
+                return appendHistoryChat(conn, chatId, stmt.executeUpdate());
+            });
             logger.debug("Chat's status modified: {}", chatId);
         } catch (SQLException e) {
             logger.error("Failed to modify chat's status by chatId {}: {}", chatId, e.getMessage(), e);
+        } finally {
+            invalidateChats();
         }
     }
-
-    private ChatMembership resultSetToChat(ResultSet rs) throws SQLException {
-        ChatMembership chat = new ChatMembership();
-        resultSetToBaseChat(rs, chat);
-        chat.setUpdatedDate(LocalDateTime.parse(rs.getString("updated_at"), formatter));
-        return chat;
-    }
-
-    private HistoryChatMembership resultSetToHistoryChat(ResultSet rs) throws SQLException {
-        HistoryChatMembership chat = new HistoryChatMembership();
-        resultSetToBaseChat(rs, chat);
-        chat.setDeleted(rs.getInt("deleted") == 1);
-        return chat;
-    }
-
-    private void resultSetToBaseChat(ResultSet rs, BaseChatMembership chat) throws SQLException {
-        chat.setChatId(rs.getLong("chat_id"));
-        chat.setUserId(rs.getLong("user_id"));
-        chat.setUserName(rs.getString("user_name"));
-        chat.setChatTitle(rs.getString("chat_title"));
-        chat.setChatType(rs.getString("chat_type"));
-        chat.setBotNewStatus(rs.getString("bot_new_status"));
-        chat.setBotOldStatus(rs.getString("bot_old_status"));
-        chat.setAddedDate(LocalDateTime.parse(rs.getString("created_at"), formatter));
-
-    }
-
-    private HistorySending resultSetToHistorySendingChat(ResultSet rs) throws SQLException {
-        HistorySending send = new HistorySending();
-        send.setChatId(rs.getLong("chat_id"));
-        send.setUserId(rs.getLong("user_id"));
-        send.setUserName(rs.getString("user_name"));
-        send.setChatTitle(rs.getString("chat_title"));
-        send.setMessageId(rs.getInt("message_id"));
-        send.setText(rs.getString("msg"));
-        send.setAddedDate(LocalDateTime.parse(rs.getString("created_at"), formatter));
-        return send;
-    }
 }
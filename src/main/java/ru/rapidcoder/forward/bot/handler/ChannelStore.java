@@ -0,0 +1,63 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.ChatsSnapshot;
+import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Хранилище каналов/групп и истории их изменений и отправки сообщений.
+ * <p>
+ * Реализации: {@link ChannelStorage} для файла SQLite и {@link PostgresChannelStorage} для сервера баз данных,
+ * выбор выполняет {@link StorageBackend}. Страницы истории в обеих реализациях упорядочены по
+ * {@code (created_at, ключ строки)} и содержат по {@link ChannelStorage#HISTORY_PAGE_SIZE} записей.
+ */
+public interface ChannelStore {
+
+    void saveOrUpdateChat(ChatMembership chat);
+
+    void saveHistorySendingToChat(HistorySending send);
+
+    CompletableFuture<Integer> saveHistorySendingToChatAsync(HistorySending send);
+
+    List<HistorySending> getHistorySendingToChat();
+
+    /**
+     * Получить страницу истории отправки сообщений
+     *
+     * @param cursor курсор из {@link HistoryPage} или {@code null} для первой страницы
+     * @param older  направление: к более старым записям или к более новым
+     * @return страница истории
+     */
+    HistoryPage<HistorySending> getHistorySendingPage(Long cursor, boolean older);
+
+    void deleteChat(Long chatId);
+
+    List<ChatMembership> getAllChats();
+
+    /**
+     * Получить список активных каналов из памяти. Список перечитывается из базы только после изменения каналов
+     *
+     * @return неизменяемый список каналов и его версия
+     */
+    ChatsSnapshot getChatsSnapshot();
+
+    List<HistoryChatMembership> getHistoryChats();
+
+    /**
+     * Получить страницу истории подписок бота
+     *
+     * @param cursor курсор из {@link HistoryPage} или {@code null} для первой страницы
+     * @param older  направление: к более старым записям или к более новым
+     * @return страница истории
+     */
+    HistoryPage<HistoryChatMembership> getHistoryChatsPage(Long cursor, boolean older);
+
+    ChatMembership findChatById(Long chatId);
+
+    void updateBotStatus(Long chatId, String newStatus, String oldStatus);
+}
@@ -0,0 +1,157 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул долгоживущих соединений к файлу базы данных SQLite или к серверу баз данных.
+ * <p>
+ * Для каждого файла базы создается один пул, который разделяют все хранилища бота.
+ * Соединения открываются лениво, не больше {@link #DEFAULT_POOL_SIZE}, и кэшируют подготовленные запросы.
+ * Адрес вида {@code jdbc:...} (см. {@link StorageBackend}) открывается через драйвер сервера; такой сервер
+ * принимает параллельные записи, поэтому пул больше — {@link #SERVER_POOL_SIZE}.
+ */
+public class ConnectionPool {
+
+    public static final int DEFAULT_POOL_SIZE = 4;
+    public static final int SERVER_POOL_SIZE = 16;
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final String DB_URL = "jdbc:sqlite:";
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final Map<String, ConnectionPool> instances = new HashMap<>();
+    private final String storageFile;
+    private final int maxSize;
+    private final BlockingQueue<PooledConnection> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    // Схема базы проверена миграциями; после close() проверяется заново, файл базы мог быть заменен
+    private volatile boolean migrated;
+
+    private ConnectionPool(String storageFile, int maxSize) {
+        if (StringUtils.isEmpty(storageFile)) {
+            throw new IllegalArgumentException("Storage file not defined");
+        }
+        this.storageFile = storageFile;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Получить пул соединений для файла базы данных
+     *
+     * @param storageFile файл базы данных
+     * @return пул соединений, общий для всех хранилищ этого файла
+     */
+    public static synchronized ConnectionPool getInstance(String storageFile) {
+        return instances.computeIfAbsent(storageFile, file -> new ConnectionPool(file, StorageBackend.isServer(file) ? SERVER_POOL_SIZE : DEFAULT_POOL_SIZE));
+    }
+
+    /**
+     * Закрыть простаивающие соединения всех пулов
+     */
+    public static synchronized void closeAll() {
+        instances.values()
+                .forEach(ConnectionPool::close);
+    }
+
+    /**
+     * Взять соединение из пула. Соединение возвращается в пул при вызове {@link PooledConnection#close()}
+     *
+     * @return соединение с базой данных
+     * @throws SQLException если соединение не удалось открыть или дождаться свободного
+     */
+    public PooledConnection acquire() throws SQLException {
+        PooledConnection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        if (created.incrementAndGet() <= maxSize) {
+            try {
+                return open();
+            } catch (SQLException e) {
+                created.decrementAndGet();
+                throw e;
+            }
+        }
+        created.decrementAndGet();
+        try {
+            connection = idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new SQLException("Interrupted while waiting for connection to " + storageFile, e);
+        }
+        if (connection == null) {
+            throw new SQLException("Timed out waiting for connection to " + storageFile);
+        }
+        return connection;
+    }
+
+    /**
+     * Закрыть простаивающие соединения пула. Пул остается рабочим и при необходимости откроет соединения заново
+     */
+    public void close() {
+        migrated = false;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            discard(connection);
+        }
+    }
+
+    public String getStorageFile() {
+        return storageFile;
+    }
+
+    boolean isMigrated() {
+        return migrated;
+    }
+
+    void setMigrated(boolean migrated) {
+        this.migrated = migrated;
+    }
+
+    void release(PooledConnection connection) {
+        if (!connection.isValid() || !idle.offer(connection)) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * Открыть отдельное соединение вне пула. Нужно для команд вроде {@code VACUUM}, которые не выполняются,
+     * пока на соединении есть незавершенные закэшированные запросы
+     *
+     * @return новое соединение, закрывается вызывающим
+     * @throws SQLException если соединение не удалось открыть
+     */
+    Connection openUnpooled() throws SQLException {
+        if (StorageBackend.isServer(storageFile)) {
+            return DriverManager.getConnection(storageFile);
+        }
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        return DriverManager.getConnection(DB_URL + storageFile, config.toProperties());
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection connection = openUnpooled();
+        logger.debug("Opened connection to {} ({} of {})", storageFile, created.get(), maxSize);
+        return new PooledConnection(this, connection);
+    }
+
+    private void discard(PooledConnection connection) {
+        created.decrementAndGet();
+        connection.closePhysical();
+    }
+}
@@ -0,0 +1,141 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import ru.rapidcoder.forward.bot.dto.BaseChatMembership;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Чтение истории и строк каналов, общее для хранилищ SQLite и сервера баз данных.
+ * <p>
+ * История читается постранично по ключу ({@code created_at}, ключ строки), поэтому время запроса не зависит от
+ * номера страницы. Хранилища отличаются только колонкой ключа строки ({@code rowid} в SQLite, {@code id} на сервере)
+ * и способом чтения времени.
+ */
+final class HistoryQueries {
+
+    private final String keyColumn;
+    private final DateReader dates;
+
+    HistoryQueries(String keyColumn, DateReader dates) {
+        this.keyColumn = keyColumn;
+        this.dates = dates;
+    }
+
+    /**
+     * Прочитать страницу истории
+     *
+     * @param conn    соединение
+     * @param table   таблица истории
+     * @param columns колонки для {@code mapper}
+     * @param cursor  ключ граничной записи или null для первой страницы
+     * @param older   читать страницу старше курсора, иначе новее
+     * @param mapper  преобразование строки в запись
+     * @return страница истории; если записи курсора нет или страниц в этом направлении больше нет — первая страница
+     * @throws SQLException ошибка чтения
+     */
+    <T> HistoryPage<T> page(PooledConnection conn, String table, String columns, Long cursor, boolean older, RowMapper<T> mapper) throws SQLException {
+        String sql;
+        if (cursor == null) {
+            sql = String.format("SELECT %1$s, %2$s FROM %3$s ORDER BY created_at DESC, %1$s DESC LIMIT ?", keyColumn, columns, table);
+        } else if (older) {
+            sql = String.format("""
+                    SELECT %1$s, %2$s FROM %3$s
+                    WHERE (created_at, %1$s) < (SELECT created_at, %1$s FROM %3$s WHERE %1$s = ?)
+                    ORDER BY created_at DESC, %1$s DESC LIMIT ?
+                    """, keyColumn, columns, table);
+        } else {
+            sql = String.format("""
+                    SELECT %1$s, %2$s FROM %3$s
+                    WHERE (created_at, %1$s) > (SELECT created_at, %1$s FROM %3$s WHERE %1$s = ?)
+                    ORDER BY created_at ASC, %1$s ASC LIMIT ?
+                    """, keyColumn, columns, table);
+        }
+        List<T> items = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        int index = 1;
+        if (cursor != null) {
+            stmt.setLong(index++, cursor);
+        }
+        stmt.setInt(index, ChannelStorage.HISTORY_PAGE_SIZE + 1);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                keys.add(rs.getLong(keyColumn));
+                items.add(mapper.map(rs));
+            }
+        }
+        if (cursor != null && items.isEmpty()) {
+            // Запись курсора удалена или страниц в этом направлении больше нет
+            return page(conn, table, columns, null, true, mapper);
+        }
+        boolean hasMore = items.size() > ChannelStorage.HISTORY_PAGE_SIZE;
+        if (hasMore) {
+            items.remove(ChannelStorage.HISTORY_PAGE_SIZE);
+            keys.remove(ChannelStorage.HISTORY_PAGE_SIZE);
+        }
+        if (cursor != null && !older) {
+            Collections.reverse(items);
+            Collections.reverse(keys);
+            return new HistoryPage<>(items, keys.get(keys.size() - 1), hasMore ? keys.get(0) : null);
+        }
+        return new HistoryPage<>(items, hasMore ? keys.get(keys.size() - 1) : null, cursor != null ? keys.get(0) : null);
+    }
+
+    ChatMembership toChat(ResultSet rs) throws SQLException {
+        ChatMembership chat = new ChatMembership();
+        toBaseChat(rs, chat);
+        chat.setUpdatedDate(dates.read(rs, "updated_at"));
+        return chat;
+    }
+
+    HistoryChatMembership toHistoryChat(ResultSet rs) throws SQLException {
+        HistoryChatMembership chat = new HistoryChatMembership();
+        toBaseChat(rs, chat);
+        chat.setDeleted(rs.getInt("deleted") == 1);
+        return chat;
+    }
+
+    HistorySending toHistorySending(ResultSet rs) throws SQLException {
+        HistorySending send = new HistorySending();
+        send.setChatId(rs.getLong("chat_id"));
+        send.setUserId(rs.getLong("user_id"));
+        send.setUserName(rs.getString("user_name"));
+        send.setChatTitle(rs.getString("chat_title"));
+        // На сервере колонка строковая, в SQLite — число
+        send.setMessageId(Integer.parseInt(rs.getString("message_id")));
+        send.setText(rs.getString("msg"));
+        send.setAddedDate(dates.read(rs, "created_at"));
+        return send;
+    }
+
+    private void toBaseChat(ResultSet rs, BaseChatMembership chat) throws SQLException {
+        chat.setChatId(rs.getLong("chat_id"));
+        chat.setUserId(rs.getLong("user_id"));
+        chat.setUserName(rs.getString("user_name"));
+        chat.setChatTitle(rs.getString("chat_title"));
+        chat.setChatType(rs.getString("chat_type"));
+        chat.setBotNewStatus(rs.getString("bot_new_status"));
+        chat.setBotOldStatus(rs.getString("bot_old_status"));
+        chat.setAddedDate(dates.read(rs, "created_at"));
+    }
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface DateReader {
+        LocalDateTime read(ResultSet rs, String column) throws SQLException;
+    }
+}
@@ -0,0 +1,271 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Срок хранения истории.
+ * <p>
+ * Таблицы истории только растут, поэтому строки старше заданного возраста или сверх заданного количества периодически
+ * переносятся в архив: файлы {@code <таблица>-<дата>.jsonl.gz} по одной JSON-строке на запись, каждая пачка
+ * дописывается в файл отдельным gzip-блоком. Перенос идет пачками по {@code batchSize} строк на отдельном потоке;
+ * удаление каждой пачки — одна короткая запись через {@link StorageWriter}, поэтому обработка обновлений не
+ * блокируется надолго. Строка сначала попадает в архив, потом удаляется из базы: при сбое между этими шагами она
+ * может оказаться в архиве дважды, но не теряется. Освободившиеся страницы возвращаются файловой системе через
+ * {@code PRAGMA incremental_vacuum} короткими порциями; нужный для этого режим {@code auto_vacuum = INCREMENTAL}
+ * включает {@link SchemaMigrations} при запуске.
+ */
+public class HistoryRetention {
+
+    public static final String SENDING_HISTORY = "history_sending_to_chat";
+    public static final String CHATS_HISTORY = "history_monitored_chats";
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(180);
+    public static final long DEFAULT_MAX_ROWS = 500_000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final Duration DEFAULT_INTERVAL = Duration.ofHours(1);
+    public static final String ARCHIVE_SUFFIX = ".jsonl.gz";
+    private static final Set<String> TABLES = Set.of(SENDING_HISTORY, CHATS_HISTORY);
+    private static final String STORAGE_NAME = "retention";
+    private static final int VACUUM_CHUNK_PAGES = 256;
+    private static final Duration INITIAL_DELAY = Duration.ofMinutes(1);
+    private static final Logger logger = LoggerFactory.getLogger(HistoryRetention.class);
+    private final ConnectionPool pool;
+    private final StorageWriter writer;
+    private final Path archiveDir;
+    private final List<Policy> policies;
+    private final int batchSize;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ScheduledExecutorService scheduler;
+
+    public HistoryRetention(String storageFile, Path archiveDir, List<Policy> policies, int batchSize) {
+        if (StringUtils.isEmpty(storageFile)) {
+            throw new IllegalArgumentException("Storage file not defined");
+        }
+        this.pool = ConnectionPool.getInstance(storageFile);
+        this.writer = StorageWriter.getInstance(storageFile);
+        this.archiveDir = archiveDir;
+        this.policies = List.copyOf(policies);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Каталог архива по умолчанию: рядом с файлом базы
+     *
+     * @param storageFile файл базы данных
+     * @return каталог архива
+     */
+    public static Path defaultArchiveDir(String storageFile) {
+        return Path.of(storageFile + ".archive");
+    }
+
+    /**
+     * Запустить периодический перенос истории в архив
+     *
+     * @param interval интервал между запусками
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual()
+                .name("history-retention")
+                .factory());
+        scheduler.scheduleWithFixedDelay(this::runQuietly, INITIAL_DELAY.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        logger.info("History retention started: {}, archive {}", policies, archiveDir);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Перенести в архив историю, вышедшую за пределы хранения, и освободить место в файле базы
+     *
+     * @return количество перенесенных строк
+     * @throws SQLException ошибка работы с базой
+     * @throws IOException  ошибка записи архива
+     */
+    public synchronized int run() throws SQLException, IOException {
+        int archived = 0;
+        for (Policy policy : policies) {
+            archived += archive(policy);
+        }
+        if (archived > 0) {
+            logger.info("History retention archived {} rows, freed {} pages", archived, incrementalVacuum());
+        }
+        return archived;
+    }
+
+    // Страницы освобождаются порциями по VACUUM_CHUNK_PAGES, каждая порция — отдельная запись, между которыми
+    // выполняются обычные записи
+    private int incrementalVacuum() throws SQLException {
+        int freed = 0;
+        while (true) {
+            int pages = writer.execute(STORAGE_NAME, "incrementalVacuum", conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    int before = freelistCount(stmt);
+                    if (before == 0) {
+                        return 0;
+                    }
+                    // executeUpdate проходит все шаги pragma, а execute выполняет только первый и освобождает одну страницу
+                    stmt.executeUpdate("PRAGMA incremental_vacuum(" + VACUUM_CHUNK_PAGES + ")");
+                    return before - freelistCount(stmt);
+                }
+            });
+            if (pages <= 0) {
+                return freed;
+            }
+            freed += pages;
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (SQLException | IOException | RuntimeException e) {
+            logger.error("Failed to apply history retention: {}", e.getMessage(), e);
+        }
+    }
+
+    private int archive(Policy policy) throws SQLException, IOException {
+        long cutoff = cutoffRowid(policy);
+        String select = "SELECT rowid AS archive_rowid, * FROM " + policy.table() + " WHERE rowid <= ? ORDER BY rowid LIMIT ?";
+        String delete = "DELETE FROM " + policy.table() + " WHERE rowid BETWEEN ? AND ?";
+        int archived = 0;
+        while (cutoff > 0) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            long first;
+            long last;
+            try (PooledConnection conn = pool.acquire()
+                    .timed(STORAGE_NAME, "archiveSelect")) {
+                PreparedStatement stmt = conn.prepareStatement(select);
+                stmt.setLong(1, cutoff);
+                stmt.setInt(2, batchSize);
+                first = -1;
+                last = -1;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    while (rs.next()) {
+                        last = rs.getLong(1);
+                        if (first < 0) {
+                            first = last;
+                        }
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        for (int i = 2; i <= meta.getColumnCount(); i++) {
+                            row.put(meta.getColumnName(i), rs.getObject(i));
+                        }
+                        rows.add(row);
+                    }
+                }
+            }
+            if (rows.isEmpty()) {
+                break;
+            }
+            append(policy.table(), rows);
+            long from = first;
+            long to = last;
+            writer.execute(STORAGE_NAME, "archiveDelete", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(delete);
+                stmt.setLong(1, from);
+                stmt.setLong(2, to);
+                return stmt.executeUpdate();
+            });
+            archived += rows.size();
+            Metrics.incHistoryArchived(policy.table(), rows.size());
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+        return archived;
+    }
+
+    // Строки истории добавляются по порядку, поэтому граница хранения выражается через rowid
+    private long cutoffRowid(Policy policy) throws SQLException {
+        long cutoff = 0;
+        try (PooledConnection conn = pool.acquire()
+                .timed(STORAGE_NAME, "archiveCutoff")) {
+            if (policy.maxAge() != null) {
+                PreparedStatement stmt = conn.prepareStatement("SELECT max(rowid) FROM " + policy.table() + " WHERE created_at < datetime('now', ?)");
+                stmt.setString(1, "-" + policy.maxAge()
+                        .toSeconds() + " seconds");
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        cutoff = rs.getLong(1);
+                    }
+                }
+            }
+            if (policy.maxRows() > 0) {
+                PreparedStatement stmt = conn.prepareStatement("SELECT rowid FROM " + policy.table() + " ORDER BY rowid DESC LIMIT 1 OFFSET ?");
+                stmt.setLong(1, policy.maxRows());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        cutoff = Math.max(cutoff, rs.getLong(1));
+                    }
+                }
+            }
+        }
+        return cutoff;
+    }
+
+    private void append(String table, List<Map<String, Object>> rows) throws IOException {
+        Files.createDirectories(archiveDir);
+        Path file = archiveDir.resolve(table + "-" + LocalDate.now(ZoneOffset.UTC) + ARCHIVE_SUFFIX);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            for (Map<String, Object> row : rows) {
+                out.write(objectMapper.writeValueAsBytes(row));
+                out.write('\n');
+            }
+        }
+    }
+
+    private static int freelistCount(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA freelist_count")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Правило хранения таблицы истории
+     *
+     * @param table   таблица истории
+     * @param maxAge  максимальный возраст строки, {@code null} — без ограничения
+     * @param maxRows максимальное количество строк, 0 — без ограничения
+     */
+    public record Policy(String table, Duration maxAge, long maxRows) {
+
+        public Policy {
+            if (!TABLES.contains(table)) {
+                throw new IllegalArgumentException("Retention not supported for table " + table);
+            }
+        }
+    }
+}
@@ -1,19 +1,22 @@
 package ru.rapidcoder.forward.bot.handler;
 
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.methods.CopyMessage;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
 import org.telegram.telegrambots.meta.api.objects.*;
 import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
 import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
 import org.telegram.telegrambots.meta.api.objects.media.InputMediaVideo;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import ru.rapidcoder.forward.bot.Bot;
 import ru.rapidcoder.forward.bot.dto.AccessRequest;
+import ru.rapidcoder.forward.bot.dto.BroadcastJob;
 import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
@@ -25,14 +28,53 @@ public class MessageHandler {
     private final ChannelManager channelManager;
     private final PermissionManager permissionManager;
     private final Bot bot;
-    private final Map<Long, ScheduledFuture<?>> userTimers = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
+    private final AlbumAssembler albumAssembler;
+    private final BroadcastEngine broadcastEngine;
+    private final BroadcastQueue broadcastQueue;
+    private final BroadcastProgress broadcastProgress;
+    private final CallbackRouter callbackRouter;
 
     public MessageHandler(Bot bot, String storageFile, List<Long> admins) {
         channelManager = new ChannelManager(storageFile);
         permissionManager = new PermissionManager(storageFile, admins);
         this.bot = bot;
+        albumAssembler = new AlbumAssembler(this::handleAlbum, bot::submitToChat);
+        broadcastEngine = new BroadcastEngine(bot.getRateLimiter(), BroadcastEngine.DEFAULT_WORKERS);
+        BroadcastStorage broadcastStorage = BroadcastStorage.getInstance(StorageBackend.queueFile(storageFile));
+        broadcastProgress = new BroadcastProgress(broadcastStorage, new BroadcastProgress.Display() {
+            @Override
+            public CompletionStage<Integer> send(Long chatId, String text) {
+                return bot.sendStatusMessage(chatId, text);
+            }
+
+            @Override
+            public void edit(Long chatId, Integer messageId, String text) {
+                bot.updateMessage(chatId, messageId, text, null);
+            }
+        }, BroadcastProgress.DEFAULT_INTERVAL);
+        broadcastQueue = new BroadcastQueue(broadcastStorage, broadcastEngine, new BroadcastQueue.JobSender() {
+            @Override
+            public CompletionStage<?> sendAsync(BroadcastJob job, ChatMembership target) {
+                return sendForwardMessage(target, job.userId(), job.userName(), job.drafts());
+            }
+
+            @Override
+            public void progress(long jobId) {
+                broadcastProgress.update(jobId);
+            }
+        });
+        broadcastQueue.start();
+        callbackRouter = createCallbackRouter();
+    }
+
+    /**
+     * Остановить обработку очереди рассылок. Незавершенные рассылки продолжатся при следующем запуске
+     */
+    public void shutdown() {
+        albumAssembler.shutdown();
+        broadcastQueue.stop();
+        broadcastProgress.shutdown();
+        permissionManager.shutdown();
     }
 
     public void handleCommand(Update update) {
@@ -57,153 +99,148 @@ public class MessageHandler {
             } else { // Переслали в бот текстовое сообщение
                 Message message = update.getMessage();
                 logger.debug("Catch text message for send with id={}", message.getMessageId());
-                bot.getMessagesForSend()
-                        .computeIfAbsent(chatId, k -> new ArrayList<>())
-                        .add(message);
-                bot.showSendMenu(chatId, null, channelManager.getAll());
+                bot.getSessions()
+                        .addDrafts(chatId, List.of(Draft.of(message)));
+                showSendMenu(chatId, null);
             }
         }
     }
 
     public void handleCallback(Update update) {
-        String callbackData = update.getCallbackQuery()
-                .getData();
-        String callbackId = update.getCallbackQuery()
-                .getId();
-        Long chatId = update.getCallbackQuery()
-                .getMessage()
-                .getChatId();
-        Long userId = update.getCallbackQuery()
-                .getFrom()
-                .getId();
-        Integer messageId = update.getCallbackQuery()
-                .getMessage()
-                .getMessageId();
-        String userName = OptionalUtils.resolve(() -> update.getCallbackQuery()
-                        .getFrom()
-                        .getUserName())
-                .orElse(update.getCallbackQuery()
-                        .getFrom()
-                        .getFirstName() + " " + update.getCallbackQuery()
-                        .getFrom()
-                        .getLastName());
-
-        if ("menu_request_access".equals(callbackData)) {
-            if (permissionManager.hasAccess(userId)) {
-                bot.showMainMenu(chatId, null, permissionManager.isAdmin(userId));
-            } else {
-                permissionManager.saveRequest(userId, userName);
-                bot.sendMessage(chatId, "Запрос на предоставление доступа к боту отправлен", null);
+        CallbackQuery query = update.getCallbackQuery();
+        CallbackRouter.Callback callback = new CallbackRouter.Callback(query.getId(), query.getData(), query.getMessage()
+                .getChatId(), query.getMessage()
+                .getMessageId(), query.getFrom());
+
+        if ("menu_request_access".equals(callback.data())) {
+            requestAccess(callback);
+        } else if (permissionManager.hasAccess(callback.userId())) {
+            CallbackRouter.Result result = callbackRouter.dispatch(callback);
+            if (result == CallbackRouter.Result.NOT_FOUND) {
+                logger.warn("Unknown callbackData {}", callback.data());
+            } else if (result == CallbackRouter.Result.INVALID_ARGUMENT) {
+                logger.warn("Invalid argument in callback '{}'", callback.data());
             }
-        } else if (permissionManager.hasAccess(userId)) {
-            if (callbackData.startsWith("chat_toggle_")) {
-                int chatIndex = Integer.parseInt(callbackData.substring("chat_toggle_".length()));
-                Set<Integer> userSelection = bot.getSelectedChats()
-                        .getOrDefault(chatId, new HashSet<>());
-                if (userSelection.contains(chatIndex)) {
-                    userSelection.remove(chatIndex);
-                } else {
-                    userSelection.add(chatIndex);
-                }
-                bot.getSelectedChats()
-                        .put(chatId, userSelection);
-                bot.showSendMenu(chatId, update.getCallbackQuery()
-                        .getMessage()
-                        .getMessageId(), channelManager.getAll());
-            } else if (callbackData.startsWith("grant_access_blocked_")) {
-                userId = Long.parseLong(callbackData.substring("grant_access_blocked_".length()));
-                permissionManager.blockedUser(userId);
-                bot.showGrantedAccessMenu(chatId, messageId, permissionManager.getUsers());
-            } else if (callbackData.startsWith("grant_access_active_")) {
-                userId = Long.parseLong(callbackData.substring("grant_access_active_".length()));
-                permissionManager.activeUser(userId);
-                bot.showGrantedAccessMenu(chatId, messageId, permissionManager.getUsers());
-            } else if (callbackData.startsWith("access_request_accept_")) {
-                userId = Long.parseLong(callbackData.substring("access_request_accept_".length()));
-                permissionManager.approvedRequest(userId);
-                AccessRequest request = permissionManager.findRequestById(userId);
-                permissionManager.saveUser(userId, request.getUserName());
-                bot.showAccessRequestsMenu(chatId, messageId, permissionManager.getRequests());
-            } else if (callbackData.startsWith("access_request_reject_")) {
-                userId = Long.parseLong(callbackData.substring("access_request_reject_".length()));
-                permissionManager.rejectRequest(userId);
-                bot.showAccessRequestsMenu(chatId, messageId, permissionManager.getRequests());
-            } else {
-                switch (callbackData) {
-                    case "menu_help" -> {
-                        bot.showHelpMenu(chatId, messageId);
-                    }
-                    case BACK_TO_MAIN_CALLBACK_DATA -> {
-                        bot.showMainMenu(chatId, messageId, permissionManager.isAdmin(userId));
-                    }
-                    case "menu_settings" -> {
-                        bot.showSettingsMenu(chatId, messageId);
-                    }
-                    case "menu_chats" -> {
-                        bot.showChatsMenu(chatId, messageId, channelManager.getAll());
-                    }
-                    case "menu_chats_history" -> {
-                        bot.showChatsHistoryMenu(chatId, messageId, channelManager.getHistory());
-                    }
-                    case "menu_chats_upload" -> {
-                        try {
-                            bot.execute(channelManager.uploadData(chatId));
-                        } catch (
-                                TelegramApiException e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                    }
-                    case "menu_send" -> {
-                        bot.showSendMenu(chatId, messageId, channelManager.getAll());
-                    }
-                    case "menu_send_message_clear" -> {
-                        bot.getMessagesForSend()
-                                .put(chatId, new ArrayList<>());
-                        bot.showMainMenu(chatId, messageId, permissionManager.isAdmin(userId));
-                    }
-                    case "menu_send_message" -> {
-                        List<ChatMembership> chats = channelManager.getAll();
-                        Set<Integer> userSelection = bot.getSelectedChats()
-                                .getOrDefault(chatId, new HashSet<>());
-                        for (int i = 0; i < chats.size(); i++) {
-                            ChatMembership chat = chats.get(i);
-                            logger.debug("Send forward message into {} ready", chat.getChatTitle());
-                            if (!userSelection.contains(i)) {
-                                logger.debug("Try send forward message into {}", chat.getChatTitle());
-                                sendForwardMessage(chat, userId, userName, bot.getMessagesForSend()
-                                        .get(chatId));
-                            }
-                        }
-                        bot.showNotification(callbackId, "✅ Сообщение рассылается адресатам...");
-                        bot.getMessagesForSend()
-                                .put(chatId, new ArrayList<>());
-                        bot.showMainMenu(chatId, messageId, permissionManager.isAdmin(userId));
-                    }
-                    case "menu_sending_history" -> {
-                        bot.showSendingHistoryMenu(chatId, messageId, channelManager.getHistorySending());
-                    }
-                    case "menu_access_requests" -> {
-                        bot.showAccessRequestsMenu(chatId, messageId, permissionManager.getRequests());
-                    }
-                    case "menu_access" -> {
-                        bot.showGrantedAccessMenu(chatId, messageId, permissionManager.getUsers());
-                    }
-                    case "settings_reset" -> {
-                        bot.showNotification(callbackId, "✅ Настройки сброшены к значениям по умолчанию");
-                        //TODO
-                    }
-                    case "settings_save" -> {
-                        bot.showNotification(callbackId, "✅ Настройки сохранены");
-                        //TODO
-                    }
-                    default -> {
-                        logger.warn("Unknown callbackData {}", callbackData);
+        } else {
+            bot.showRequestAccessMenu(callback.userId());
+        }
+    }
+
+    private CallbackRouter createCallbackRouter() {
+        return new CallbackRouter().route("menu_help", c -> bot.showHelpMenu(c.chatId(), c.messageId()))
+                .route(BACK_TO_MAIN_CALLBACK_DATA, c -> bot.showMainMenu(c.chatId(), c.messageId(), permissionManager.isAdmin(c.userId())))
+                .route("menu_settings", c -> bot.showSettingsMenu(c.chatId(), c.messageId()))
+                .route("menu_chats", c -> bot.showChatsMenu(c.chatId(), c.messageId(), channelManager.getAll()))
+                .route("menu_chats_history", c -> bot.showChatsHistoryMenu(c.chatId(), c.messageId(), channelManager.getHistoryPage(null, true)))
+                .route("menu_chats_upload", this::uploadChats)
+                .route("menu_send", c -> showSendMenu(c.chatId(), c.messageId()))
+                .route("menu_send_message_clear", this::clearDrafts)
+                .route("menu_send_message", this::sendDrafts)
+                .route("menu_sending_history", c -> bot.showSendingHistoryMenu(c.chatId(), c.messageId(), channelManager.getHistorySendingPage(null, true)))
+                .route("menu_access_requests", c -> bot.showAccessRequestsMenu(c.chatId(), c.messageId(), permissionManager.getRequests()))
+                .route("menu_access", c -> bot.showGrantedAccessMenu(c.chatId(), c.messageId(), permissionManager.getUsers()))
+                .route("settings_reset", c -> bot.showNotification(c.id(), "✅ Настройки сброшены к значениям по умолчанию")) //TODO
+                .route("settings_save", c -> bot.showNotification(c.id(), "✅ Настройки сохранены")) //TODO
+                .routeNumeric("chat_toggle_", 10, this::toggleChat)
+                .routeNumeric(Bot.CHATS_HISTORY_OLDER_CALLBACK_DATA, HistoryPage.CURSOR_RADIX, (c, cursor) -> bot.showChatsHistoryMenu(c.chatId(), c.messageId(), channelManager.getHistoryPage(cursor, true)))
+                .routeNumeric(Bot.CHATS_HISTORY_NEWER_CALLBACK_DATA, HistoryPage.CURSOR_RADIX, (c, cursor) -> bot.showChatsHistoryMenu(c.chatId(), c.messageId(), channelManager.getHistoryPage(cursor, false)))
+                .routeNumeric(Bot.SENDING_HISTORY_OLDER_CALLBACK_DATA, HistoryPage.CURSOR_RADIX, (c, cursor) -> bot.showSendingHistoryMenu(c.chatId(), c.messageId(), channelManager.getHistorySendingPage(cursor, true)))
+                .routeNumeric(Bot.SENDING_HISTORY_NEWER_CALLBACK_DATA, HistoryPage.CURSOR_RADIX, (c, cursor) -> bot.showSendingHistoryMenu(c.chatId(), c.messageId(), channelManager.getHistorySendingPage(cursor, false)))
+                .routeNumeric("grant_access_blocked_", 10, (c, userId) -> {
+                    permissionManager.blockedUser(userId);
+                    bot.showGrantedAccessMenu(c.chatId(), c.messageId(), permissionManager.getUsers());
+                })
+                .routeNumeric("grant_access_active_", 10, (c, userId) -> {
+                    permissionManager.activeUser(userId);
+                    bot.showGrantedAccessMenu(c.chatId(), c.messageId(), permissionManager.getUsers());
+                })
+                .routeNumeric("access_request_accept_", 10, (c, userId) -> {
+                    permissionManager.approvedRequest(userId);
+                    AccessRequest request = permissionManager.findRequestById(userId);
+                    permissionManager.saveUser(userId, request.getUserName());
+                    bot.showAccessRequestsMenu(c.chatId(), c.messageId(), permissionManager.getRequests());
+                })
+                .routeNumeric("access_request_reject_", 10, (c, userId) -> {
+                    permissionManager.rejectRequest(userId);
+                    bot.showAccessRequestsMenu(c.chatId(), c.messageId(), permissionManager.getRequests());
+                });
+    }
+
+    private void requestAccess(CallbackRouter.Callback callback) {
+        if (permissionManager.hasAccess(callback.userId())) {
+            bot.showMainMenu(callback.chatId(), null, permissionManager.isAdmin(callback.userId()));
+        } else {
+            permissionManager.saveRequest(callback.userId(), getUserName(callback.from()));
+            bot.sendMessage(callback.chatId(), "Запрос на предоставление доступа к боту отправлен", null);
+        }
+    }
+
+    private void toggleChat(CallbackRouter.Callback callback, long chatIndex) {
+        Long chatId = callback.chatId();
+        if (isSendMenuStale(chatId)) {
+            resetStaleSendMenu(chatId, callback.messageId(), callback.id());
+            return;
+        }
+        bot.getSessions()
+                .toggleSelection(chatId, (int) chatIndex);
+        showSendMenu(chatId, callback.messageId());
+    }
+
+    private void uploadChats(CallbackRouter.Callback callback) {
+        SendDocument document = channelManager.uploadData(callback.chatId());
+        if (document == null) {
+            bot.showNotification(callback.id(), "⚠\uFE0F Выгрузка недоступна для базы данных на сервере");
+            return;
+        }
+        // Архив удаляется после завершения именно этой отправки, чем бы она ни закончилась
+        bot.executeAsync(document)
+                .whenComplete((message, e) -> {
+                    if (e != null) {
+                        logger.error(e.getMessage(), e);
                     }
-                }
+                    channelManager.uploadCompleted(document, e == null ? message : null);
+                });
+    }
+
+    private void clearDrafts(CallbackRouter.Callback callback) {
+        bot.getSessions()
+                .clearDrafts(callback.chatId());
+        bot.showMainMenu(callback.chatId(), callback.messageId(), permissionManager.isAdmin(callback.userId()));
+    }
+
+    private void sendDrafts(CallbackRouter.Callback callback) {
+        Long chatId = callback.chatId();
+        Integer messageId = callback.messageId();
+        List<ChatMembership> chats = channelManager.getAll();
+        if (isSendMenuStale(chatId)) {
+            resetStaleSendMenu(chatId, messageId, callback.id());
+            return;
+        }
+        bot.getSessions()
+                .clearSendMenuVersion(chatId);
+        Set<Integer> userSelection = bot.getSessions()
+                .getSelection(chatId);
+        List<ChatMembership> targets = new ArrayList<>();
+        for (int i = 0; i < chats.size(); i++) {
+            ChatMembership chat = chats.get(i);
+            logger.debug("Send forward message into {} ready", chat.getChatTitle());
+            if (!userSelection.contains(i)) {
+                logger.debug("Try send forward message into {}", chat.getChatTitle());
+                targets.add(chat);
             }
-        } else {
-            bot.showRequestAccessMenu(userId);
         }
+        int total = sendForwardMessage(targets, chatId, callback.userId(), getUserName(callback.from()), bot.getSessions()
+                .takeDrafts(chatId));
+        long seconds = Math.max(1, (Duration.ofNanos(broadcastEngine.getRateLimiter()
+                        .estimate(total))
+                .toMillis() + 999) / 1000);
+        bot.showNotification(callback.id(), String.format("✅ Сообщение рассылается адресатам (%d), ориентировочное время %d сек.", total, seconds));
+        bot.showMainMenu(chatId, messageId, permissionManager.isAdmin(callback.userId()));
+    }
+
+    private static String getUserName(User user) {
+        return OptionalUtils.resolve(user::getUserName)
+                .orElse(user.getFirstName() + " " + user.getLastName());
     }
 
     public void handleForwardMessage(Update update) {
@@ -214,25 +251,16 @@ public class MessageHandler {
             logger.warn("User call handleForwardMessage by userId={} without access", userId);
         } else {
             logger.debug("Catch message for send with id={}", message.getMessageId());
-            Long chatId = message.getChatId();
-            bot.getMessagesForSend()
-                    .computeIfAbsent(chatId, k -> new ArrayList<>())
-                    .add(message);
-
-            ScheduledFuture<?> oldTimer = userTimers.get(chatId);
-            if (oldTimer != null) {
-                oldTimer.cancel(false);
-            }
-
-            ScheduledFuture<?> newTimer = scheduler.schedule(() -> {
-                bot.showSendMenu(chatId, null, channelManager.getAll());
-                userTimers.remove(chatId);
-            }, 2, TimeUnit.SECONDS);
-
-            userTimers.put(chatId, newTimer);
+            albumAssembler.add(Draft.of(message));
         }
     }
 
+    private void handleAlbum(AlbumAssembler.Album album) {
+        bot.getSessions()
+                .addDrafts(album.chatId(), album.drafts());
+        showSendMenu(album.chatId(), null);
+    }
+
     public void handleChatMember(Update update) {
         ChatMemberUpdated chatMember = update.getMyChatMember();
         Chat chat = chatMember.getChat();
@@ -276,88 +304,103 @@ public class MessageHandler {
         return "unknown";
     }
 
-    private void sendForwardMessage(ChatMembership chat, Long userId, String userName, List<Message> groupMessages) {
-        executorService.schedule(() -> {
-            List<InputMedia> mediaList = new ArrayList<>();
-            String caption = null;
-            for (Message message : groupMessages) {
-                if (message.hasPhoto()) {
-                    InputMediaPhoto photo = new InputMediaPhoto();
-                    List<PhotoSize> photos = message.getPhoto();
-                    photo.setMedia(photos.get(photos.size() - 1)
-                            .getFileId());
-                    if (message.getCaption() != null && caption == null) {
-                        caption = message.getCaption();
-                        photo.setCaption(caption);
-                    }
-                    photo.setCaptionEntities(message.getCaptionEntities());
-                    mediaList.add(photo);
-                } else if (message.hasVideo()) {
-                    InputMediaVideo video = new InputMediaVideo();
-                    video.setMedia(message.getVideo()
-                            .getFileId());
-                    if (message.getCaption() != null && caption == null) {
-                        caption = message.getCaption();
-                        video.setCaption(caption);
-                    }
-                    video.setCaptionEntities(message.getCaptionEntities());
-                    mediaList.add(video);
+
+    private void showSendMenu(Long chatId, Integer messageId) {
+        bot.getSessions()
+                .setSendMenuVersion(chatId, channelManager.getVersion());
+        bot.showSendMenu(chatId, messageId, channelManager.getAll());
+    }
+
+    private boolean isSendMenuStale(Long chatId) {
+        Long version = bot.getSessions()
+                .getSendMenuVersion(chatId);
+        return version != null && version != channelManager.getVersion();
+    }
+
+    private void resetStaleSendMenu(Long chatId, Integer messageId, String callbackId) {
+        logger.debug("Chats changed after send menu was shown for chatId={}, selection reset", chatId);
+        bot.getSessions()
+                .clearSelection(chatId);
+        bot.showNotification(callbackId, "⚠\uFE0F Список каналов изменился, выберите адресатов заново");
+        showSendMenu(chatId, messageId);
+    }
+
+    private int sendForwardMessage(List<ChatMembership> targets, Long chatId, Long userId, String userName, List<Draft> drafts) {
+        if (drafts == null || drafts.isEmpty() || targets.isEmpty()) {
+            return 0;
+        }
+        long jobId = broadcastQueue.enqueue(userId, userName, drafts, targets);
+        logger.info("Broadcast job {} queued for {} targets", jobId, targets.size());
+        broadcastProgress.start(jobId, chatId, targets.size(), Duration.ofNanos(broadcastEngine.getRateLimiter()
+                .estimate(targets.size())));
+        return targets.size();
+    }
+
+    // Слот отправки в чат уже зарезервирован рассылкой, поэтому вызов не занимает лимиты повторно
+    private CompletableFuture<Void> sendForwardMessage(ChatMembership chat, Long userId, String userName, List<Draft> drafts) {
+        List<InputMedia> mediaList = new ArrayList<>();
+        String caption = null;
+        for (Draft draft : drafts) {
+            if (draft.mediaType() == Draft.MediaType.PHOTO) {
+                InputMediaPhoto photo = new InputMediaPhoto();
+                photo.setMedia(draft.fileId());
+                if (draft.caption() != null && caption == null) {
+                    caption = draft.caption();
+                    photo.setCaption(caption);
                 }
+                photo.setCaptionEntities(draft.captionEntities());
+                mediaList.add(photo);
+            } else if (draft.mediaType() == Draft.MediaType.VIDEO) {
+                InputMediaVideo video = new InputMediaVideo();
+                video.setMedia(draft.fileId());
+                if (draft.caption() != null && caption == null) {
+                    caption = draft.caption();
+                    video.setCaption(caption);
+                }
+                video.setCaptionEntities(draft.captionEntities());
+                mediaList.add(video);
             }
+        }
 
-            if (!mediaList.isEmpty() && mediaList.size() > 1) {
-                SendMediaGroup mediaGroup = new SendMediaGroup(chat.getChatId()
-                        .toString(), mediaList);
-                try {
-                    List<Message> sending = bot.execute(mediaGroup);
-                    try {
+        if (mediaList.size() > 1) {
+            SendMediaGroup mediaGroup = new SendMediaGroup(chat.getChatId()
+                    .toString(), mediaList);
+            return bot.executeAsync(mediaGroup, RateLimiter.Mode.RESERVED)
+                    .thenAccept(sending -> {
                         for (Message message : sending) {
-                            channelManager.saveHistorySending(chat.getChatId(), userId, userName, chat.getChatTitle(), message.getMessageId(), getPartMessageText(message));
+                            saveHistorySending(chat, userId, userName, message.getMessageId(), getPartMessageText(message));
                         }
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
-                } catch (TelegramApiException e) {
-                    logger.error(e.getMessage(), e);
-                }
-            }
-
-            if (!groupMessages.isEmpty() && mediaList.size() < 2) {
-                sendCopyMessage(chat, userId, userName, groupMessages.get(0));
-            }
-        }, 2, TimeUnit.SECONDS);
+                    });
+        }
+        return sendCopyMessage(chat, userId, userName, drafts.get(0));
     }
 
-    public void sendCopyMessage(ChatMembership chat, Long userId, String userName, Message message) {
+    public CompletableFuture<Void> sendCopyMessage(ChatMembership chat, Long userId, String userName, Draft draft) {
         CopyMessage copy = new CopyMessage();
         copy.setChatId(chat.getChatId());
-        copy.setFromChatId(message.getChatId()
+        copy.setFromChatId(draft.chatId()
                 .toString());
-        copy.setMessageId(message.getMessageId());
-        copy.setCaptionEntities(message.getCaptionEntities());
+        copy.setMessageId(draft.messageId());
+        copy.setCaptionEntities(draft.captionEntities());
+        return bot.executeAsync(copy, RateLimiter.Mode.RESERVED)
+                .thenAccept(sending -> saveHistorySending(chat, userId, userName, sending.getMessageId()
+                        .intValue(), draft.preview()));
+    }
+
+    private void saveHistorySending(ChatMembership chat, Long userId, String userName, Integer messageId, String text) {
         try {
-            MessageId sending = bot.execute(copy);
-            try {
-                channelManager.saveHistorySending(chat.getChatId(), userId, userName, chat.getChatTitle(), sending.getMessageId()
-                        .intValue(), getPartMessageText(message));
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-            }
-        } catch (TelegramApiException e) {
+            channelManager.saveHistorySendingAsync(chat.getChatId(), userId, userName, chat.getChatTitle(), messageId, text)
+                    .exceptionally(e -> {
+                        logger.error(e.getMessage(), e);
+                        return null;
+                    });
+        } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
     }
 
     private String getPartMessageText(Message message) {
-        String text = message.getText();
-        if (!StringUtils.isEmpty(text)) {
-            text = message.getText();
-        } else if (!StringUtils.isEmpty(message.getCaption())) {
-            text = message.getCaption();
-        } else {
-            return null;
-        }
-        return text.substring(0, Math.min(text.length(), 50));
+        return Draft.preview(message.getText(), message.getCaption());
     }
 
     private static class OptionalUtils {
@@ -6,10 +6,14 @@ import java.util.Optional;
 
 public class NavigationManager {
 
-    private final NavigationStorage storage;
+    private final NavigationStore storage;
 
     public NavigationManager(String storageFile) {
-        this.storage = NavigationStorage.getInstance(storageFile);
+        this(StorageBackend.navigation(storageFile));
+    }
+
+    public NavigationManager(NavigationStore storage) {
+        this.storage = storage;
     }
 
     /**
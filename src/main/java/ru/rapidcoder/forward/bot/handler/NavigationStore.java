@@ -0,0 +1,19 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import ru.rapidcoder.forward.bot.dto.NavigationState;
+
+import java.util.Optional;
+
+/**
+ * Хранилище состояния меню бота по чатам.
+ * <p>
+ * Реализации: {@link NavigationStorage} для файла SQLite и {@link PostgresNavigationStorage} для сервера баз данных.
+ */
+public interface NavigationStore {
+
+    void saveNavigationState(NavigationState navigationState);
+
+    Optional<NavigationState> getNavigationState(long chatId);
+
+    void clearNavigationState(long chatId);
+}
@@ -0,0 +1,173 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import ru.rapidcoder.forward.bot.dto.PermissionUser;
+
+import java.util.Collection;
+
+/**
+ * Индекс прав пользователей в памяти: идентификатор пользователя → статус и роль.
+ * <p>
+ * Ключи хранятся в массиве {@code long[]} с открытой адресацией, без упаковки в {@link Long}.
+ * Чтение не блокируется: каждое изменение публикует новую копию таблицы (изменения редки, чтения — на каждое обновление).
+ */
+public class PermissionIndex {
+
+    private static final byte ABSENT = 0;
+    private static final PermissionUser.UserStatus[] STATUSES = PermissionUser.UserStatus.values();
+    private static final PermissionUser.UserRole[] ROLES = PermissionUser.UserRole.values();
+    private volatile Table table = new Table(16);
+
+    /**
+     * Заменить содержимое индекса списком пользователей
+     *
+     * @param users пользователи из хранилища
+     */
+    public synchronized void load(Collection<PermissionUser> users) {
+        Table loaded = new Table(capacityFor(users.size()));
+        for (PermissionUser user : users) {
+            loaded.put(user.getUserId(), encode(user.getStatus(), user.getRole()));
+        }
+        table = loaded;
+    }
+
+    /**
+     * Добавить или заменить пользователя
+     *
+     * @param userId идентификатор пользователя
+     * @param status статус пользователя
+     * @param role   роль пользователя
+     */
+    public synchronized void put(long userId, PermissionUser.UserStatus status, PermissionUser.UserRole role) {
+        Table current = table;
+        Table copy = current.copy(capacityFor(current.size + 1));
+        copy.put(userId, encode(status, role));
+        table = copy;
+    }
+
+    /**
+     * Изменить статус пользователя, если он есть в индексе
+     *
+     * @param userId идентификатор пользователя
+     * @param status новый статус
+     */
+    public synchronized void updateStatus(long userId, PermissionUser.UserStatus status) {
+        Table current = table;
+        byte value = current.get(userId);
+        if (value == ABSENT) {
+            return;
+        }
+        Table copy = current.copy(current.keys.length);
+        copy.put(userId, encode(status, decodeRole(value)));
+        table = copy;
+    }
+
+    /**
+     * Получить статус пользователя
+     *
+     * @param userId идентификатор пользователя
+     * @return статус или {@code null}, если пользователя нет
+     */
+    public PermissionUser.UserStatus getStatus(long userId) {
+        byte value = table.get(userId);
+        return value == ABSENT ? null : decodeStatus(value);
+    }
+
+    /**
+     * Получить роль пользователя
+     *
+     * @param userId идентификатор пользователя
+     * @return роль или {@code null}, если пользователя нет
+     */
+    public PermissionUser.UserRole getRole(long userId) {
+        byte value = table.get(userId);
+        return value == ABSENT ? null : decodeRole(value);
+    }
+
+    /**
+     * Проверить, что пользователь есть в индексе и активен
+     *
+     * @param userId идентификатор пользователя
+     * @return признак активного пользователя
+     */
+    public boolean isActive(long userId) {
+        byte value = table.get(userId);
+        return value != ABSENT && decodeStatus(value) == PermissionUser.UserStatus.ACTIVE;
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = 16;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static byte encode(PermissionUser.UserStatus status, PermissionUser.UserRole role) {
+        return (byte) (1 | status.ordinal() << 1 | role.ordinal() << 4);
+    }
+
+    private static PermissionUser.UserStatus decodeStatus(byte value) {
+        return STATUSES[(value >> 1) & 0x7];
+    }
+
+    private static PermissionUser.UserRole decodeRole(byte value) {
+        return ROLES[(value >> 4) & 0x7];
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final byte[] values;
+        private final int mask;
+        private int size;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            values = new byte[capacity];
+            mask = capacity - 1;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private byte get(long key) {
+            int i = hash(key) & mask;
+            while (values[i] != ABSENT) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return ABSENT;
+        }
+
+        private void put(long key, byte value) {
+            int i = hash(key) & mask;
+            while (values[i] != ABSENT) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        private Table copy(int capacity) {
+            Table copy = new Table(Math.max(capacity, keys.length));
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != ABSENT) {
+                    copy.put(keys[i], values[i]);
+                }
+            }
+            return copy;
+        }
+    }
+}
@@ -1,19 +1,55 @@
 package ru.rapidcoder.forward.bot.handler;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.rapidcoder.forward.bot.dto.AccessRequest;
 import ru.rapidcoder.forward.bot.dto.PermissionUser;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class PermissionManager {
 
-    private final PermissionStorage storage;
-    private final List<Long> admins;
+    public static final Duration REFRESH_INTERVAL = Duration.ofSeconds(2);
+    private static final Logger logger = LoggerFactory.getLogger(PermissionManager.class);
+    private final PermissionStore storage;
+    private final long[] admins;
+    private final PermissionIndex index = new PermissionIndex();
+    private final ScheduledExecutorService scheduler;
+    private volatile long indexVersion;
 
     public PermissionManager(String storageFile, List<Long> admins) {
-        this.storage = PermissionStorage.getInstance(storageFile);
-        this.admins = admins;
+        this(StorageBackend.permissions(storageFile), admins);
+    }
+
+    public PermissionManager(PermissionStore storage, List<Long> admins) {
+        this.storage = storage;
+        this.admins = admins.stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        // Версия читается до пользователей: изменение между чтениями приведет к повторной загрузке, а не к потере
+        this.indexVersion = storage.getUsersVersion();
+        this.index.load(storage.getAllUsers());
+        if (indexVersion == PermissionStore.LOCAL_VERSION) {
+            this.scheduler = null;
+        } else {
+            // Пользователей изменяют и другие процессы бота: индекс сверяется с версией в фоне, а не при проверке доступа
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual()
+                    .name("permission-refresh")
+                    .factory());
+            this.scheduler.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL.toNanos(), REFRESH_INTERVAL.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
     }
 
     public void saveUser(Long userId, String userName) {
@@ -23,14 +59,20 @@ public class PermissionManager {
         user.setStatus(PermissionUser.UserStatus.ACTIVE);
         user.setRole(PermissionUser.UserRole.MEMBER);
         storage.saveUser(user);
+        index.put(userId, user.getStatus(), user.getRole());
     }
 
     public void activeUser(Long userId) {
-        storage.updateUserStatus(userId, PermissionUser.UserStatus.ACTIVE);
+        // Индекс меняется только после записи в базу, иначе после перезапуска решение потеряется
+        if (storage.updateUserStatus(userId, PermissionUser.UserStatus.ACTIVE)) {
+            index.updateStatus(userId, PermissionUser.UserStatus.ACTIVE);
+        }
     }
 
     public void blockedUser(Long userId) {
-        storage.updateUserStatus(userId, PermissionUser.UserStatus.BLOCKED);
+        if (storage.updateUserStatus(userId, PermissionUser.UserStatus.BLOCKED)) {
+            index.updateStatus(userId, PermissionUser.UserStatus.BLOCKED);
+        }
     }
 
     public PermissionUser findUserById(Long userId) {
@@ -50,13 +92,41 @@ public class PermissionManager {
     }
 
     public boolean isAdmin(Long userId) {
-        return admins.contains(userId);
+        return userId != null && Arrays.binarySearch(admins, userId) >= 0;
     }
 
+    /**
+     * Проверить доступ пользователя к боту. Проверка выполняется только по индексу в памяти, без запросов к базе
+     *
+     * @param userId идентификатор пользователя
+     * @return признак наличия доступа
+     */
     public boolean hasAccess(Long userId) {
-        return isAdmin(userId) || Optional.ofNullable(findUserById(userId))
-                .map(user -> user.getStatus() == PermissionUser.UserStatus.ACTIVE)
-                .orElse(false);
+        if (isAdmin(userId)) {
+            return true;
+        }
+        return userId != null && index.isActive(userId);
+    }
+
+    /**
+     * Перечитать индекс прав, если список пользователей изменили другие процессы бота. Выполняется в фоне каждые
+     * {@link #REFRESH_INTERVAL}; при ошибке чтения остается прежний индекс
+     */
+    public final void refresh() {
+        try {
+            long version = storage.getUsersVersion();
+            if (version == PermissionStore.LOCAL_VERSION || version == indexVersion) {
+                return;
+            }
+            synchronized (index) {
+                if (version != indexVersion) {
+                    index.load(storage.loadAllUsers());
+                    indexVersion = version;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh permission index, previous index kept: {}", e.getMessage());
+        }
     }
 
     public void saveRequest(Long userId, String userName) {
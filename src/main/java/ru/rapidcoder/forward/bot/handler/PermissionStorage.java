@@ -12,12 +12,13 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 
-public class PermissionStorage {
+public class PermissionStorage implements PermissionStore {
 
+    private static final String STORAGE_NAME = "permission";
     private static final Logger logger = LoggerFactory.getLogger(ChannelStorage.class);
-    private static final String DB_URL = "jdbc:sqlite:";
     private static PermissionStorage instance;
-    private final String storageFile;
+    private final ConnectionPool pool;
+    private final StorageWriter writer;
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private PermissionStorage(String storageFile) {
@@ -25,8 +26,9 @@ public class PermissionStorage {
         if (StringUtils.isEmpty(storageFile)) {
             throw new IllegalArgumentException("Storage file not defined");
         }
-        this.storageFile = storageFile;
-        initDataBase();
+        this.pool = ConnectionPool.getInstance(storageFile);
+        this.writer = StorageWriter.getInstance(storageFile);
+        SchemaMigrations.migrate(pool);
     }
 
     public static synchronized PermissionStorage getInstance(String storageFile) {
@@ -36,101 +38,94 @@ public class PermissionStorage {
         return instance;
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL + storageFile);
-    }
-
-    private void initDataBase() {
-        String sqlUsers = """
-                CREATE TABLE IF NOT EXISTS users (
-                    user_id INTEGER PRIMARY KEY,
-                    user_name TEXT NOT NULL,
-                    status TEXT NOT NULL,
-                    role TEXT NOT NULL,
-                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                )
-                """;
-        String sqlAccessRequests = """
-                CREATE TABLE IF NOT EXISTS access_requests (
-                    user_id INTEGER PRIMARY KEY,
-                    user_name TEXT NOT NULL,
-                    status TEXT NOT NULL,
-                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                )
-                """;
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.execute(sqlUsers);
-            stmt.execute(sqlAccessRequests);
-            logger.info("Permission storage database initialized successfully");
-        } catch (SQLException e) {
-            logger.error("Failed to initialize permission storage database: {}", e.getMessage(), e);
-        }
+    private PooledConnection getConnection(String query) throws SQLException {
+        return pool.acquire()
+                .timed(STORAGE_NAME, query);
     }
 
+    @Override
     public void saveUser(PermissionUser user) {
         String sql = """
                 INSERT OR REPLACE INTO users
                     (user_id, user_name, status, role)
                     VALUES (?, ?, ?, ?)
                 """;
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, user.getUserId());
-            stmt.setString(2, user.getUserName());
-            stmt.setString(3, user.getStatus()
-                    .toString());
-            stmt.setString(4, user.getRole()
-                    .toString());
-            stmt.executeUpdate();
+        try {
+            writer.execute(STORAGE_NAME, "saveUser", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, user.getUserId());
+                stmt.setString(2, user.getUserName());
+                stmt.setString(3, user.getStatus()
+                        .toString());
+                stmt.setString(4, user.getRole()
+                        .toString());
+                return stmt.executeUpdate();
+            });
             logger.debug("Information of user '{}' by userId={} saved into database", user.getUserName(), user.getUserId());
         } catch (SQLException e) {
             throw new IllegalArgumentException(String.format("Failed to save user by userName %s", user.getUserName()), e);
         }
     }
 
+    @Override
     public void saveRequestAccess(AccessRequest request) {
         String sql = """
                 INSERT OR REPLACE INTO access_requests
                     (user_id, user_name, status)
                     VALUES (?, ?, ?)
                 """;
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, request.getUserId());
-            stmt.setString(2, request.getUserName());
-            stmt.setString(3, request.getStatus()
-                    .toString());
-            stmt.executeUpdate();
+        try {
+            writer.execute(STORAGE_NAME, "saveRequestAccess", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, request.getUserId());
+                stmt.setString(2, request.getUserName());
+                stmt.setString(3, request.getStatus()
+                        .toString());
+                return stmt.executeUpdate();
+            });
             logger.debug("Information of access request by userName '{}' and userId={} saved into database", request.getUserName(), request.getUserId());
         } catch (SQLException e) {
             throw new IllegalArgumentException(String.format("Failed to save access request by userName %s", request.getUserName()), e);
         }
     }
 
-    public void updateUserStatus(Long userId, PermissionUser.UserStatus status) {
+    @Override
+    public boolean updateUserStatus(Long userId, PermissionUser.UserStatus status) {
         String sql = "UPDATE users SET status=? WHERE user_id=?";
 
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, status.toString());
-            stmt.setLong(2, userId);
-            stmt.executeUpdate();
+        try {
+            writer.execute(STORAGE_NAME, "updateUserStatus", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setString(1, status.toString());
+                stmt.setLong(2, userId);
+                return stmt.executeUpdate();
+            });
             logger.debug("User permission status modified: {}", userId);
+            return true;
         } catch (SQLException e) {
             logger.error("Failed to modify permission user status by userId {}: {}", userId, e.getMessage(), e);
+            return false;
         }
     }
 
+    @Override
     public void updateRequestStatus(Long userId, AccessRequest.RequestStatus status) {
         String sql = "UPDATE access_requests SET status=? WHERE user_id=?";
 
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, status.toString());
-            stmt.setLong(2, userId);
-            stmt.executeUpdate();
+        try {
+            writer.execute(STORAGE_NAME, "updateRequestStatus", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setString(1, status.toString());
+                stmt.setLong(2, userId);
+                return stmt.executeUpdate();
+            });
             logger.debug("Access request status modified: {}", userId);
         } catch (SQLException e) {
             logger.error("Failed to modify access request status by userId {}: {}", userId, e.getMessage(), e);
         }
     }
 
+    @Override
     public PermissionUser findUserById(Long userId) {
         String sql = """
                     SELECT
@@ -142,11 +137,13 @@ public class PermissionStorage {
                     FROM users WHERE user_id=?
                 """;
 
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = getConnection("findUserById")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setLong(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return resultSetPermissionUser(rs);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return resultSetPermissionUser(rs);
+                }
             }
         } catch (SQLException e) {
             logger.error("Failed to define user by userId {}: {}", userId, e.getMessage(), e);
@@ -154,6 +151,7 @@ public class PermissionStorage {
         return null;
     }
 
+    @Override
     public AccessRequest findRequestById(Long userId) {
         String sql = """
                     SELECT
@@ -164,11 +162,13 @@ public class PermissionStorage {
                     FROM access_requests WHERE user_id=?
                 """;
 
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = getConnection("findRequestById")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setLong(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return resultSetAccessRequest(rs);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return resultSetAccessRequest(rs);
+                }
             }
         } catch (SQLException e) {
             logger.error("Failed to define user by userId {}: {}", userId, e.getMessage(), e);
@@ -176,6 +176,7 @@ public class PermissionStorage {
         return null;
     }
 
+    @Override
     public List<AccessRequest> getAllRequests() {
         String sql = """
                     SELECT
@@ -187,12 +188,14 @@ public class PermissionStorage {
                     WHERE status=?
                 """;
         List<AccessRequest> requests = new ArrayList<>();
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = getConnection("getAllRequests")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setString(1, AccessRequest.RequestStatus.PENDING.toString());
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                AccessRequest request = resultSetAccessRequest(rs);
-                requests.add(request);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    AccessRequest request = resultSetAccessRequest(rs);
+                    requests.add(request);
+                }
             }
         } catch (SQLException e) {
             logger.error("Failed to get all access requests {}", e.getMessage(), e);
@@ -200,6 +203,7 @@ public class PermissionStorage {
         return requests;
     }
 
+    @Override
     public List<PermissionUser> getAllUsers() {
         String sql = """
                     SELECT
@@ -211,11 +215,13 @@ public class PermissionStorage {
                     FROM users
                 """;
         List<PermissionUser> users = new ArrayList<>();
-        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                PermissionUser user = resultSetPermissionUser(rs);
-                users.add(user);
+        try (PooledConnection conn = getConnection("getAllUsers")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    PermissionUser user = resultSetPermissionUser(rs);
+                    users.add(user);
+                }
             }
         } catch (SQLException e) {
             logger.error("Failed to get all users {}", e.getMessage(), e);
@@ -0,0 +1,62 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import ru.rapidcoder.forward.bot.dto.AccessRequest;
+import ru.rapidcoder.forward.bot.dto.PermissionUser;
+
+import java.util.List;
+
+/**
+ * Хранилище пользователей бота и запросов доступа.
+ * <p>
+ * Реализации: {@link PermissionStorage} для файла SQLite и {@link PostgresPermissionStorage} для сервера баз данных.
+ */
+public interface PermissionStore {
+
+    /**
+     * Версия хранилища, которое изменяет только этот процесс
+     */
+    long LOCAL_VERSION = -1;
+
+    void saveUser(PermissionUser user);
+
+    void saveRequestAccess(AccessRequest request);
+
+    /**
+     * Изменить статус пользователя
+     *
+     * @param userId идентификатор пользователя
+     * @param status новый статус
+     * @return true, если изменение сохранено в базе
+     */
+    boolean updateUserStatus(Long userId, PermissionUser.UserStatus status);
+
+    void updateRequestStatus(Long userId, AccessRequest.RequestStatus status);
+
+    PermissionUser findUserById(Long userId);
+
+    AccessRequest findRequestById(Long userId);
+
+    List<AccessRequest> getAllRequests();
+
+    List<PermissionUser> getAllUsers();
+
+    /**
+     * Все пользователи для перечитывания индекса прав. В отличие от {@link #getAllUsers()} ошибка чтения не
+     * подменяется пустым списком, иначе индекс потеряет всех пользователей
+     *
+     * @return пользователи
+     */
+    default List<PermissionUser> loadAllUsers() {
+        return getAllUsers();
+    }
+
+    /**
+     * Версия списка пользователей. Меняется в одной транзакции с каждым изменением пользователей, в том числе
+     * другими процессами бота, поэтому по ней индекс прав в памяти узнает, что его нужно перечитать
+     *
+     * @return версия или {@link #LOCAL_VERSION}, если пользователей изменяет только этот процесс
+     */
+    default long getUsersVersion() {
+        return LOCAL_VERSION;
+    }
+}
@@ -0,0 +1,127 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Соединение, выданное {@link ConnectionPool}.
+ * <p>
+ * Подготовленные запросы кэшируются на время жизни физического соединения и не должны закрываться вызывающим кодом.
+ * Закрытие самого объекта возвращает соединение в пул.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledConnection.class);
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private String storage;
+    private String query;
+    private long startNanos;
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    /**
+     * Получить подготовленный запрос из кэша соединения
+     *
+     * @param sql текст запроса
+     * @return подготовленный запрос с очищенными параметрами
+     * @throws SQLException если запрос не удалось подготовить
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        } else {
+            stmt.clearParameters();
+        }
+        return stmt;
+    }
+
+    /**
+     * Создать некэшируемый запрос. Закрывается вызывающим кодом
+     *
+     * @return запрос
+     * @throws SQLException если запрос не удалось создать
+     */
+    public Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    /**
+     * Физическое соединение, например для управления транзакцией
+     *
+     * @return соединение JDBC
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Учесть время работы с соединением до его возврата в пул как время запроса хранилища
+     *
+     * @param storage название хранилища
+     * @param query   название запроса
+     * @return это соединение
+     */
+    public PooledConnection timed(String storage, String query) {
+        this.storage = storage;
+        this.query = query;
+        this.startNanos = System.nanoTime();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (query != null) {
+            Metrics.observeStorageQuery(storage, query, startNanos);
+            storage = null;
+            query = null;
+        }
+        pool.release(this);
+    }
+
+    boolean isValid() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Pooled connection to {} is broken: {}", pool.getStorageFile(), e.getMessage());
+            return false;
+        }
+    }
+
+    void closePhysical() {
+        for (PreparedStatement stmt : statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close cached statement: {}", e.getMessage());
+            }
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close connection to {}: {}", pool.getStorageFile(), e.getMessage());
+        }
+    }
+}
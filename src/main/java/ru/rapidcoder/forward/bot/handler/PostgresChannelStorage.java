@@ -0,0 +1,273 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.ChatsSnapshot;
+import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Хранилище каналов/групп на сервере баз данных.
+ * <p>
+ * Версия списка каналов хранится в базе и увеличивается в транзакции каждого изменения канала, поэтому
+ * кэш {@link #getChatsSnapshot()} каждого процесса проверяет одну строку версии и перечитывает каналы только
+ * после изменения, сделанного любым процессом.
+ */
+public class PostgresChannelStorage extends PostgresStorage implements ChannelStore {
+
+    private static final String STORAGE_NAME = "channel";
+    private static final String HISTORY_SENDING_COLUMNS = "chat_id, user_id, user_name, chat_title, message_id, msg, created_at";
+    private static final String HISTORY_CHATS_COLUMNS = "chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, created_at, deleted";
+    private static final String CHAT_COLUMNS = "chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, created_at, updated_at";
+    private static final String APPEND_HISTORY_CHAT_SQL = """
+            INSERT INTO history_monitored_chats
+                (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted)
+                SELECT chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted
+                FROM monitored_chats WHERE chat_id=?
+            """;
+    private static final String BUMP_CHATS_VERSION_SQL = "UPDATE storage_versions SET version = version + 1 WHERE name = '" + PostgresSchema.CHATS_VERSION + "'";
+    private static final String CHATS_VERSION_SQL = "SELECT version FROM storage_versions WHERE name = '" + PostgresSchema.CHATS_VERSION + "'";
+    private static final Logger logger = LoggerFactory.getLogger(PostgresChannelStorage.class);
+    private static PostgresChannelStorage instance;
+    private final HistoryQueries queries = new HistoryQueries("id", (rs, column) -> toLocalDateTime(rs.getTimestamp(column)));
+    private volatile ChatsSnapshot chatsSnapshot;
+
+    private PostgresChannelStorage(String url) {
+        super(url, STORAGE_NAME);
+        logger.info("Initializing PostgresChannelStorage with database: {}", StorageBackend.describe(url));
+    }
+
+    public static synchronized PostgresChannelStorage getInstance(String url) {
+        if (instance == null) {
+            instance = new PostgresChannelStorage(url);
+        }
+        return instance;
+    }
+
+    @Override
+    public void saveOrUpdateChat(ChatMembership chat) {
+        String update = """
+                UPDATE monitored_chats SET
+                    user_id=?, user_name=?, chat_title=?, chat_type=?, bot_new_status=?, bot_old_status=?,
+                    deleted=0, updated_at=%s
+                WHERE chat_id=?
+                """.formatted(NOW_UTC);
+        String insert = """
+                INSERT INTO monitored_chats
+                    (user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, chat_id)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                """;
+        try {
+            transaction("saveOrUpdateChat", conn -> {
+                int affectedRows = setChat(conn.prepareStatement(update), chat).executeUpdate();
+                if (affectedRows == 0) {
+                    affectedRows = setChat(conn.prepareStatement(insert), chat).executeUpdate();
+                }
+                return chatChanged(conn, chat.getChatId(), affectedRows);
+            });
+            logger.debug("Information of chat '{}' saved into database", chat.getChatTitle());
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to save chat by chatId %d", chat.getChatId()), e);
+        }
+    }
+
+    private PreparedStatement setChat(PreparedStatement stmt, ChatMembership chat) throws SQLException {
+        stmt.setLong(1, chat.getUserId());
+        stmt.setString(2, chat.getUserName());
+        stmt.setString(3, chat.getChatTitle());
+        stmt.setString(4, chat.getChatType());
+        stmt.setString(5, chat.getBotNewStatus());
+        stmt.setString(6, chat.getBotOldStatus());
+        stmt.setLong(7, chat.getChatId());
+        return stmt;
+    }
+
+    // История и версия списка каналов меняются в той же транзакции, что и сам канал
+    private int chatChanged(PooledConnection conn, long chatId, int affectedRows) throws SQLException {
+        if (affectedRows > 0) {
+            PreparedStatement stmt = conn.prepareStatement(APPEND_HISTORY_CHAT_SQL);
+            stmt.setLong(1, chatId);
+            stmt.executeUpdate();
+            conn.prepareStatement(BUMP_CHATS_VERSION_SQL)
+                    .executeUpdate();
+        }
+        return affectedRows;
+    }
+
+    @Override
+    public void saveHistorySendingToChat(HistorySending send) {
+        try {
+            insertHistorySending(send);
+            logger.debug("Sending history to chat '{}' saved into database", send.getChatTitle());
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to save sending history to chat by chatId %d", send.getMessageId()), e);
+        }
+    }
+
+    // Сервер принимает параллельные записи, поэтому вставка выполняется сразу в вызывающем потоке
+    @Override
+    public CompletableFuture<Integer> saveHistorySendingToChatAsync(HistorySending send) {
+        try {
+            return CompletableFuture.completedFuture(insertHistorySending(send));
+        } catch (SQLException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private int insertHistorySending(HistorySending send) throws SQLException {
+        String sql = """
+                INSERT INTO history_sending_to_chat
+                    (chat_id, user_id, user_name, chat_title, message_id, msg)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                """;
+        try (PooledConnection conn = getConnection("saveHistorySendingToChat")) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, send.getChatId());
+            stmt.setLong(2, send.getUserId());
+            stmt.setString(3, send.getUserName());
+            stmt.setString(4, send.getChatTitle());
+            stmt.setString(5, String.valueOf(send.getMessageId()));
+            stmt.setString(6, send.getText());
+            return stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public List<HistorySending> getHistorySendingToChat() {
+        return getHistorySendingPage(null, true)
+                .items();
+    }
+
+    @Override
+    public HistoryPage<HistorySending> getHistorySendingPage(Long cursor, boolean older) {
+        try (PooledConnection conn = getConnection("getHistorySendingPage")) {
+            return queries.page(conn, "history_sending_to_chat", HISTORY_SENDING_COLUMNS, cursor, older, queries::toHistorySending);
+        } catch (SQLException e) {
+            logger.error("Failed to get sending history {}", e.getMessage(), e);
+            return new HistoryPage<>(List.of(), null, null);
+        }
+    }
+
+    @Override
+    public void deleteChat(Long chatId) {
+        String sql = "UPDATE monitored_chats SET deleted=?, updated_at=" + NOW_UTC + " WHERE chat_id=?";
+
+        try {
+            int affectedRows = transaction("deleteChat", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setInt(1, 1);
+                stmt.setLong(2, chatId);
+                return chatChanged(conn, chatId, stmt.executeUpdate());
+            });
+            if (affectedRows > 0) {
+                logger.debug("Chat deleted from database: {}", +chatId);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to delete chat by chatId {}: {}", chatId, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<ChatMembership> getAllChats() {
+        try (PooledConnection conn = getConnection("getAllChats")) {
+            return loadChats(conn);
+        } catch (SQLException e) {
+            logger.error("Failed to get chats {}", e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public ChatsSnapshot getChatsSnapshot() {
+        ChatsSnapshot snapshot = chatsSnapshot;
+        try (PooledConnection conn = getConnection("getChatsSnapshot")) {
+            long version;
+            try (ResultSet rs = conn.prepareStatement(CHATS_VERSION_SQL)
+                    .executeQuery()) {
+                version = rs.next() ? rs.getLong(1) : 0;
+            }
+            if (snapshot != null && snapshot.version() == version) {
+                return snapshot;
+            }
+            // Каналы могли измениться после чтения версии: тогда следующий вызов увидит новую версию и перечитает их
+            ChatsSnapshot loaded = new ChatsSnapshot(version, loadChats(conn));
+            chatsSnapshot = loaded;
+            return loaded;
+        } catch (SQLException e) {
+            logger.error("Failed to get chats {}", e.getMessage(), e);
+            return snapshot != null ? snapshot : new ChatsSnapshot(0, List.of());
+        }
+    }
+
+    private List<ChatMembership> loadChats(PooledConnection conn) throws SQLException {
+        List<ChatMembership> chats = new ArrayList<>();
+        PreparedStatement stmt = conn.prepareStatement("SELECT " + CHAT_COLUMNS + " FROM monitored_chats WHERE deleted=?");
+        stmt.setInt(1, 0);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                chats.add(queries.toChat(rs));
+            }
+        }
+        return chats;
+    }
+
+    @Override
+    public List<HistoryChatMembership> getHistoryChats() {
+        return getHistoryChatsPage(null, true)
+                .items();
+    }
+
+    @Override
+    public HistoryPage<HistoryChatMembership> getHistoryChatsPage(Long cursor, boolean older) {
+        try (PooledConnection conn = getConnection("getHistoryChatsPage")) {
+            return queries.page(conn, "history_monitored_chats", HISTORY_CHATS_COLUMNS, cursor, older, queries::toHistoryChat);
+        } catch (SQLException e) {
+            logger.error("Failed to get chats history {}", e.getMessage(), e);
+            return new HistoryPage<>(List.of(), null, null);
+        }
+    }
+
+    @Override
+    public ChatMembership findChatById(Long chatId) {
+        try (PooledConnection conn = getConnection("findChatById")) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT " + CHAT_COLUMNS + " FROM monitored_chats WHERE chat_id=? AND deleted=?");
+            stmt.setLong(1, chatId);
+            stmt.setInt(2, 0);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return queries.toChat(rs);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to define chat by chatId {}: {}", chatId, e.getMessage(), e);
+        }
+        return null;
+    }
+
+    @Override
+    public void updateBotStatus(Long chatId, String newStatus, String oldStatus) {
+        String sql = "UPDATE monitored_chats SET bot_new_status=?, bot_old_status=?, updated_at=" + NOW_UTC + " WHERE chat_id=?";
+
+        try {
+            transaction("updateBotStatus", conn -> {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setString(1, newStatus);
+                stmt.setString(2, oldStatus);
+                stmt.setLong(3, chatId);
+                return chatChanged(conn, chatId, stmt.executeUpdate());
+            });
+            logger.debug("Chat's status modified: {}", chatId);
+        } catch (SQLException e) {
+            logger.error("Failed to modify chat's status by chatId {}: {}", chatId, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.dto.NavigationState;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * Хранилище состояния меню бота на сервере баз данных
+ */
+public class PostgresNavigationStorage extends PostgresStorage implements NavigationStore {
+
+    private static final String STORAGE_NAME = "navigation";
+    private static final Logger logger = LoggerFactory.getLogger(PostgresNavigationStorage.class);
+    private static PostgresNavigationStorage instance;
+
+    private PostgresNavigationStorage(String url) {
+        super(url, STORAGE_NAME);
+        logger.info("Initializing PostgresNavigationStorage with database: {}", StorageBackend.describe(url));
+    }
+
+    public static synchronized PostgresNavigationStorage getInstance(String url) {
+        if (instance == null) {
+            instance = new PostgresNavigationStorage(url);
+        }
+        return instance;
+    }
+
+    @Override
+    public void saveNavigationState(NavigationState navigationState) {
+        String update = "UPDATE navigation_history SET state=?, context=?, updated_at=" + NOW_UTC + " WHERE chat_id=?";
+        String insert = "INSERT INTO navigation_history (state, context, chat_id) VALUES (?, ?, ?)";
+        try {
+            transaction("saveNavigationState", conn -> {
+                int affectedRows = setState(conn.prepareStatement(update), navigationState).executeUpdate();
+                return affectedRows > 0 ? affectedRows : setState(conn.prepareStatement(insert), navigationState).executeUpdate();
+            });
+            logger.debug("Saved navigation state for chat {}: ", navigationState);
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to save navigation state for chatId %d", navigationState.getChatId()), e);
+        }
+    }
+
+    private PreparedStatement setState(PreparedStatement stmt, NavigationState navigationState) throws SQLException {
+        stmt.setString(1, navigationState.getState());
+        stmt.setString(2, navigationState.getContext());
+        stmt.setLong(3, navigationState.getChatId());
+        return stmt;
+    }
+
+    @Override
+    public Optional<NavigationState> getNavigationState(long chatId) {
+        try (PooledConnection conn = getConnection("getNavigationState")) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT chat_id, state, context, updated_at FROM navigation_history WHERE chat_id = ?");
+            stmt.setLong(1, chatId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    NavigationState navigationState = new NavigationState();
+                    navigationState.setChatId(rs.getLong("chat_id"));
+                    navigationState.setState(rs.getString("state"));
+                    navigationState.setContext(rs.getString("context"));
+                    navigationState.setLastUpdated(toLocalDateTime(rs.getTimestamp("updated_at")));
+                    return Optional.of(navigationState);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to get navigation state for chat {}: {}", chatId, e.getMessage(), e);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void clearNavigationState(long chatId) {
+        try (PooledConnection conn = getConnection("clearNavigationState")) {
+            PreparedStatement stmt = conn.prepareStatement("DELETE FROM navigation_history WHERE chat_id = ?");
+            stmt.setLong(1, chatId);
+            stmt.executeUpdate();
+            logger.debug("Cleared navigation state for chat {}", chatId);
+        } catch (SQLException e) {
+            logger.error("Failed to clear navigation state for chat {}: {}", chatId, e.getMessage(), e);
+        }
+    }
+}
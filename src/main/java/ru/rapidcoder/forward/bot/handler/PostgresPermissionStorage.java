@@ -0,0 +1,236 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.dto.AccessRequest;
+import ru.rapidcoder.forward.bot.dto.PermissionUser;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хранилище пользователей и запросов доступа на сервере баз данных
+ */
+public class PostgresPermissionStorage extends PostgresStorage implements PermissionStore {
+
+    private static final String STORAGE_NAME = "permission";
+    private static final String BUMP_USERS_VERSION_SQL = "UPDATE storage_versions SET version = version + 1 WHERE name = '" + PostgresSchema.USERS_VERSION + "'";
+    private static final String USERS_VERSION_SQL = "SELECT version FROM storage_versions WHERE name = '" + PostgresSchema.USERS_VERSION + "'";
+    private static final Logger logger = LoggerFactory.getLogger(PostgresPermissionStorage.class);
+    private static PostgresPermissionStorage instance;
+
+    private PostgresPermissionStorage(String url) {
+        super(url, STORAGE_NAME);
+        logger.info("Initializing PostgresPermissionStorage with database: {}", StorageBackend.describe(url));
+    }
+
+    public static synchronized PostgresPermissionStorage getInstance(String url) {
+        if (instance == null) {
+            instance = new PostgresPermissionStorage(url);
+        }
+        return instance;
+    }
+
+    // Замена строки целиком, как INSERT OR REPLACE в SQLite: created_at получает текущее время
+    @Override
+    public void saveUser(PermissionUser user) {
+        String update = "UPDATE users SET user_name=?, status=?, role=?, created_at=" + NOW_UTC + " WHERE user_id=?";
+        String insert = "INSERT INTO users (user_name, status, role, user_id) VALUES (?, ?, ?, ?)";
+        try {
+            transaction("saveUser", conn -> {
+                int affectedRows = setUser(conn.prepareStatement(update), user).executeUpdate();
+                if (affectedRows == 0) {
+                    affectedRows = setUser(conn.prepareStatement(insert), user).executeUpdate();
+                }
+                conn.prepareStatement(BUMP_USERS_VERSION_SQL)
+                        .executeUpdate();
+                return affectedRows;
+            });
+            logger.debug("Information of user '{}' by userId={} saved into database", user.getUserName(), user.getUserId());
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to save user by userName %s", user.getUserName()), e);
+        }
+    }
+
+    private PreparedStatement setUser(PreparedStatement stmt, PermissionUser user) throws SQLException {
+        stmt.setString(1, user.getUserName());
+        stmt.setString(2, user.getStatus()
+                .toString());
+        stmt.setString(3, user.getRole()
+                .toString());
+        stmt.setLong(4, user.getUserId());
+        return stmt;
+    }
+
+    @Override
+    public void saveRequestAccess(AccessRequest request) {
+        String update = "UPDATE access_requests SET user_name=?, status=?, created_at=" + NOW_UTC + " WHERE user_id=?";
+        String insert = "INSERT INTO access_requests (user_name, status, user_id) VALUES (?, ?, ?)";
+        try {
+            transaction("saveRequestAccess", conn -> {
+                int affectedRows = setRequest(conn.prepareStatement(update), request).executeUpdate();
+                return affectedRows > 0 ? affectedRows : setRequest(conn.prepareStatement(insert), request).executeUpdate();
+            });
+            logger.debug("Information of access request by userName '{}' and userId={} saved into database", request.getUserName(), request.getUserId());
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(String.format("Failed to save access request by userName %s", request.getUserName()), e);
+        }
+    }
+
+    private PreparedStatement setRequest(PreparedStatement stmt, AccessRequest request) throws SQLException {
+        stmt.setString(1, request.getUserName());
+        stmt.setString(2, request.getStatus()
+                .toString());
+        stmt.setLong(3, request.getUserId());
+        return stmt;
+    }
+
+    @Override
+    public boolean updateUserStatus(Long userId, PermissionUser.UserStatus status) {
+        try {
+            transaction("updateUserStatus", conn -> {
+                PreparedStatement stmt = conn.prepareStatement("UPDATE users SET status=? WHERE user_id=?");
+                stmt.setString(1, status.toString());
+                stmt.setLong(2, userId);
+                int affectedRows = stmt.executeUpdate();
+                conn.prepareStatement(BUMP_USERS_VERSION_SQL)
+                        .executeUpdate();
+                return affectedRows;
+            });
+            logger.debug("User permission status modified: {}", userId);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Failed to modify permission user status by userId {}: {}", userId, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void updateRequestStatus(Long userId, AccessRequest.RequestStatus status) {
+        try {
+            try (PooledConnection conn = getConnection("updateRequestStatus")) {
+                PreparedStatement stmt = conn.prepareStatement("UPDATE access_requests SET status=? WHERE user_id=?");
+                stmt.setString(1, status.toString());
+                stmt.setLong(2, userId);
+                stmt.executeUpdate();
+            }
+            logger.debug("Access request status modified: {}", userId);
+        } catch (SQLException e) {
+            logger.error("Failed to modify access request status by userId {}: {}", userId, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PermissionUser findUserById(Long userId) {
+        try (PooledConnection conn = getConnection("findUserById")) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT user_id, user_name, status, role, created_at FROM users WHERE user_id=?");
+            stmt.setLong(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return resultSetPermissionUser(rs);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to define user by userId {}: {}", userId, e.getMessage(), e);
+        }
+        return null;
+    }
+
+    @Override
+    public AccessRequest findRequestById(Long userId) {
+        try (PooledConnection conn = getConnection("findRequestById")) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT user_id, user_name, status, created_at FROM access_requests WHERE user_id=?");
+            stmt.setLong(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return resultSetAccessRequest(rs);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to define user by userId {}: {}", userId, e.getMessage(), e);
+        }
+        return null;
+    }
+
+    @Override
+    public List<AccessRequest> getAllRequests() {
+        List<AccessRequest> requests = new ArrayList<>();
+        try (PooledConnection conn = getConnection("getAllRequests")) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT user_id, user_name, status, created_at FROM access_requests WHERE status=?");
+            stmt.setString(1, AccessRequest.RequestStatus.PENDING.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    requests.add(resultSetAccessRequest(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to get all access requests {}", e.getMessage(), e);
+        }
+        return requests;
+    }
+
+    @Override
+    public List<PermissionUser> getAllUsers() {
+        try {
+            return readUsers("getAllUsers");
+        } catch (SQLException e) {
+            logger.error("Failed to get all users {}", e.getMessage(), e);
+        }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<PermissionUser> loadAllUsers() {
+        try {
+            return readUsers("loadAllUsers");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load users", e);
+        }
+    }
+
+    private List<PermissionUser> readUsers(String query) throws SQLException {
+        List<PermissionUser> users = new ArrayList<>();
+        try (PooledConnection conn = getConnection(query)) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT user_id, user_name, status, role, created_at FROM users");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(resultSetPermissionUser(rs));
+                }
+            }
+        }
+        return users;
+    }
+
+    // Без версии нельзя проверить актуальность индекса прав, поэтому ошибка не подменяется значением по умолчанию
+    @Override
+    public long getUsersVersion() {
+        try (PooledConnection conn = getConnection("getUsersVersion"); ResultSet rs = conn.prepareStatement(USERS_VERSION_SQL)
+                .executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read users version", e);
+        }
+    }
+
+    private PermissionUser resultSetPermissionUser(ResultSet rs) throws SQLException {
+        PermissionUser user = new PermissionUser();
+        user.setUserId(rs.getLong("user_id"));
+        user.setUserName(rs.getString("user_name"));
+        user.setStatus(PermissionUser.UserStatus.valueOf(rs.getString("status")));
+        user.setRole(PermissionUser.UserRole.valueOf(rs.getString("role")));
+        user.setAddedDate(toLocalDateTime(rs.getTimestamp("created_at")));
+        return user;
+    }
+
+    private AccessRequest resultSetAccessRequest(ResultSet rs) throws SQLException {
+        AccessRequest request = new AccessRequest();
+        request.setUserId(rs.getLong("user_id"));
+        request.setUserName(rs.getString("user_name"));
+        request.setStatus(AccessRequest.RequestStatus.valueOf(rs.getString("status")));
+        request.setAddedDate(toLocalDateTime(rs.getTimestamp("created_at")));
+        return request;
+    }
+}
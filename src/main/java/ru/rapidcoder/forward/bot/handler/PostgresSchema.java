@@ -0,0 +1,214 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Версионированные миграции схемы на сервере баз данных.
+ * <p>
+ * Таблицы те же, что в {@link SchemaMigrations}, с поправками на сервер: ключ строк истории — колонка
+ * {@code id} вместо {@code rowid} SQLite, время хранится в UTC, версии списков каналов и пользователей — в таблице
+ * {@code storage_versions}, чтобы их изменение видели все процессы. Версия схемы хранится в таблице
+ * {@code schema_version}; миграции применяет первый запустившийся процесс под блокировкой строки версии,
+ * остальные ждут ее и видят уже обновленную схему.
+ */
+public final class PostgresSchema {
+
+    public static final String CHATS_VERSION = "chats";
+    public static final String USERS_VERSION = "users";
+    private static final String STORAGE_NAME = "schema";
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final Logger logger = LoggerFactory.getLogger(PostgresSchema.class);
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "permission tables", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS users (
+                        user_id BIGINT PRIMARY KEY,
+                        user_name VARCHAR NOT NULL,
+                        status VARCHAR NOT NULL,
+                        role VARCHAR NOT NULL,
+                        created_at TIMESTAMP DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC')
+                    )
+                    """, """
+                    CREATE TABLE IF NOT EXISTS access_requests (
+                        user_id BIGINT PRIMARY KEY,
+                        user_name VARCHAR NOT NULL,
+                        status VARCHAR NOT NULL,
+                        created_at TIMESTAMP DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC')
+                    )
+                    """)),
+            new Migration(2, "channel tables", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS monitored_chats (
+                        chat_id BIGINT PRIMARY KEY,
+                        user_id BIGINT NOT NULL,
+                        user_name VARCHAR NOT NULL,
+                        chat_title VARCHAR NOT NULL,
+                        chat_type VARCHAR NOT NULL,
+                        bot_new_status VARCHAR NOT NULL,
+                        bot_old_status VARCHAR,
+                        deleted INTEGER DEFAULT 0,
+                        created_at TIMESTAMP DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC'),
+                        updated_at TIMESTAMP DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC')
+                    )
+                    """, """
+                    CREATE TABLE IF NOT EXISTS history_monitored_chats (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        chat_id BIGINT NOT NULL,
+                        user_id BIGINT NOT NULL,
+                        user_name VARCHAR NOT NULL,
+                        chat_title VARCHAR NOT NULL,
+                        chat_type VARCHAR NOT NULL,
+                        bot_new_status VARCHAR NOT NULL,
+                        bot_old_status VARCHAR,
+                        deleted INTEGER,
+                        created_at TIMESTAMP DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC')
+                    )
+                    """, """
+                    CREATE TABLE IF NOT EXISTS history_sending_to_chat (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        chat_id BIGINT NOT NULL,
+                        user_id BIGINT NOT NULL,
+                        user_name VARCHAR NOT NULL,
+                        chat_title VARCHAR NOT NULL,
+                        message_id VARCHAR NOT NULL,
+                        msg VARCHAR,
+                        created_at TIMESTAMP DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC')
+                    )
+                    """,
+                    // Индексы для постраничного чтения истории по (created_at, id)
+                    "CREATE INDEX IF NOT EXISTS history_monitored_chats_created_at ON history_monitored_chats (created_at, id)",
+                    "CREATE INDEX IF NOT EXISTS history_sending_to_chat_created_at ON history_sending_to_chat (created_at, id)")),
+            new Migration(3, "navigation tables", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS navigation_history (
+                        chat_id BIGINT PRIMARY KEY,
+                        state VARCHAR NOT NULL,
+                        context VARCHAR,
+                        updated_at TIMESTAMP DEFAULT (CURRENT_TIMESTAMP AT TIME ZONE 'UTC')
+                    )
+                    """)),
+            new Migration(4, "storage versions", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS storage_versions (
+                        name VARCHAR PRIMARY KEY,
+                        version BIGINT NOT NULL
+                    )
+                    """, "INSERT INTO storage_versions (name, version) VALUES ('" + CHATS_VERSION + "', 0)")),
+            new Migration(5, "users version", conn -> execute(conn, "INSERT INTO storage_versions (name, version) VALUES ('" + USERS_VERSION + "', 0)")));
+
+    private PostgresSchema() {
+    }
+
+    /**
+     * Последняя версия схемы
+     *
+     * @return номер последней миграции
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1)
+                .version();
+    }
+
+    /**
+     * Привести схему базы к последней версии, если это еще не сделано для пула
+     *
+     * @param pool пул соединений сервера баз данных
+     */
+    public static void migrate(ConnectionPool pool) {
+        synchronized (pool) {
+            if (pool.isMigrated()) {
+                return;
+            }
+            try (PooledConnection conn = pool.acquire()
+                    .timed(STORAGE_NAME, "migrate")) {
+                migrate(conn.getConnection());
+                pool.setMigrated(true);
+            } catch (SQLException e) {
+                logger.error("Failed to migrate database {}: {}", StorageBackend.describe(pool.getStorageFile()), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Текущая версия схемы
+     *
+     * @param conn соединение
+     * @return версия из таблицы {@code schema_version}, 0 для пустой базы
+     * @throws SQLException ошибка чтения
+     */
+    public static int readVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM information_schema.tables WHERE lower(table_name) = 'schema_version'")) {
+                if (!rs.next()) {
+                    return 0;
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version WHERE id = 1")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private static void migrate(Connection conn) throws SQLException {
+        int latest = latestVersion();
+        if (readVersion(conn) >= latest) {
+            return;
+        }
+        execute(conn, "CREATE TABLE IF NOT EXISTS schema_version (id INTEGER PRIMARY KEY, version INTEGER NOT NULL)");
+        try {
+            execute(conn, "INSERT INTO schema_version (id, version) VALUES (1, 0)");
+        } catch (SQLException e) {
+            // Строку версии уже добавил другой процесс
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                throw e;
+            }
+        }
+        conn.setAutoCommit(false);
+        try {
+            int version;
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version WHERE id = 1 FOR UPDATE")) {
+                version = rs.next() ? rs.getInt(1) : 0;
+            }
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() > version) {
+                    logger.info("Applying schema migration {}: {}", migration.version(), migration.description());
+                    migration.step()
+                            .apply(conn);
+                }
+            }
+            if (version < latest) {
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE schema_version SET version = ? WHERE id = 1")) {
+                    stmt.setInt(1, latest);
+                    stmt.executeUpdate();
+                }
+            }
+            conn.commit();
+            logger.info("Database schema migrated from version {} to {}", version, latest);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static void execute(Connection conn, String... sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : sql) {
+                stmt.execute(statement);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+}
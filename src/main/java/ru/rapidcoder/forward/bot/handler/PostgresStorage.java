@@ -0,0 +1,61 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Общая часть хранилищ на сервере баз данных.
+ * <p>
+ * Записи выполняются транзакциями прямо на соединениях пула, без единственного писателя: параллельные записи
+ * нескольких процессов упорядочивает сервер. Вставка или обновление строки по ключу выполняется как
+ * {@code UPDATE}, а при отсутствии строки {@code INSERT}; если строку одновременно вставил другой процесс,
+ * транзакция повторяется.
+ */
+abstract class PostgresStorage {
+
+    // Время в колонках хранится в UTC без зоны, как CURRENT_TIMESTAMP в SQLite
+    static final String NOW_UTC = "(CURRENT_TIMESTAMP AT TIME ZONE 'UTC')";
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final int MAX_ATTEMPTS = 3;
+    private final ConnectionPool pool;
+    private final String storageName;
+
+    PostgresStorage(String url, String storageName) {
+        if (StringUtils.isEmpty(url)) {
+            throw new IllegalArgumentException("Storage file not defined");
+        }
+        this.pool = ConnectionPool.getInstance(url);
+        this.storageName = storageName;
+        PostgresSchema.migrate(pool);
+    }
+
+    PooledConnection getConnection(String query) throws SQLException {
+        return pool.acquire()
+                .timed(storageName, query);
+    }
+
+    int transaction(String query, StorageWriter.Write write) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try (PooledConnection conn = getConnection(query)) {
+                Connection connection = conn.getConnection();
+                connection.setAutoCommit(false);
+                int result = write.apply(conn);
+                connection.commit();
+                connection.setAutoCommit(true);
+                return result;
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState()) || attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
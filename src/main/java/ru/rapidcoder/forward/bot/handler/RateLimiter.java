@@ -0,0 +1,183 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Планировщик отправки с учетом лимитов Bot API.
+ * <p>
+ * Общий лимит бота — около 30 сообщений в секунду, лимит на один чат — одно сообщение в секунду,
+ * для групп — 20 сообщений в минуту. Лимиты устроены как корзины токенов емкостью в один токен: каждый вызов
+ * занимает ближайший слот, свободный и в общей корзине, и в корзине чата. Вместо блокировки потока
+ * {@link #reserve(long, String)} резервирует слот и возвращает время ожидания до него — так рассылки планируют
+ * отправки заранее. Через {@link #acquire(Long, String, Mode)} проходит каждый вызов Bot API: он ждет своего слота
+ * или сразу завершается ошибкой {@link LimitExceededException}, если ждать вызывающему не нужно.
+ */
+public class RateLimiter {
+
+    public static final int GLOBAL_PER_SECOND = 30;
+    public static final long CHAT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final long GROUP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(3);
+    private static final int CLEANUP_THRESHOLD = 1024;
+    private static final String GROUP = "group";
+    // Идентификаторы супергрупп и каналов начинаются с -100, у обычных групп они короче
+    private static final long CHANNEL_ID_BOUND = -1_000_000_000_000L;
+    private final long globalIntervalNanos;
+    private final LongSupplier clock;
+    private final Map<Long, Long> chatNextSlot = new ConcurrentHashMap<>();
+    private long globalNextSlot;
+
+    public RateLimiter() {
+        this(GLOBAL_PER_SECOND, System::nanoTime);
+    }
+
+    public RateLimiter(int globalPerSecond, LongSupplier clock) {
+        this.globalIntervalNanos = TimeUnit.SECONDS.toNanos(1) / globalPerSecond;
+        this.clock = clock;
+        this.globalNextSlot = clock.getAsLong();
+    }
+
+    /**
+     * Зарезервировать слот отправки в чат
+     *
+     * @param chatId   идентификатор чата
+     * @param chatType тип чата
+     * @return время ожидания до зарезервированного слота, нс
+     */
+    public long reserve(long chatId, String chatType) {
+        long wait;
+        synchronized (this) {
+            wait = reserve(clock.getAsLong(), chatId, chatType);
+        }
+        Metrics.setApiRateLimitWait(wait);
+        return wait;
+    }
+
+    /**
+     * Пропустить вызов Bot API через лимиты
+     *
+     * @param chatId   чат, в который направлен вызов, или {@code null} для вызовов без чата, они не ограничиваются
+     * @param chatType тип чата или {@code null}: тогда группами считаются только чаты с отрицательным идентификатором
+     *                 без префикса -100, остальные чаты ограничиваются как личные
+     * @param mode     ждать слота, завершиться ошибкой без ожидания или пропустить уже зарезервированный вызов
+     * @return время ожидания, нс
+     * @throws LimitExceededException в режиме {@link Mode#FAIL_FAST}, если слот сейчас занят
+     * @throws TelegramApiException   ожидание прервано
+     */
+    public long acquire(Long chatId, String chatType, Mode mode) throws TelegramApiException {
+        if (chatId == null || mode == Mode.RESERVED) {
+            return 0;
+        }
+        String type = chatType != null ? chatType : chatId < 0 && chatId > CHANNEL_ID_BOUND ? GROUP : "private";
+        long wait;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            wait = nextSlot(now, chatId) - now;
+            if (mode == Mode.FAIL_FAST && wait > 0) {
+                Metrics.incApiRateLimited();
+                throw new LimitExceededException(chatId, wait);
+            }
+            wait = reserve(now, chatId, type);
+        }
+        Metrics.setApiRateLimitWait(wait);
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+                throw new TelegramApiException(e);
+            }
+        }
+        return wait;
+    }
+
+    private long reserve(long now, long chatId, String chatType) {
+        // Каждый вызов занимает и общий слот, поэтому одновременно освободившиеся чаты не превышают общий лимит
+        long slot = nextSlot(now, chatId);
+        globalNextSlot = slot + globalIntervalNanos;
+        chatNextSlot.put(chatId, slot + chatInterval(chatType));
+        if (chatNextSlot.size() > CLEANUP_THRESHOLD) {
+            chatNextSlot.values()
+                    .removeIf(next -> next - now < 0);
+        }
+        return slot - now;
+    }
+
+    private long nextSlot(long now, long chatId) {
+        long slot = Math.max(now, globalNextSlot);
+        Long chatSlot = chatNextSlot.get(chatId);
+        return chatSlot != null && chatSlot - slot > 0 ? chatSlot : slot;
+    }
+
+    /**
+     * Отложить отправку в чат после ответа 429 Too Many Requests
+     *
+     * @param chatId            идентификатор чата
+     * @param retryAfterSeconds значение retry_after из ответа Bot API
+     */
+    public synchronized void penalize(long chatId, int retryAfterSeconds) {
+        long next = clock.getAsLong() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+        chatNextSlot.merge(chatId, next, (current, candidate) -> candidate - current > 0 ? candidate : current);
+    }
+
+    /**
+     * Оценить время отправки в заданное количество чатов при соблюдении лимитов
+     *
+     * @param targets количество чатов
+     * @return оценка времени, нс
+     */
+    public long estimate(int targets) {
+        return targets <= 0 ? 0 : (targets - 1) * globalIntervalNanos;
+    }
+
+    private long chatInterval(String chatType) {
+        return GROUP.equals(chatType) || "supergroup".equals(chatType) ? GROUP_INTERVAL_NANOS : CHAT_INTERVAL_NANOS;
+    }
+
+    /**
+     * Поведение вызова при занятом слоте
+     */
+    public enum Mode {
+        /**
+         * Дождаться ближайшего свободного слота
+         */
+        WAIT,
+        /**
+         * Не ждать: завершиться ошибкой {@link LimitExceededException}
+         */
+        FAIL_FAST,
+        /**
+         * Слот уже зарезервирован через {@link #reserve(long, String)}, например, рассылкой
+         */
+        RESERVED
+    }
+
+    /**
+     * Вызов не выполнен: слот отправки в чат сейчас занят
+     */
+    public static class LimitExceededException extends TelegramApiException {
+
+        private static final long serialVersionUID = 1L;
+        private final long waitNanos;
+
+        public LimitExceededException(long chatId, long waitNanos) {
+            super(String.format("Rate limit exceeded for chatId=%d, next slot in %d ms", chatId, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+            this.waitNanos = waitNanos;
+        }
+
+        /**
+         * Время до ближайшего свободного слота
+         *
+         * @return время ожидания, нс
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+    }
+}
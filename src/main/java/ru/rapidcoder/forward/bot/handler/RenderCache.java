@@ -0,0 +1,108 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Отпечатки последнего показанного содержимого сообщений бота.
+ * <p>
+ * Для каждой пары (чат, сообщение) хранятся хэши текста и клавиатуры, отправленных в Telegram. Перед
+ * редактированием сообщения по ним определяется, что изменилось: если ничего — запрос не нужен (Telegram все равно
+ * ответит "message is not modified"), если только клавиатура — достаточно editMessageReplyMarkup. Количество
+ * запоминаемых сообщений ограничено, вытесняются сообщения, к которым дольше всего не обращались.
+ */
+public class RenderCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final int maxEntries;
+    private final Map<Key, Rendered> entries;
+
+    public RenderCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public RenderCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Rendered> eldest) {
+                return size() > RenderCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Что изменится в сообщении после редактирования
+     *
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения
+     * @param text      новый текст
+     * @param keyboard  новая клавиатура
+     * @return {@link Change#NONE}, если сообщение показано с тем же содержимым; {@link Change#TEXT}, если содержимое
+     * сообщения неизвестно
+     */
+    public synchronized Change diff(Long chatId, Integer messageId, String text, InlineKeyboardMarkup keyboard) {
+        Rendered rendered = entries.get(new Key(chatId, messageId));
+        if (rendered == null || rendered.textHash() != hash(text)) {
+            return Change.TEXT;
+        }
+        return rendered.keyboardHash() == hash(keyboard) ? Change.NONE : Change.MARKUP;
+    }
+
+    /**
+     * Запомнить содержимое, показанное в сообщении
+     *
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения
+     * @param text      текст
+     * @param keyboard  клавиатура
+     */
+    public synchronized void remember(Long chatId, Integer messageId, String text, InlineKeyboardMarkup keyboard) {
+        entries.put(new Key(chatId, messageId), new Rendered(hash(text), hash(keyboard)));
+    }
+
+    /**
+     * Забыть содержимое сообщения, например, если редактирование не удалось
+     *
+     * @param chatId    идентификатор чата
+     * @param messageId идентификатор сообщения
+     */
+    public synchronized void forget(Long chatId, Integer messageId) {
+        entries.remove(new Key(chatId, messageId));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Клавиатура хэшируется так же, как текст: строковое представление включает все поля всех кнопок
+    private static long hash(InlineKeyboardMarkup keyboard) {
+        return keyboard == null ? 0 : hash(keyboard.toString());
+    }
+
+    // 64-битный FNV-1a: у String.hashCode слишком частые совпадения для похожих текстов меню
+    private static long hash(String text) {
+        if (text == null) {
+            return 0;
+        }
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public enum Change {
+        NONE, MARKUP, TEXT
+    }
+
+    private record Key(Long chatId, Integer messageId) {
+    }
+
+    private record Rendered(long textHash, long keyboardHash) {
+    }
+}
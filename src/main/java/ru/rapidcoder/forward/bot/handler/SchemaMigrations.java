@@ -0,0 +1,280 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Версионированные миграции схемы базы данных.
+ * <p>
+ * Версия схемы хранится в заголовке файла базы ({@code PRAGMA user_version}). Миграции выполняются по порядку, только
+ * те, что новее записанной версии, в одной транзакции вместе с обновлением версии. Поэтому при перезапуске с
+ * актуальной схемой выполняется одно чтение pragma, а не DDL каждого хранилища. Проверка выполняется один раз на пул
+ * соединений, первым хранилищем файла. Базы, созданные до появления миграций, имеют версию 0: первые миграции
+ * написаны через {@code IF NOT EXISTS} и проверку колонок, поэтому на таких базах они только дописывают недостающее.
+ * Новые изменения схемы добавляются в конец {@link #MIGRATIONS}, уже выпущенные миграции не меняются.
+ * <p>
+ * Там же база переводится в режим {@code auto_vacuum = INCREMENTAL}, в котором {@link HistoryRetention} возвращает
+ * освободившиеся страницы. Новая база создается сразу в этом режиме, существующая переводится полным {@code VACUUM}
+ * один раз при запуске, пока обработка обновлений и очередь записи еще не начали работать с базой.
+ */
+public final class SchemaMigrations {
+
+    private static final String STORAGE_NAME = "schema";
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrations.class);
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "permission tables", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS users (
+                        user_id INTEGER PRIMARY KEY,
+                        user_name TEXT NOT NULL,
+                        status TEXT NOT NULL,
+                        role TEXT NOT NULL,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """, """
+                    CREATE TABLE IF NOT EXISTS access_requests (
+                        user_id INTEGER PRIMARY KEY,
+                        user_name TEXT NOT NULL,
+                        status TEXT NOT NULL,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """)),
+            new Migration(2, "channel tables", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS monitored_chats (
+                        chat_id INTEGER PRIMARY KEY,
+                        user_id INTEGER NOT NULL,
+                        user_name TEXT NOT NULL,
+                        chat_title TEXT NOT NULL,
+                        chat_type TEXT NOT NULL,
+                        bot_new_status TEXT NOT NULL,
+                        bot_old_status TEXT,
+                        deleted INTEGER DEFAULT 0,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                        updated_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """, """
+                    CREATE TABLE IF NOT EXISTS history_monitored_chats (
+                        chat_id INTEGER NOT NULL,
+                        user_id INTEGER NOT NULL,
+                        user_name TEXT NOT NULL,
+                        chat_title TEXT NOT NULL,
+                        chat_type TEXT NOT NULL,
+                        bot_new_status TEXT NOT NULL,
+                        bot_old_status TEXT,
+                        deleted INTEGER,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """, """
+                    CREATE TRIGGER IF NOT EXISTS monitored_chats_update
+                    AFTER UPDATE ON monitored_chats
+                    FOR EACH ROW
+                    BEGIN
+                        UPDATE monitored_chats
+                        SET updated_at = CURRENT_TIMESTAMP
+                        WHERE chat_id = NEW.chat_id;
+
+                        INSERT INTO history_monitored_chats
+                        (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted)
+                        VALUES
+                        (NEW.chat_id, NEW.user_id, NEW.user_name, NEW.chat_title, NEW.chat_type, NEW.bot_new_status, NEW.bot_old_status, NEW.deleted);
+                    END;
+                    """, """
+                    CREATE TRIGGER IF NOT EXISTS monitored_chats_insert
+                    AFTER INSERT ON monitored_chats
+                    BEGIN
+                        INSERT INTO history_monitored_chats
+                        (chat_id, user_id, user_name, chat_title, chat_type, bot_new_status, bot_old_status, deleted)
+                        VALUES
+                        (NEW.chat_id, NEW.user_id, NEW.user_name, NEW.chat_title, NEW.chat_type, NEW.bot_new_status, NEW.bot_old_status, NEW.deleted);
+                    END;
+                    """, """
+                    CREATE TABLE IF NOT EXISTS history_sending_to_chat (
+                        chat_id INTEGER NOT NULL,
+                        user_id INTEGER NOT NULL,
+                        user_name TEXT NOT NULL,
+                        chat_title TEXT NOT NULL,
+                        message_id TEXT NOT NULL,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """)),
+            new Migration(3, "history_sending_to_chat.msg", conn -> addColumnIfNotExists(conn, "history_sending_to_chat", "msg", "TEXT")),
+            // Индексы для постраничного чтения истории по (created_at, rowid)
+            new Migration(4, "history indexes", conn -> execute(conn, "CREATE INDEX IF NOT EXISTS history_monitored_chats_created_at ON history_monitored_chats (created_at)",
+                    "CREATE INDEX IF NOT EXISTS history_sending_to_chat_created_at ON history_sending_to_chat (created_at)")),
+            new Migration(5, "navigation tables", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS navigation_history (
+                        chat_id INTEGER PRIMARY KEY,
+                        state TEXT NOT NULL,
+                        context TEXT,
+                        updated_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """, """
+                    CREATE TRIGGER IF NOT EXISTS update_timestamp
+                    AFTER UPDATE ON navigation_history
+                    FOR EACH ROW
+                    BEGIN
+                        UPDATE navigation_history
+                        SET updated_at = CURRENT_TIMESTAMP
+                        WHERE chat_id = NEW.chat_id;
+                    END;
+                    """)),
+            new Migration(6, "broadcast tables", conn -> execute(conn, """
+                    CREATE TABLE IF NOT EXISTS broadcast_jobs (
+                        job_id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        user_id INTEGER,
+                        user_name TEXT,
+                        messages TEXT NOT NULL,
+                        status TEXT NOT NULL DEFAULT 'active',
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                        finished_at DATETIME
+                    )
+                    """, """
+                    CREATE TABLE IF NOT EXISTS broadcast_tasks (
+                        task_id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        job_id INTEGER NOT NULL REFERENCES broadcast_jobs(job_id),
+                        chat_id INTEGER NOT NULL,
+                        chat_title TEXT,
+                        chat_type TEXT,
+                        idempotency_key TEXT NOT NULL UNIQUE,
+                        status TEXT NOT NULL DEFAULT 'pending',
+                        attempts INTEGER NOT NULL DEFAULT 0,
+                        last_error TEXT,
+                        updated_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """, "CREATE INDEX IF NOT EXISTS broadcast_tasks_status ON broadcast_tasks(status, task_id)",
+                    "CREATE INDEX IF NOT EXISTS broadcast_tasks_job ON broadcast_tasks(job_id, status)")),
+            // История каналов пишется хранилищем в транзакции изменения чата
+            new Migration(7, "drop monitored_chats triggers", conn -> execute(conn, "DROP TRIGGER IF EXISTS monitored_chats_update",
+                    "DROP TRIGGER IF EXISTS monitored_chats_insert")));
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Последняя версия схемы
+     *
+     * @return номер последней миграции
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1)
+                .version();
+    }
+
+    /**
+     * Привести схему базы к последней версии, если это еще не сделано для пула
+     *
+     * @param pool пул соединений файла базы
+     */
+    public static void migrate(ConnectionPool pool) {
+        synchronized (pool) {
+            if (pool.isMigrated()) {
+                return;
+            }
+            try (PooledConnection conn = pool.acquire()
+                    .timed(STORAGE_NAME, "migrate")) {
+                migrate(conn.getConnection());
+                pool.setMigrated(true);
+            } catch (SQLException e) {
+                logger.error("Failed to migrate database {}: {}", pool.getStorageFile(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Текущая версия схемы
+     *
+     * @param conn соединение
+     * @return значение {@code PRAGMA user_version}
+     * @throws SQLException ошибка чтения
+     */
+    public static int readVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void migrate(Connection conn) throws SQLException {
+        enableIncrementalVacuum(conn);
+        int latest = latestVersion();
+        if (readVersion(conn) >= latest) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+            try {
+                // Версию перечитываем под блокировкой записи: схему мог обновить другой процесс
+                int version = readVersion(conn);
+                for (Migration migration : MIGRATIONS) {
+                    if (migration.version() > version) {
+                        logger.info("Applying schema migration {}: {}", migration.version(), migration.description());
+                        migration.step()
+                                .apply(conn);
+                    }
+                }
+                if (version < latest) {
+                    stmt.execute("PRAGMA user_version = " + latest);
+                }
+                stmt.execute("COMMIT");
+                logger.info("Database schema migrated from version {} to {}", version, latest);
+            } catch (SQLException e) {
+                stmt.execute("ROLLBACK");
+                throw e;
+            }
+        }
+    }
+
+    private static void enableIncrementalVacuum(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int mode;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+                mode = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (mode == AUTO_VACUUM_INCREMENTAL) {
+                return;
+            }
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            try (ResultSet rs = stmt.executeQuery("PRAGMA page_count")) {
+                // В пустой базе режим применяется при создании первой таблицы
+                if (!rs.next() || rs.getLong(1) == 0) {
+                    return;
+                }
+            }
+            logger.info("Switching database to incremental auto_vacuum");
+            stmt.execute("VACUUM");
+        }
+    }
+
+    private static void execute(Connection conn, String... sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : sql) {
+                stmt.execute(statement);
+            }
+        }
+    }
+
+    // До миграций колонка добавлялась при каждом запуске, поэтому в старых базах она может уже быть
+    private static void addColumnIfNotExists(Connection conn, String tableName, String columnName, String columnType) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tableName + ")")) {
+            while (rs.next()) {
+                if (columnName.equals(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        execute(conn, String.format("ALTER TABLE %s ADD COLUMN %s %s", tableName, columnName, columnType));
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+}
@@ -0,0 +1,277 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Сессии пользователей: сообщения, подготовленные к рассылке, исключенные из рассылки каналы и версия списка каналов,
+ * показанного в меню рассылки.
+ * <p>
+ * Сессия удаляется, если к ней не обращались дольше {@code ttl}. Кроме того, ограничены общее количество сессий и
+ * оценка занимаемой черновиками памяти: при превышении удаляются сессии, к которым дольше всего не обращались.
+ * Все операции выполняются под блокировкой хранилища, наружу отдаются только копии.
+ */
+public class SessionStore {
+
+    public static final Duration DEFAULT_TTL = Duration.ofHours(6);
+    public static final int DEFAULT_MAX_SESSIONS = 1000;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final String EVICTED_EXPIRED = "expired";
+    public static final String EVICTED_SESSIONS = "max_sessions";
+    public static final String EVICTED_BYTES = "max_bytes";
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+    private static final long DRAFT_BASE_BYTES = 160;
+    private static final long ENTITY_BYTES = 96;
+    private final long ttlNanos;
+    private final int maxSessions;
+    private final long maxBytes;
+    private final LongSupplier clock;
+    // Порядок доступа: в начале сессии, к которым дольше всего не обращались
+    private final LinkedHashMap<Long, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public SessionStore() {
+        this(DEFAULT_TTL, DEFAULT_MAX_SESSIONS, DEFAULT_MAX_BYTES, System::nanoTime);
+    }
+
+    public SessionStore(Duration ttl, int maxSessions, long maxBytes, LongSupplier clock) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSessions = maxSessions;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    /**
+     * Оценка памяти, занимаемой черновиком сообщения
+     *
+     * @param draft черновик
+     * @return размер в байтах
+     */
+    public static long estimateBytes(Draft draft) {
+        long size = DRAFT_BASE_BYTES + 2L * (length(draft.fileId()) + length(draft.caption()) + length(draft.mediaGroupId()) + length(draft.preview()));
+        if (draft.captionEntities() != null) {
+            size += ENTITY_BYTES * draft.captionEntities()
+                    .size();
+        }
+        return size;
+    }
+
+    /**
+     * Добавить сообщения к черновику рассылки
+     *
+     * @param chatId   идентификатор чата
+     * @param drafts черновики сообщений
+     */
+    public synchronized void addDrafts(Long chatId, List<Draft> drafts) {
+        Session session = touch(chatId, true);
+        for (Draft draft : drafts) {
+            long size = estimateBytes(draft);
+            session.drafts.add(draft);
+            session.bytes += size;
+            bytes += size;
+        }
+        enforceBudget();
+    }
+
+    /**
+     * Сообщения черновика рассылки
+     *
+     * @param chatId идентификатор чата
+     * @return копия списка черновиков, пустой список, если черновика нет
+     */
+    public synchronized List<Draft> getDrafts(Long chatId) {
+        Session session = touch(chatId, false);
+        return session == null ? List.of() : List.copyOf(session.drafts);
+    }
+
+    public synchronized boolean hasDrafts(Long chatId) {
+        Session session = touch(chatId, false);
+        return session != null && !session.drafts.isEmpty();
+    }
+
+    /**
+     * Забрать сообщения черновика для рассылки, черновик очищается
+     *
+     * @param chatId идентификатор чата
+     * @return сообщения черновика
+     */
+    public synchronized List<Draft> takeDrafts(Long chatId) {
+        List<Draft> drafts = getDrafts(chatId);
+        clearDrafts(chatId);
+        return drafts;
+    }
+
+    public synchronized void clearDrafts(Long chatId) {
+        Session session = touch(chatId, false);
+        if (session != null) {
+            bytes -= session.bytes;
+            session.bytes = 0;
+            session.drafts.clear();
+            removeIfEmpty(chatId, session);
+            publish();
+        }
+    }
+
+    /**
+     * Индексы каналов, исключенных из рассылки
+     *
+     * @param chatId идентификатор чата
+     * @return копия набора индексов
+     */
+    public synchronized Set<Integer> getSelection(Long chatId) {
+        Session session = touch(chatId, false);
+        return session == null ? Set.of() : Set.copyOf(session.selection);
+    }
+
+    /**
+     * Исключить канал из рассылки или вернуть его
+     *
+     * @param chatId    идентификатор чата
+     * @param chatIndex индекс канала в меню рассылки
+     * @return true, если канал теперь исключен
+     */
+    public synchronized boolean toggleSelection(Long chatId, int chatIndex) {
+        Session session = touch(chatId, true);
+        boolean excluded = session.selection.add(chatIndex);
+        if (!excluded) {
+            session.selection.remove(chatIndex);
+            removeIfEmpty(chatId, session);
+        }
+        enforceBudget();
+        return excluded;
+    }
+
+    public synchronized void clearSelection(Long chatId) {
+        Session session = touch(chatId, false);
+        if (session != null) {
+            session.selection.clear();
+            removeIfEmpty(chatId, session);
+            publish();
+        }
+    }
+
+    /**
+     * Запомнить версию списка каналов, показанного в меню рассылки: выбор адресатов хранится индексами этого списка
+     *
+     * @param chatId  идентификатор чата
+     * @param version версия списка каналов
+     */
+    public synchronized void setSendMenuVersion(Long chatId, long version) {
+        touch(chatId, true).sendMenuVersion = version;
+        enforceBudget();
+    }
+
+    /**
+     * Версия списка каналов, показанного в меню рассылки
+     *
+     * @param chatId идентификатор чата
+     * @return версия или {@code null}, если меню рассылки не показывалось
+     */
+    public synchronized Long getSendMenuVersion(Long chatId) {
+        Session session = touch(chatId, false);
+        return session == null ? null : session.sendMenuVersion;
+    }
+
+    public synchronized void clearSendMenuVersion(Long chatId) {
+        Session session = touch(chatId, false);
+        if (session != null) {
+            session.sendMenuVersion = null;
+            removeIfEmpty(chatId, session);
+            publish();
+        }
+    }
+
+    public synchronized int size() {
+        evictExpired(clock.getAsLong());
+        return sessions.size();
+    }
+
+    /**
+     * Оценка памяти, занимаемой черновиками всех сессий
+     *
+     * @return размер в байтах
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private Session touch(Long chatId, boolean create) {
+        long now = clock.getAsLong();
+        evictExpired(now);
+        Session session = sessions.get(chatId);
+        if (session == null && create) {
+            session = new Session();
+            sessions.put(chatId, session);
+        }
+        if (session != null) {
+            session.accessed = now;
+        }
+        return session;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<Long, Session>> it = sessions.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Session> eldest = it.next();
+            if (now - eldest.getValue().accessed < ttlNanos) {
+                break;
+            }
+            it.remove();
+            evicted(eldest.getKey(), eldest.getValue(), EVICTED_EXPIRED);
+        }
+    }
+
+    private void enforceBudget() {
+        Iterator<Map.Entry<Long, Session>> it = sessions.entrySet()
+                .iterator();
+        while (it.hasNext() && (sessions.size() > maxSessions || bytes > maxBytes)) {
+            Map.Entry<Long, Session> eldest = it.next();
+            String reason = sessions.size() > maxSessions ? EVICTED_SESSIONS : EVICTED_BYTES;
+            it.remove();
+            evicted(eldest.getKey(), eldest.getValue(), reason);
+        }
+        publish();
+    }
+
+    private void evicted(Long chatId, Session session, String reason) {
+        bytes -= session.bytes;
+        Metrics.incSessionEvictions(reason);
+        logger.debug("Session of chatId={} evicted ({}), {} drafts dropped", chatId, reason, session.drafts.size());
+        publish();
+    }
+
+    private void removeIfEmpty(Long chatId, Session session) {
+        if (session.drafts.isEmpty() && session.selection.isEmpty() && session.sendMenuVersion == null) {
+            sessions.remove(chatId);
+        }
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private void publish() {
+        Metrics.setSessions(sessions.size(), bytes);
+    }
+
+    private static class Session {
+        private final List<Draft> drafts = new ArrayList<>();
+        private final Set<Integer> selection = new HashSet<>();
+        private Long sendMenuVersion;
+        private long bytes;
+        private long accessed;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.rapidcoder.forward.bot.handler;
+
+/**
+ * Выбор реализации хранилищ по адресу базы данных.
+ * <p>
+ * Адрес {@code jdbc:...} (например {@code jdbc:postgresql://host/bot?user=bot&password=...}) означает сервер баз
+ * данных: его могут разделять несколько процессов бота, записи выполняются параллельными транзакциями. Любой другой
+ * адрес — путь к файлу SQLite с одним писателем {@link StorageWriter}. Очередь рассылок и выгрузка базы работают
+ * только с файлом SQLite: при сервере каждый процесс ведет свою очередь в файле из переменной окружения
+ * {@link #QUEUE_FILE_ENV}, по умолчанию {@link #DEFAULT_SERVER_QUEUE_FILE} на томе данных. Файл должен переживать
+ * перезапуск и обновление процесса, иначе поставленные в очередь рассылки потеряются.
+ */
+public final class StorageBackend {
+
+    public static final String SERVER_PREFIX = "jdbc:";
+    public static final String QUEUE_FILE_ENV = "broadcastQueueFile";
+    public static final String DEFAULT_SERVER_QUEUE_FILE = "/data/broadcast_queue.db";
+
+    private StorageBackend() {
+    }
+
+    /**
+     * Признак адреса сервера баз данных
+     *
+     * @param location адрес базы данных
+     * @return {@code true} для адреса {@code jdbc:...}
+     */
+    public static boolean isServer(String location) {
+        return location != null && location.startsWith(SERVER_PREFIX);
+    }
+
+    /**
+     * Адрес базы для журнала: без параметров подключения и учетных данных
+     *
+     * @param location адрес базы данных
+     * @return адрес без секретов
+     */
+    public static String describe(String location) {
+        if (!isServer(location)) {
+            return location;
+        }
+        int query = location.indexOf('?');
+        String url = query < 0 ? location : location.substring(0, query);
+        int at = url.lastIndexOf('@');
+        int scheme = url.indexOf("//");
+        return at > scheme && scheme >= 0 ? url.substring(0, scheme + 2) + url.substring(at + 1) : url;
+    }
+
+    public static ChannelStore channels(String location) {
+        return isServer(location) ? PostgresChannelStorage.getInstance(location) : ChannelStorage.getInstance(location);
+    }
+
+    public static PermissionStore permissions(String location) {
+        return isServer(location) ? PostgresPermissionStorage.getInstance(location) : PermissionStorage.getInstance(location);
+    }
+
+    public static NavigationStore navigation(String location) {
+        return isServer(location) ? PostgresNavigationStorage.getInstance(location) : NavigationStorage.getInstance(location);
+    }
+
+    /**
+     * Выгрузка базы данных
+     *
+     * @param location адрес базы данных
+     * @return выгрузка или {@code null}, если база не файл SQLite
+     */
+    public static StorageExporter exporter(String location) {
+        return isServer(location) ? null : StorageExporter.getInstance(location);
+    }
+
+    /**
+     * Файл SQLite для очереди рассылок
+     *
+     * @param location адрес базы данных
+     * @return файл базы или файл очереди процесса из {@link #QUEUE_FILE_ENV} при сервере баз данных
+     */
+    public static String queueFile(String location) {
+        return queueFile(location, System.getenv(QUEUE_FILE_ENV));
+    }
+
+    /**
+     * Файл SQLite для очереди рассылок
+     *
+     * @param location  адрес базы данных
+     * @param queueFile файл очереди при сервере баз данных или {@code null} для {@link #DEFAULT_SERVER_QUEUE_FILE}
+     * @return файл базы или файл очереди процесса при сервере баз данных
+     */
+    public static String queueFile(String location, String queueFile) {
+        if (!isServer(location)) {
+            return location;
+        }
+        return queueFile != null && !queueFile.isBlank() ? queueFile.trim() : DEFAULT_SERVER_QUEUE_FILE;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Выгрузка базы данных.
+ * <p>
+ * Снимок делается командой {@code VACUUM INTO} в одной читающей транзакции, поэтому он согласован даже при
+ * идущей записи, и сжимается в gzip потоком, без загрузки файла в память. Если данные не изменились с прошлой
+ * выгрузки, повторно отправляется уже загруженный в Telegram файл по его {@code file_id}.
+ */
+public class StorageExporter {
+
+    public static final String EXPORT_SUFFIX = ".gz";
+    private static final Logger logger = LoggerFactory.getLogger(StorageExporter.class);
+    private static final Map<String, StorageExporter> instances = new HashMap<>();
+    private final ConnectionPool pool;
+    private final StorageWriter writer;
+    private final String fileName;
+    // Еще не загруженные выгрузки по файлу архива: одновременные выгрузки не удаляют чужие архивы
+    private final Map<Path, Export> pending = new HashMap<>();
+    private Export uploaded;
+
+    private StorageExporter(String storageFile) {
+        if (StringUtils.isEmpty(storageFile)) {
+            throw new IllegalArgumentException("Storage file not defined");
+        }
+        this.pool = ConnectionPool.getInstance(storageFile);
+        this.writer = StorageWriter.getInstance(storageFile);
+        this.fileName = new File(storageFile).getName() + EXPORT_SUFFIX;
+    }
+
+    /**
+     * Получить выгрузку для файла базы данных
+     *
+     * @param storageFile файл базы данных
+     * @return выгрузка, общая для всех менеджеров этого файла
+     */
+    public static synchronized StorageExporter getInstance(String storageFile) {
+        return instances.computeIfAbsent(storageFile, StorageExporter::new);
+    }
+
+    /**
+     * Подготовить файл выгрузки. Для нового файла после отправки нужно вызвать {@link #uploaded(InputFile, Message)}
+     *
+     * @return ранее загруженный файл, если данные не изменились, иначе сжатый снимок базы
+     */
+    public synchronized InputFile export() {
+        long version = writer.getVersion();
+        if (uploaded != null && uploaded.version == version) {
+            logger.debug("Storage unchanged since last export, reusing file {}", uploaded.fileId);
+            return new InputFile(uploaded.fileId);
+        }
+        Path snapshot = null;
+        try {
+            snapshot = Files.createTempFile("export-", ".db");
+            Files.delete(snapshot);
+            try (Connection conn = pool.openUnpooled(); Statement stmt = conn.createStatement()) {
+                stmt.execute("VACUUM INTO '" + snapshot.toString()
+                        .replace("'", "''") + "'");
+            }
+            byte[] digest = digest(snapshot);
+            if (uploaded != null && Arrays.equals(uploaded.digest, digest)) {
+                logger.debug("Storage content unchanged since last export, reusing file {}", uploaded.fileId);
+                uploaded = new Export(version, digest, null, uploaded.fileId);
+                return new InputFile(uploaded.fileId);
+            }
+            Path archive = Files.createTempFile("export-", EXPORT_SUFFIX);
+            try (InputStream in = Files.newInputStream(snapshot); OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+                in.transferTo(out);
+            }
+            pending.put(archive, new Export(version, digest, archive, null));
+            logger.info("Storage exported to {} ({} bytes)", archive, Files.size(archive));
+            return new InputFile(archive.toFile(), fileName);
+        } catch (SQLException | IOException e) {
+            throw new IllegalArgumentException("Failed to export storage", e);
+        } finally {
+            deleteQuietly(snapshot);
+        }
+    }
+
+    /**
+     * Завершить отправку выгрузки: удалить ее архив и при успехе запомнить загруженный файл, чтобы не отправлять его
+     * повторно
+     *
+     * @param file    файл, полученный из {@link #export()}
+     * @param message сообщение с отправленной выгрузкой или {@code null}, если отправка не удалась
+     */
+    public synchronized void uploaded(InputFile file, Message message) {
+        if (file == null || !file.isNew()) {
+            return;
+        }
+        Export export = pending.remove(file.getNewMediaFile()
+                .toPath());
+        if (export == null) {
+            return;
+        }
+        deleteQuietly(export.archive);
+        // Более поздняя выгрузка могла загрузиться раньше: ее файл не заменяется устаревшим
+        if (message != null && message.hasDocument() && (uploaded == null || uploaded.version <= export.version)) {
+            uploaded = new Export(export.version, export.digest, null, message.getDocument()
+                    .getFileId());
+        }
+    }
+
+    private static byte[] digest(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete export file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private record Export(long version, byte[] digest, Path archive, String fileId) {
+    }
+}
@@ -0,0 +1,256 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Единственный писатель в файл базы данных.
+ * <p>
+ * Записи из любых потоков ставятся в очередь, а поток писателя объединяет их в транзакции: до {@link #MAX_BATCH_SIZE}
+ * записей или все, что пришло за {@link #BATCH_WINDOW_MILLIS} мс. Окно ожидания открывается, только если записи уже
+ * накопились в очереди, поэтому одиночная запись фиксируется сразу, а одна рассылка в N чатов фиксируется несколькими
+ * транзакциями вместо N отдельных. Каждая запись выполняется в своей точке сохранения, поэтому ошибка одной записи
+ * не откатывает остальные записи пакета.
+ */
+public class StorageWriter {
+
+    public static final int MAX_BATCH_SIZE = 200;
+    public static final long BATCH_WINDOW_MILLIS = 5;
+    private static final Logger logger = LoggerFactory.getLogger(StorageWriter.class);
+    private static final Map<String, StorageWriter> instances = new HashMap<>();
+    private final ConnectionPool pool;
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean running = true;
+
+    private StorageWriter(ConnectionPool pool) {
+        this.pool = pool;
+        this.thread = new Thread(this::run, "storage-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Получить писателя для файла базы данных
+     *
+     * @param storageFile файл базы данных
+     * @return писатель, общий для всех хранилищ этого файла
+     */
+    public static synchronized StorageWriter getInstance(String storageFile) {
+        return instances.computeIfAbsent(storageFile, file -> new StorageWriter(ConnectionPool.getInstance(file)));
+    }
+
+    /**
+     * Дописать очереди всех писателей и остановить их
+     */
+    public static synchronized void closeAll() {
+        instances.values()
+                .forEach(StorageWriter::close);
+        instances.clear();
+    }
+
+    /**
+     * Поставить запись в очередь
+     *
+     * @param write запись
+     * @return результат записи (количество измененных строк), завершается после фиксации транзакции
+     */
+    public CompletableFuture<Integer> submit(Write write) {
+        return submit(null, null, write);
+    }
+
+    /**
+     * Поставить запись в очередь с учетом времени до фиксации в метрике запросов хранилища
+     *
+     * @param storage название хранилища
+     * @param query   название запроса
+     * @param write   запись
+     * @return результат записи (количество измененных строк), завершается после фиксации транзакции
+     */
+    public CompletableFuture<Integer> submit(String storage, String query, Write write) {
+        Task task = new Task(write);
+        if (query != null) {
+            long start = System.nanoTime();
+            task.future.whenComplete((result, error) -> Metrics.observeStorageQuery(storage, query, start));
+        }
+        if (!running) {
+            task.future.completeExceptionally(new IllegalStateException("Storage writer is closed"));
+        } else {
+            queue.add(task);
+        }
+        return task.future;
+    }
+
+    /**
+     * Выполнить запись и дождаться фиксации транзакции
+     *
+     * @param write запись
+     * @return количество измененных строк
+     * @throws SQLException если запись не выполнена
+     */
+    public int execute(Write write) throws SQLException {
+        return execute(null, null, write);
+    }
+
+    /**
+     * Выполнить запись и дождаться фиксации транзакции с учетом времени в метрике запросов хранилища
+     *
+     * @param storage название хранилища
+     * @param query   название запроса
+     * @param write   запись
+     * @return количество измененных строк
+     * @throws SQLException если запись не выполнена
+     */
+    public int execute(String storage, String query, Write write) throws SQLException {
+        try {
+            return submit(storage, query, write).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Дождаться фиксации всех записей, поставленных в очередь до вызова
+     */
+    public void flush() {
+        submit(conn -> 0).join();
+    }
+
+    /**
+     * Версия данных: увеличивается после каждой зафиксированной транзакции, изменившей хотя бы одну строку
+     *
+     * @return версия данных
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Дописать очередь и остановить поток писателя
+     */
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+        Task task;
+        while ((task = queue.poll()) != null) {
+            task.future.completeExceptionally(new IllegalStateException("Storage writer is closed"));
+        }
+    }
+
+    private void run() {
+        List<Task> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Task first = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW_MILLIS);
+                while (batch.size() > 1 && batch.size() < MAX_BATCH_SIZE) {
+                    long timeout = deadline - System.nanoTime();
+                    Task next = running && timeout > 0 ? queue.poll(timeout, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() прерывает ожидание, оставшиеся записи дописываются без окна
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Task> batch) {
+        Integer[] results = new Integer[batch.size()];
+        Throwable[] errors = new Throwable[batch.size()];
+        boolean changed = false;
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            for (int i = 0; i < batch.size(); i++) {
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    results[i] = batch.get(i).write.apply(conn);
+                    changed |= results[i] > 0;
+                    connection.releaseSavepoint(savepoint);
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback(savepoint);
+                    connection.releaseSavepoint(savepoint);
+                    errors[i] = e;
+                }
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+            if (changed) {
+                version.incrementAndGet();
+            }
+            logger.trace("Committed {} writes", batch.size());
+        } catch (SQLException e) {
+            logger.error("Failed to commit {} writes: {}", batch.size(), e.getMessage(), e);
+            for (Task task : batch) {
+                task.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (errors[i] != null) {
+                batch.get(i).future.completeExceptionally(errors[i]);
+            } else {
+                batch.get(i).future.complete(results[i]);
+            }
+        }
+    }
+
+    /**
+     * Запись в базу данных, выполняемая потоком писателя
+     */
+    @FunctionalInterface
+    public interface Write {
+        int apply(PooledConnection conn) throws SQLException;
+    }
+
+    private static final class Task {
+        private final Write write;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        private Task(Write write) {
+            this.write = write;
+        }
+    }
+}
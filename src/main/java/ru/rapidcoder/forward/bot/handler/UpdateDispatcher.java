@@ -0,0 +1,185 @@
+package ru.rapidcoder.forward.bot.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Диспетчер входящих обновлений.
+ * <p>
+ * Обновления разных чатов обрабатываются параллельно на виртуальных потоках, обновления одного чата —
+ * строго по очереди в порядке поступления. Количество принятых, но еще не обработанных обновлений ограничено
+ * {@code maxInFlight}: при превышении {@link #dispatch(Update, Consumer)} ждет освобождения места. Через
+ * {@link #submit(long, Runnable)} в очередь чата ставятся отложенные задачи обработки, например, закрытие альбома по
+ * таймеру: они выполняются по порядку с обновлениями этого чата.
+ */
+public class UpdateDispatcher {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    private static final Logger logger = LoggerFactory.getLogger(UpdateDispatcher.class);
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Map<Long, Queue<Runnable>> queues = new HashMap<>();
+
+    public UpdateDispatcher(int maxInFlight) {
+        this.permits = new Semaphore(maxInFlight);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Поставить обновление в очередь его чата
+     *
+     * @param update  обновление
+     * @param handler обработчик обновления
+     */
+    public void dispatch(Update update, Consumer<Update> handler) {
+        if (!enqueue(getChatId(update), () -> handle(update, handler))) {
+            logger.error("Update dispatcher is stopped, update {} skipped", update.getUpdateId());
+        }
+    }
+
+    /**
+     * Поставить задачу в очередь чата
+     *
+     * @param chatId идентификатор чата
+     * @param task   задача
+     */
+    public void submit(long chatId, Runnable task) {
+        if (!enqueue(chatId, task)) {
+            logger.error("Update dispatcher is stopped, task for chatId={} skipped", chatId);
+        }
+    }
+
+    private boolean enqueue(long chatId, Runnable task) {
+        permits.acquireUninterruptibly();
+        Queue<Runnable> queue;
+        synchronized (queues) {
+            queue = queues.get(chatId);
+            if (queue != null) {
+                // Очередь чата уже обрабатывается, задача будет взята тем же потоком
+                queue.add(task);
+                return true;
+            }
+            queue = new ArrayDeque<>();
+            queue.add(task);
+            queues.put(chatId, queue);
+        }
+        Queue<Runnable> chatQueue = queue;
+        try {
+            executor.execute(() -> drain(chatId, chatQueue));
+            return true;
+        } catch (RejectedExecutionException e) {
+            synchronized (queues) {
+                queues.remove(chatId);
+            }
+            permits.release(chatQueue.size());
+            return false;
+        }
+    }
+
+    private void handle(Update update, Consumer<Update> handler) {
+        try {
+            handler.accept(update);
+        } catch (RuntimeException e) {
+            logger.error("Failed to handle update {}: {}", update.getUpdateId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Количество принятых, но еще не обработанных обновлений
+     *
+     * @return количество обновлений
+     */
+    public int getInFlight() {
+        synchronized (queues) {
+            return queues.values()
+                    .stream()
+                    .mapToInt(Queue::size)
+                    .sum();
+        }
+    }
+
+    /**
+     * Прекратить прием обновлений и дождаться обработки принятых
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Update dispatcher did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+
+    private void drain(long chatId, Queue<Runnable> queue) {
+        while (true) {
+            Runnable task;
+            synchronized (queues) {
+                task = queue.peek();
+                if (task == null) {
+                    queues.remove(chatId);
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Failed to run task for chatId={}: {}", chatId, e.getMessage(), e);
+            } finally {
+                synchronized (queues) {
+                    queue.poll();
+                }
+                permits.release();
+            }
+        }
+    }
+
+    private static long getChatId(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage()
+                    .getChatId();
+        } else if (update.hasEditedMessage()) {
+            return update.getEditedMessage()
+                    .getChatId();
+        } else if (update.hasChannelPost()) {
+            return update.getChannelPost()
+                    .getChatId();
+        } else if (update.hasEditedChannelPost()) {
+            return update.getEditedChannelPost()
+                    .getChatId();
+        } else if (update.hasCallbackQuery()) {
+            if (update.getCallbackQuery()
+                    .getMessage() != null) {
+                return update.getCallbackQuery()
+                        .getMessage()
+                        .getChatId();
+            }
+            return update.getCallbackQuery()
+                    .getFrom()
+                    .getId();
+        } else if (update.hasMyChatMember()) {
+            return update.getMyChatMember()
+                    .getChat()
+                    .getId();
+        } else if (update.hasChatMember()) {
+            return update.getChatMember()
+                    .getChat()
+                    .getId();
+        }
+        return 0;
+    }
+}
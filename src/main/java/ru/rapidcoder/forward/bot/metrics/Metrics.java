@@ -0,0 +1,228 @@
+package ru.rapidcoder.forward.bot.metrics;
+
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
+import io.prometheus.metrics.exporter.httpserver.HTTPServer;
+import io.prometheus.metrics.model.snapshots.Unit;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Метрики бота в формате Prometheus.
+ * <p>
+ * Все метрики регистрируются в реестре по умолчанию и отдаются HTTP-сервером {@link #startServer(int)}
+ * по адресу {@code /metrics}.
+ */
+public final class Metrics {
+
+    public static final String OUTCOME_OK = "ok";
+    public static final String OUTCOME_TOO_MANY_REQUESTS = "too_many_requests";
+    public static final String OUTCOME_API_ERROR = "api_error";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String EDIT_SKIPPED = "skipped";
+    public static final String EDIT_MARKUP = "markup";
+    public static final String EDIT_TEXT = "text";
+    public static final String EDIT_NOT_MODIFIED = "not_modified";
+    private static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final Histogram UPDATE_DURATION = Histogram.builder()
+            .name("bot_update_duration_seconds")
+            .help("Update handling time by update type")
+            .labelNames("type")
+            .classicUpperBounds(LATENCY_BUCKETS)
+            .classicOnly()
+            .register();
+    private static final Counter UPDATE_ERRORS = Counter.builder()
+            .name("bot_update_errors_total")
+            .help("Updates failed with an exception by update type")
+            .labelNames("type")
+            .register();
+    private static final Histogram API_DURATION = Histogram.builder()
+            .name("bot_api_request_duration_seconds")
+            .help("Bot API call time by method and outcome")
+            .labelNames("method", "outcome")
+            .classicUpperBounds(LATENCY_BUCKETS)
+            .classicOnly()
+            .register();
+    private static final Histogram STORAGE_DURATION = Histogram.builder()
+            .name("bot_storage_query_duration_seconds")
+            .help("Storage query time by storage and query")
+            .labelNames("storage", "query")
+            .classicUpperBounds(LATENCY_BUCKETS)
+            .classicOnly()
+            .register();
+    private static final Histogram BROADCAST_DURATION = Histogram.builder()
+            .name("bot_broadcast_duration_seconds")
+            .help("Time from broadcast start to the last delivered or failed chat")
+            .classicUpperBounds(1, 5, 10, 30, 60, 120, 300, 600)
+            .classicOnly()
+            .register();
+    private static final Histogram ALBUM_WAIT = Histogram.builder()
+            .name("bot_album_wait_seconds")
+            .help("Time from the first part of a forwarded album to its assembly by close reason")
+            .labelNames("reason")
+            .classicUpperBounds(0.05, 0.1, 0.25, 0.5, 1, 1.5, 2, 3)
+            .classicOnly()
+            .register();
+    private static final Counter SESSION_EVICTIONS = Counter.builder()
+            .name("bot_session_evictions_total")
+            .help("User sessions evicted from the session store by reason")
+            .labelNames("reason")
+            .register();
+    private static final Gauge SESSIONS = Gauge.builder()
+            .name("bot_sessions")
+            .help("User sessions held in the session store")
+            .register();
+    private static final Gauge SESSION_BYTES = Gauge.builder()
+            .name("bot_session_bytes")
+            .help("Estimated size of drafts held in the session store")
+            .unit(Unit.BYTES)
+            .register();
+    private static final Counter MENU_EDITS = Counter.builder()
+            .name("bot_menu_edits_total")
+            .help("Menu re-renders by result: skipped as unchanged, markup-only edit, full text edit, or rejected as not modified")
+            .labelNames("result")
+            .register();
+    private static final Gauge API_IN_FLIGHT = Gauge.builder()
+            .name("bot_api_requests_in_flight")
+            .help("Bot API calls being executed asynchronously")
+            .register();
+    private static final Gauge BROADCAST_QUEUE = Gauge.builder()
+            .name("bot_broadcast_queue_depth")
+            .help("Broadcast sends scheduled but not finished yet")
+            .register();
+    private static final Gauge API_RATE_LIMIT_WAIT = Gauge.builder()
+            .name("bot_api_rate_limit_wait_seconds")
+            .help("Wait assigned by the rate limiter to the latest Bot API call")
+            .unit(Unit.SECONDS)
+            .register();
+    private static final Counter API_RATE_LIMITED = Counter.builder()
+            .name("bot_api_rate_limited_total")
+            .help("Bot API calls rejected by the rate limiter without waiting")
+            .register();
+    private static final Counter HISTORY_ARCHIVED = Counter.builder()
+            .name("bot_history_archived_rows_total")
+            .help("History rows moved from the database to archive files by table")
+            .labelNames("table")
+            .register();
+
+    private Metrics() {
+    }
+
+    /**
+     * Запустить HTTP-сервер метрик
+     *
+     * @param port порт (0 — выбрать свободный)
+     * @return запущенный сервер
+     * @throws IOException если порт недоступен
+     */
+    public static HTTPServer startServer(int port) throws IOException {
+        return HTTPServer.builder()
+                .port(port)
+                .buildAndStart();
+    }
+
+    public static void observeUpdate(String type, long startNanos) {
+        UPDATE_DURATION.labelValues(type)
+                .observe(Unit.nanosToSeconds(System.nanoTime() - startNanos));
+    }
+
+    public static void incUpdateErrors(String type) {
+        UPDATE_ERRORS.labelValues(type)
+                .inc();
+    }
+
+    public static void observeStorageQuery(String storage, String query, long startNanos) {
+        STORAGE_DURATION.labelValues(storage, query)
+                .observe(Unit.nanosToSeconds(System.nanoTime() - startNanos));
+    }
+
+    public static void observeBroadcast(long startNanos) {
+        BROADCAST_DURATION.observe(Unit.nanosToSeconds(System.nanoTime() - startNanos));
+    }
+
+    public static void observeAlbumWait(String reason, Duration waited) {
+        ALBUM_WAIT.labelValues(reason)
+                .observe(Unit.nanosToSeconds(waited.toNanos()));
+    }
+
+    public static void incSessionEvictions(String reason) {
+        SESSION_EVICTIONS.labelValues(reason)
+                .inc();
+    }
+
+    public static void setSessions(int sessions, long bytes) {
+        SESSIONS.set(sessions);
+        SESSION_BYTES.set(bytes);
+    }
+
+    public static void incMenuEdits(String result) {
+        MENU_EDITS.labelValues(result)
+                .inc();
+    }
+
+    public static void incApiInFlight() {
+        API_IN_FLIGHT.inc();
+    }
+
+    public static void decApiInFlight() {
+        API_IN_FLIGHT.dec();
+    }
+
+    public static void incBroadcastQueue() {
+        BROADCAST_QUEUE.inc();
+    }
+
+    public static void decBroadcastQueue() {
+        BROADCAST_QUEUE.dec();
+    }
+
+    public static void setApiRateLimitWait(long waitNanos) {
+        API_RATE_LIMIT_WAIT.set(Unit.nanosToSeconds(waitNanos));
+    }
+
+    public static void incApiRateLimited() {
+        API_RATE_LIMITED.inc();
+    }
+
+    public static void incHistoryArchived(String table, int rows) {
+        HISTORY_ARCHIVED.labelValues(table)
+                .inc(rows);
+    }
+
+    /**
+     * Выполнить вызов Bot API с замером времени
+     *
+     * @param method название метода Bot API
+     * @param call   вызов
+     * @return результат вызова
+     * @throws TelegramApiException ошибка вызова (учитывается в метрике с соответствующим исходом)
+     */
+    public static <T> T apiCall(String method, ApiCall<T> call) throws TelegramApiException {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = call.execute();
+            outcome = OUTCOME_OK;
+            return result;
+        } catch (TelegramApiRequestException e) {
+            outcome = e.getErrorCode() != null && e.getErrorCode() == 429 ? OUTCOME_TOO_MANY_REQUESTS : OUTCOME_API_ERROR;
+            throw e;
+        } finally {
+            API_DURATION.labelValues(method.toLowerCase(Locale.ROOT), outcome)
+                    .observe(Unit.nanosToSeconds(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Вызов Bot API
+     */
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T execute() throws TelegramApiException;
+    }
+}
@@ -0,0 +1,135 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.handler.AlbumAssembler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class AlbumAssemblerTest {
+
+    private final LinkedBlockingQueue<AlbumAssembler.Album> albums = new LinkedBlockingQueue<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AlbumAssembler assembler = new AlbumAssembler(albums::add, clock::get);
+
+    @AfterEach
+    void tearDown() {
+        assembler.shutdown();
+    }
+
+    private Draft createDraft(long chatId, int messageId, String mediaGroupId) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setMessageId(messageId);
+        message.setMediaGroupId(mediaGroupId);
+        return Draft.of(message);
+    }
+
+    @Test
+    void testSingleMessageWithoutDelay() {
+        assembler.add(createDraft(1L, 1, null));
+
+        AlbumAssembler.Album album = albums.poll();
+        assertThat(album).isNotNull();
+        assertThat(album.drafts()
+                .size()).isEqualTo(1);
+        assertThat(album.waited()).isEqualTo(Duration.ZERO);
+        assertThat(assembler.getPending()).isZero();
+    }
+
+    @Test
+    void testFullAlbumClosedImmediately() {
+        for (int i = 1; i <= AlbumAssembler.MAX_ALBUM_SIZE; i++) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+            assembler.add(createDraft(1L, i, "album"));
+        }
+
+        AlbumAssembler.Album album = albums.poll();
+        assertThat(album).isNotNull();
+        assertThat(album.drafts()
+                .size()).isEqualTo(AlbumAssembler.MAX_ALBUM_SIZE);
+        assertThat(album.waited()).isEqualTo(Duration.ofMillis(20L * (AlbumAssembler.MAX_ALBUM_SIZE - 1)));
+        assertThat(assembler.getPending()).isZero();
+    }
+
+    @Test
+    void testAlbumClosedWhenQuiet() throws Exception {
+        assembler.add(createDraft(1L, 3, "album"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        assembler.add(createDraft(1L, 2, "album"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        assembler.add(createDraft(1L, 1, "album"));
+        assertThat(albums.isEmpty()).isTrue();
+
+        AlbumAssembler.Album album = albums.poll(AlbumAssembler.MAX_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(album).isNotNull();
+        assertThat(album.drafts()
+                .stream()
+                .map(Draft::messageId)
+                .toList()).isEqualTo(List.of(1, 2, 3));
+        assertThat(album.waited()).isEqualTo(Duration.ofMillis(20));
+    }
+
+    @Test
+    void testWindowAdaptsToObservedGaps() throws Exception {
+        Duration initial = assembler.getInitialWindow();
+
+        assembler.add(createDraft(1L, 1, "album"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        assembler.add(createDraft(1L, 2, "album"));
+        long start = System.nanoTime();
+        assertThat(albums.poll(AlbumAssembler.MAX_WINDOW_MILLIS, TimeUnit.MILLISECONDS)).isNotNull();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(initial);
+        assertThat(assembler.getInitialWindow()).isLessThan(initial);
+        assertThat(assembler.getInitialWindow()
+                .toMillis()).isGreaterThanOrEqualTo(AlbumAssembler.MIN_WINDOW_MILLIS);
+    }
+
+    @Test
+    void testQuietAlbumPassedThroughChatQueue() throws Exception {
+        List<Long> queued = new CopyOnWriteArrayList<>();
+        AlbumAssembler queuedAssembler = new AlbumAssembler(albums::add, (chatId, task) -> {
+            queued.add(chatId);
+            task.run();
+        });
+        try {
+            queuedAssembler.add(createDraft(5L, 1, null));
+            assertThat(albums.poll()).isNotNull();
+            assertThat(queued.isEmpty()).isTrue();
+
+            queuedAssembler.add(createDraft(5L, 2, "album"));
+            assertThat(albums.poll(AlbumAssembler.MAX_WINDOW_MILLIS * 2, TimeUnit.MILLISECONDS)).isNotNull();
+            assertThat(queued.toString()).isEqualTo("[5]");
+        } finally {
+            queuedAssembler.shutdown();
+        }
+    }
+
+    @Test
+    void testAlbumsOfDifferentChatsSeparated() throws Exception {
+        assembler.add(createDraft(1L, 1, "album"));
+        assembler.add(createDraft(2L, 1, "album"));
+
+        AlbumAssembler.Album first = albums.poll(AlbumAssembler.MAX_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        AlbumAssembler.Album second = albums.poll(AlbumAssembler.MAX_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(first.drafts()
+                .size()).isEqualTo(1);
+        assertThat(second.drafts()
+                .size()).isEqualTo(1);
+    }
+}
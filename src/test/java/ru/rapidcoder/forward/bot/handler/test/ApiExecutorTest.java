@@ -0,0 +1,192 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.rapidcoder.forward.bot.handler.ApiExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class ApiExecutorTest {
+
+    private ApiExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private void pause(long millis) throws TelegramApiException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new TelegramApiException(e);
+        }
+    }
+
+    private void await(CountDownLatch latch) throws TelegramApiException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new TelegramApiException(e);
+        }
+    }
+
+    @Test
+    void testManyCallsInFlight() throws Exception {
+        executor = new ApiExecutor(500, Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(300);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            int value = i;
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                await(release);
+                return value;
+            }));
+        }
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getInFlight()).isEqualTo(300);
+        release.countDown();
+        for (int i = 0; i < futures.size(); i++) {
+            assertThat(futures.get(i)
+                    .get(5, TimeUnit.SECONDS)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void testConcurrencyCapped() throws Exception {
+        executor = new ApiExecutor(4, Duration.ofSeconds(5));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            futures.add(executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                pause(5);
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void testTimeout() {
+        executor = new ApiExecutor(4, Duration.ofMillis(50));
+        CompletableFuture<Integer> future = executor.submit(() -> {
+            pause(1000);
+            return 1;
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void testTimeoutExcludesWait() throws Exception {
+        executor = new ApiExecutor(4, Duration.ofMillis(100));
+        CompletableFuture<Integer> future = executor.submit(() -> pause(300), () -> 1);
+
+        assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    @Test
+    void testTimedOutCallInterrupted() throws Exception {
+        executor = new ApiExecutor(4, Duration.ofMillis(50));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Integer> first = executor.submit(1L, () -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 1;
+        });
+        CompletableFuture<Integer> next = executor.submit(1L, () -> 2);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(next.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+    }
+
+    @Test
+    void testTimeoutReleasesPermitAndKey() throws Exception {
+        executor = new ApiExecutor(1, Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        // Вызов не реагирует на прерывание и держится дольше таймаута
+        CompletableFuture<Integer> hung = executor.submit(1L, () -> {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Прерывание игнорируется
+                }
+            }
+            return 1;
+        });
+        CompletableFuture<Integer> sameKey = executor.submit(1L, () -> 2);
+        CompletableFuture<Integer> other = executor.submit(() -> 3);
+
+        try {
+            assertThat(sameKey.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+            assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+        } finally {
+            release.countDown();
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> hung.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void testSameKeyInOrder() throws Exception {
+        executor = new ApiExecutor(16, Duration.ofSeconds(5));
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int value = i;
+            futures.add(executor.submit(1L, () -> {
+                pause(20 - value);
+                order.add(value);
+                return value;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(order.stream()
+                .sorted()
+                .toList()).isEqualTo(order);
+    }
+
+    @Test
+    void testFailureDoesNotBlockKey() throws Exception {
+        executor = new ApiExecutor(4, Duration.ofSeconds(5));
+        CompletableFuture<Integer> failed = executor.submit(1L, () -> {
+            throw new TelegramApiException("failed");
+        });
+        CompletableFuture<Integer> next = executor.submit(1L, () -> 2);
+
+        assertThat(next.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        TelegramApiException e = assertThrows(TelegramApiException.class, () -> ApiExecutor.join(failed));
+        assertThat(e.getMessage()).isEqualTo("failed");
+    }
+}
@@ -8,12 +8,24 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.*;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 import ru.rapidcoder.forward.bot.Bot;
+import ru.rapidcoder.forward.bot.component.KeyboardButton;
+import ru.rapidcoder.forward.bot.handler.RateLimiter;
 
 import java.io.File;
+import java.lang.reflect.Field;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +33,8 @@ import static org.mockito.Mockito.*;
 public class BotTest {
 
     private static final String TEST_DB = "test_chat.db";
+    // Вызовы Bot API выполняются асинхронно в очереди чата
+    private static final long ASYNC_WAIT_MILLIS = 300;
     @Mock
     private Bot bot;
     @Mock
@@ -136,4 +150,103 @@ public class BotTest {
         verify(bot, never()).handleCallback(update);
         verify(bot, never()).handleChatMember(update);
     }
+
+    // Меню одного чата редактируется чаще лимита Bot API: в этих тестах лимиты не проверяются
+    private void disableRateLimit() throws Exception {
+        Field field = Bot.class.getDeclaredField("rateLimiter");
+        field.setAccessible(true);
+        field.set(bot, mock(RateLimiter.class));
+    }
+
+    private InlineKeyboardMarkup createKeyboard(String text) {
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+        keyboard.setKeyboard(List.of(List.of(new KeyboardButton(text, "menu"))));
+        return keyboard;
+    }
+
+    @Test
+    void testFailFastCallRejectedByRateLimit() {
+        bot.getRateLimiter()
+                .reserve(1L, "private");
+        SendMessage message = new SendMessage();
+        message.setChatId(1L);
+        message.setText("text");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> bot.executeAsync(message, RateLimiter.Mode.FAIL_FAST)
+                .get());
+
+        assertThat(e.getCause()).isInstanceOf(RateLimiter.LimitExceededException.class);
+    }
+
+    @Test
+    void testUnchangedMenuEditSkipped() throws Exception {
+        disableRateLimit();
+        doReturn(true).when(bot)
+                .execute(any(EditMessageText.class));
+
+        bot.updateMessage(1L, 10, "menu", createKeyboard("button"));
+        bot.updateMessage(1L, 10, "menu", createKeyboard("button"));
+        bot.updateMessage(1L, 11, "menu", createKeyboard("button"));
+
+        verify(bot, after(ASYNC_WAIT_MILLIS).times(2)).execute(any(EditMessageText.class));
+    }
+
+    @Test
+    void testSentMenuRemembered() throws Exception {
+        Message sent = new Message();
+        sent.setMessageId(10);
+        doReturn(sent).when(bot)
+                .execute(any(SendMessage.class));
+
+        bot.sendMessage(1L, "menu", createKeyboard("button"));
+        bot.updateMessage(1L, 10, "menu", createKeyboard("button"));
+
+        verify(bot, after(ASYNC_WAIT_MILLIS).never()).execute(any(EditMessageText.class));
+    }
+
+    @Test
+    void testOnlyMarkupEditedWhenTextUnchanged() throws Exception {
+        disableRateLimit();
+        doReturn(true).when(bot)
+                .execute(any(EditMessageText.class));
+        doReturn(true).when(bot)
+                .execute(any(EditMessageReplyMarkup.class));
+
+        bot.updateMessage(1L, 10, "menu", createKeyboard("button"));
+        bot.updateMessage(1L, 10, "menu", createKeyboard("✅ button"));
+        bot.updateMessage(1L, 10, "new menu", createKeyboard("✅ button"));
+
+        verify(bot, after(ASYNC_WAIT_MILLIS).times(2)).execute(any(EditMessageText.class));
+        verify(bot, after(ASYNC_WAIT_MILLIS).times(1)).execute(any(EditMessageReplyMarkup.class));
+    }
+
+    @Test
+    void testNotModifiedResponseRemembered() throws Exception {
+        TelegramApiRequestException notModified = mock(TelegramApiRequestException.class);
+        when(notModified.getApiResponse()).thenReturn("Bad Request: message is not modified");
+        doThrow(notModified).when(bot)
+                .execute(any(EditMessageText.class));
+
+        bot.updateMessage(1L, 10, "menu", createKeyboard("button"));
+        bot.updateMessage(1L, 10, "menu", createKeyboard("button"));
+
+        verify(bot, after(ASYNC_WAIT_MILLIS).times(1)).execute(any(EditMessageText.class));
+    }
+
+    @Test
+    void testFailedEditRetried() throws Exception {
+        disableRateLimit();
+        TelegramApiRequestException failed = mock(TelegramApiRequestException.class);
+        when(failed.getApiResponse()).thenReturn("Bad Request: message to edit not found");
+        doReturn(true).doThrow(failed)
+                .doReturn(true)
+                .when(bot)
+                .execute(any(EditMessageText.class));
+
+        bot.updateMessage(1L, 10, "menu", createKeyboard("button"));
+        bot.updateMessage(1L, 10, "new menu", createKeyboard("button"));
+        bot.updateMessage(1L, 10, "new menu", createKeyboard("button"));
+
+        verify(bot, after(ASYNC_WAIT_MILLIS).times(3)).execute(any(EditMessageText.class));
+    }
 }
@@ -0,0 +1,110 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.handler.BroadcastEngine;
+import ru.rapidcoder.forward.bot.handler.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BroadcastEngineTest {
+
+    private final BroadcastEngine broadcastEngine = new BroadcastEngine(new RateLimiter(), 4);
+
+    @AfterEach
+    void tearDown() {
+        broadcastEngine.shutdown();
+    }
+
+    private List<ChatMembership> createChats(int count) {
+        List<ChatMembership> chats = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            ChatMembership chat = new ChatMembership();
+            chat.setChatId(-i);
+            chat.setChatTitle("chat" + i);
+            chat.setChatType("channel");
+            chats.add(chat);
+        }
+        return chats;
+    }
+
+    @Test
+    void testSendToAllTargets() throws Exception {
+        Set<Long> delivered = ConcurrentHashMap.newKeySet();
+        BroadcastEngine.Broadcast broadcast = broadcastEngine.submit(createChats(20), chat -> CompletableFuture.completedFuture(delivered.add(chat.getChatId())));
+
+        broadcast.getCompletion()
+                .get(5, TimeUnit.SECONDS);
+        assertThat(delivered.size()).isEqualTo(20);
+        assertThat(broadcast.getSent()).isEqualTo(20);
+        assertThat(broadcast.getFailed()).isZero();
+        assertThat(broadcast.getPending()).isZero();
+        assertThat(broadcast.getEstimated()
+                .toMillis()).isLessThan(1000);
+    }
+
+    @Test
+    void testEmptyBroadcastCompleted() {
+        BroadcastEngine.Broadcast broadcast = broadcastEngine.submit(List.of(), chat -> CompletableFuture.completedFuture(null));
+        assertThat(broadcast.getCompletion()
+                .isDone()).isTrue();
+        assertThat(broadcast.getTotal()).isZero();
+    }
+
+    @Test
+    void testRetryAfterTooManyRequests() throws Exception {
+        TelegramApiRequestException tooManyRequests = mock(TelegramApiRequestException.class);
+        ResponseParameters parameters = new ResponseParameters();
+        parameters.setRetryAfter(1);
+        when(tooManyRequests.getErrorCode()).thenReturn(429);
+        when(tooManyRequests.getParameters()).thenReturn(parameters);
+
+        Map<Long, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        BroadcastEngine.Broadcast broadcast = broadcastEngine.submit(createChats(2), chat -> {
+            if (attempts.computeIfAbsent(chat.getChatId(), k -> new AtomicInteger())
+                    .incrementAndGet() == 1 && chat.getChatId() == -1L) {
+                return CompletableFuture.failedFuture(tooManyRequests);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+
+        broadcast.getCompletion()
+                .get(5, TimeUnit.SECONDS);
+        assertThat(broadcast.getSent()).isEqualTo(2);
+        assertThat(attempts.get(-1L)
+                .get()).isEqualTo(2);
+        assertThat(attempts.get(-2L)
+                .get()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailedRequestNotRetried() throws Exception {
+        TelegramApiRequestException badRequest = mock(TelegramApiRequestException.class);
+        when(badRequest.getErrorCode()).thenReturn(400);
+
+        AtomicInteger attempts = new AtomicInteger();
+        BroadcastEngine.Broadcast broadcast = broadcastEngine.submit(createChats(1), chat -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(badRequest);
+        });
+
+        broadcast.getCompletion()
+                .get(5, TimeUnit.SECONDS);
+        assertThat(broadcast.getFailed()).isEqualTo(1);
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+}
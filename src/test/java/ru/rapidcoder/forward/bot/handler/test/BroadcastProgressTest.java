@@ -0,0 +1,143 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.handler.BroadcastProgress;
+import ru.rapidcoder.forward.bot.handler.BroadcastQueue;
+import ru.rapidcoder.forward.bot.handler.BroadcastStorage;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class BroadcastProgressTest {
+
+    private static final String TEST_DB = "test_progress.db";
+    private static final Duration INTERVAL = Duration.ofMillis(300);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<String> edits = new CopyOnWriteArrayList<>();
+    private BroadcastStorage storage;
+    private BroadcastProgress progress;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Field instanceField = BroadcastStorage.class.getDeclaredField("instance");
+        instanceField.setAccessible(true);
+        instanceField.set(null, null);
+        ConnectionPool.closeAll();
+        storage = BroadcastStorage.getInstance(TEST_DB);
+        progress = new BroadcastProgress(storage, new BroadcastProgress.Display() {
+            @Override
+            public CompletionStage<Integer> send(Long chatId, String text) {
+                sent.add(text);
+                return CompletableFuture.completedFuture(10);
+            }
+
+            @Override
+            public void edit(Long chatId, Integer messageId, String text) {
+                edits.add(text);
+            }
+        }, INTERVAL);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @AfterEach
+    void tearDown() {
+        progress.shutdown();
+        new File(TEST_DB).delete();
+    }
+
+    private long createJob(int count) {
+        List<ChatMembership> chats = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            ChatMembership chat = new ChatMembership();
+            chat.setChatId(-i);
+            chat.setChatTitle("chat" + i);
+            chat.setChatType("channel");
+            chats.add(chat);
+        }
+        Chat chat = new Chat();
+        chat.setId(1L);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setMessageId(10);
+        message.setText("TEST");
+        long jobId = storage.createJob(100L, "user", List.of(Draft.of(message)), chats);
+        assertThat(storage.claimTasks(BroadcastQueue.CLAIM_BATCH_SIZE)
+                .size()).isEqualTo(count);
+        return jobId;
+    }
+
+    private void complete(long jobId, long chatId, boolean success) {
+        assertThat(storage.markSending(jobId, chatId)).isTrue();
+        if (success) {
+            storage.markSent(jobId, chatId);
+        } else {
+            storage.markFailed(jobId, chatId, "error");
+        }
+        progress.update(jobId);
+    }
+
+    private void awaitEdits(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (edits.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(edits.size()).isEqualTo(count);
+    }
+
+    @Test
+    void testEditsThrottled() throws Exception {
+        long jobId = createJob(20);
+        progress.start(jobId, 1L, 20, Duration.ofSeconds(20));
+        assertThat(sent.size()).isEqualTo(1);
+        assertThat(sent.get(0)).contains("Отправлено: 0 из 20");
+
+        for (long i = 1; i <= 10; i++) {
+            complete(jobId, -i, true);
+        }
+        awaitEdits(1);
+        assertThat(edits.get(0)).contains("Отправлено: 10 из 20");
+        assertThat(edits.get(0)).contains("Осталось: 10");
+
+        for (long i = 11; i <= 19; i++) {
+            complete(jobId, -i, true);
+        }
+        complete(jobId, -20, false);
+        awaitEdits(2);
+        assertThat(edits.get(1)).contains("Рассылка завершена");
+        assertThat(edits.get(1)).contains("Отправлено: 19 из 20");
+        assertThat(edits.get(1)).contains("Ошибок: 1");
+
+        // После итогового сообщения события рассылки не вызывают изменений
+        progress.update(jobId);
+        Thread.sleep(INTERVAL.toMillis() * 2);
+        assertThat(edits.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testJobFinishedBeforeProgressShown() throws Exception {
+        long jobId = createJob(2);
+        complete(jobId, -1, true);
+        complete(jobId, -2, true);
+
+        progress.start(jobId, 1L, 2, Duration.ofSeconds(2));
+
+        awaitEdits(1);
+        assertThat(edits.get(0)).contains("Рассылка завершена");
+        assertThat(edits.get(0)).contains("Отправлено: 2 из 2");
+    }
+}
@@ -0,0 +1,238 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.rapidcoder.forward.bot.dto.BroadcastJob;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.handler.BroadcastEngine;
+import ru.rapidcoder.forward.bot.handler.BroadcastQueue;
+import ru.rapidcoder.forward.bot.handler.BroadcastStorage;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.RateLimiter;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BroadcastQueueTest {
+
+    private static final String TEST_DB = "test_broadcast.db";
+    private final BroadcastEngine broadcastEngine = new BroadcastEngine(new RateLimiter(1000, System::nanoTime), 4);
+    private final Set<Long> delivered = ConcurrentHashMap.newKeySet();
+    private BroadcastStorage storage;
+    private BroadcastQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Field instanceField = BroadcastStorage.class.getDeclaredField("instance");
+        instanceField.setAccessible(true);
+        instanceField.set(null, null);
+        ConnectionPool.closeAll();
+        storage = BroadcastStorage.getInstance(TEST_DB);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.stop();
+        }
+        broadcastEngine.shutdown();
+        new File(TEST_DB).delete();
+    }
+
+    private List<ChatMembership> createChats(int count) {
+        List<ChatMembership> chats = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            ChatMembership chat = new ChatMembership();
+            chat.setChatId(-i);
+            chat.setChatTitle("chat" + i);
+            chat.setChatType("channel");
+            chats.add(chat);
+        }
+        return chats;
+    }
+
+    private List<Draft> createDrafts() {
+        Chat chat = new Chat();
+        chat.setId(1L);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setMessageId(10);
+        message.setText("TEST");
+        return List.of(Draft.of(message));
+    }
+
+    private void awaitDone(long jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!storage.isJobDone(jobId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(storage.isJobDone(jobId)).isTrue();
+    }
+
+    private void startQueue(BroadcastQueue.JobSender sender) {
+        queue = new BroadcastQueue(storage, broadcastEngine, sender);
+        queue.start();
+    }
+
+    @Test
+    void testJobDraftsStored() {
+        long jobId = storage.createJob(100L, "user", createDrafts(), createChats(1));
+
+        BroadcastJob job = storage.getJob(jobId);
+        assertThat(job.userId()).isEqualTo(100L);
+        assertThat(job.drafts()
+                .size()).isEqualTo(1);
+        Draft draft = job.drafts()
+                .get(0);
+        assertThat(draft.chatId()).isEqualTo(1L);
+        assertThat(draft.messageId()).isEqualTo(10);
+        assertThat(draft.mediaType()).isEqualTo(Draft.MediaType.OTHER);
+        assertThat(draft.preview()).isEqualTo("TEST");
+    }
+
+    @Test
+    void testDuplicateTargetQueuedOnce() {
+        List<ChatMembership> targets = createChats(2);
+        targets.add(targets.get(0));
+
+        long jobId = storage.createJob(100L, "user", createDrafts(), targets);
+
+        assertThat(storage.getTaskCounts(jobId)).isEqualTo(Map.of(BroadcastStorage.PENDING, 2));
+    }
+
+    @Test
+    void testEnqueueSendsToAllTargets() throws Exception {
+        startQueue((job, target) -> CompletableFuture.completedFuture(delivered.add(target.getChatId())));
+
+        long jobId = queue.enqueue(100L, "user", createDrafts(), createChats(5));
+
+        awaitDone(jobId);
+        assertThat(delivered.size()).isEqualTo(5);
+        assertThat(storage.getTaskCounts(jobId)).isEqualTo(Map.of(BroadcastStorage.SENT, 5));
+    }
+
+    @Test
+    void testBatchesClaimedUntilQueueEmpty() throws Exception {
+        startQueue((job, target) -> CompletableFuture.completedFuture(delivered.add(target.getChatId())));
+
+        long jobId = queue.enqueue(100L, "user", createDrafts(), createChats(BroadcastQueue.CLAIM_BATCH_SIZE + 5));
+
+        awaitDone(jobId);
+        assertThat(delivered.size()).isEqualTo(BroadcastQueue.CLAIM_BATCH_SIZE + 5);
+    }
+
+    @Test
+    void testRecoverResumesClaimedAndSkipsInterrupted() throws Exception {
+        long jobId = storage.createJob(100L, "user", createDrafts(), createChats(3));
+        // Прошлый процесс взял все отправки и остановился во время запроса в первый чат
+        assertThat(storage.claimTasks(BroadcastQueue.CLAIM_BATCH_SIZE)
+                .size()).isEqualTo(3);
+        assertThat(storage.markSending(jobId, -1L)).isTrue();
+
+        startQueue((job, target) -> CompletableFuture.completedFuture(delivered.add(target.getChatId())));
+
+        awaitDone(jobId);
+        assertThat(delivered).isEqualTo(Set.of(-2L, -3L));
+        assertThat(storage.getTaskCounts(jobId)).isEqualTo(Map.of(BroadcastStorage.SENT, 2, BroadcastStorage.FAILED, 1));
+    }
+
+    @Test
+    void testTaskNotSentTwice() {
+        long jobId = storage.createJob(100L, "user", createDrafts(), createChats(1));
+        storage.claimTasks(BroadcastQueue.CLAIM_BATCH_SIZE);
+
+        assertThat(storage.markSending(jobId, -1L)).isTrue();
+        assertThat(storage.markSending(jobId, -1L)).isFalse();
+        assertThat(storage.markSent(jobId, -1L)).isTrue();
+        assertThat(storage.markSending(jobId, -1L)).isFalse();
+    }
+
+    @Test
+    void testRetryAfterApiError() throws Exception {
+        TelegramApiRequestException tooManyRequests = mock(TelegramApiRequestException.class);
+        when(tooManyRequests.getErrorCode()).thenReturn(429);
+        AtomicInteger attempts = new AtomicInteger();
+        startQueue((job, target) -> {
+            if (attempts.incrementAndGet() == 1) {
+                return CompletableFuture.failedFuture(tooManyRequests);
+            }
+            return CompletableFuture.completedFuture(delivered.add(target.getChatId()));
+        });
+
+        long jobId = queue.enqueue(100L, "user", createDrafts(), createChats(1));
+
+        awaitDone(jobId);
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(storage.getTaskCounts(jobId)).isEqualTo(Map.of(BroadcastStorage.SENT, 1));
+    }
+
+    @Test
+    void testTransportErrorNotRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        startQueue((job, target) -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new TelegramApiException("read timed out"));
+        });
+
+        long jobId = queue.enqueue(100L, "user", createDrafts(), createChats(1));
+
+        awaitDone(jobId);
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(storage.getTaskCounts(jobId)).isEqualTo(Map.of(BroadcastStorage.FAILED, 1));
+    }
+
+    @Test
+    void testRejectedTaskMarkedFailed() throws Exception {
+        TelegramApiRequestException badRequest = mock(TelegramApiRequestException.class);
+        when(badRequest.getErrorCode()).thenReturn(400);
+        startQueue((job, target) -> {
+            if (target.getChatId() == -1L) {
+                return CompletableFuture.failedFuture(badRequest);
+            }
+            return CompletableFuture.completedFuture(delivered.add(target.getChatId()));
+        });
+
+        long jobId = queue.enqueue(100L, "user", createDrafts(), createChats(2));
+
+        awaitDone(jobId);
+        assertThat(delivered).isEqualTo(Set.of(-2L));
+        assertThat(storage.getTaskCounts(jobId)).isEqualTo(Map.of(BroadcastStorage.SENT, 1, BroadcastStorage.FAILED, 1));
+    }
+
+    @Test
+    void testStopLeavesUnstartedTasksClaimed() throws Exception {
+        // Одна отправка в секунду: вторая и третья запланированы, но не начаты к моменту остановки
+        queue = new BroadcastQueue(storage, new BroadcastEngine(new RateLimiter(1, System::nanoTime), 4), (job, target) -> CompletableFuture.completedFuture(delivered.add(target.getChatId())));
+        queue.start();
+        long jobId = queue.enqueue(100L, "user", createDrafts(), createChats(3));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (storage.getTaskCounts(jobId)
+                .getOrDefault(BroadcastStorage.SENT, 0) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        queue.stop();
+
+        assertThat(delivered).isEqualTo(Set.of(-1L));
+        assertThat(storage.getTaskCounts(jobId)).isEqualTo(Map.of(BroadcastStorage.SENT, 1, BroadcastStorage.CLAIMED, 2));
+        assertThat(storage.recover()).isEqualTo(2);
+    }
+}
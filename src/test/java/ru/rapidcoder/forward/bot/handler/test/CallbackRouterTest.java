@@ -0,0 +1,87 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.handler.CallbackRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class CallbackRouterTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private CallbackRouter router;
+
+    @BeforeEach
+    void setUp() {
+        calls.clear();
+        router = new CallbackRouter().route("menu_send", c -> calls.add("send"))
+                .route("menu_send_message", c -> calls.add("send_message"))
+                .route("menu_send_message_clear", c -> calls.add("clear"))
+                .routeNumeric("grant_access_active_", 10, (c, argument) -> calls.add("active " + argument))
+                .routeNumeric("grant_access_blocked_", 10, (c, argument) -> calls.add("blocked " + argument))
+                .routeNumeric("history_", 36, (c, argument) -> calls.add("history " + argument))
+                .routeNumeric("history_older_", 36, (c, argument) -> calls.add("older " + argument));
+    }
+
+    private CallbackRouter.Result dispatch(String data) {
+        return router.dispatch(new CallbackRouter.Callback("1", data, 1L, 1, null));
+    }
+
+    @Test
+    void testExactRoutesSharingPrefix() {
+        assertThat(dispatch("menu_send")).isEqualTo(CallbackRouter.Result.HANDLED);
+        assertThat(dispatch("menu_send_message")).isEqualTo(CallbackRouter.Result.HANDLED);
+        assertThat(dispatch("menu_send_message_clear")).isEqualTo(CallbackRouter.Result.HANDLED);
+
+        assertThat(calls).isEqualTo(List.of("send", "send_message", "clear"));
+        assertThat(router.size()).isEqualTo(7);
+    }
+
+    @Test
+    void testNumericArgument() {
+        assertThat(dispatch("grant_access_active_1234567890123")).isEqualTo(CallbackRouter.Result.HANDLED);
+        assertThat(dispatch("grant_access_blocked_-5")).isEqualTo(CallbackRouter.Result.HANDLED);
+        assertThat(dispatch("history_zz")).isEqualTo(CallbackRouter.Result.HANDLED);
+
+        assertThat(calls).isEqualTo(List.of("active 1234567890123", "blocked -5", "history 1295"));
+    }
+
+    @Test
+    void testLongestPrefixWins() {
+        dispatch("history_older_10");
+        dispatch("history_old");
+
+        assertThat(calls).isEqualTo(List.of("older 36", "history " + Long.parseLong("old", 36)));
+    }
+
+    @Test
+    void testNotFound() {
+        assertThat(dispatch("menu")).isEqualTo(CallbackRouter.Result.NOT_FOUND);
+        assertThat(dispatch("menu_send_")).isEqualTo(CallbackRouter.Result.NOT_FOUND);
+        assertThat(dispatch("menu_send_message_clear_all")).isEqualTo(CallbackRouter.Result.NOT_FOUND);
+        assertThat(dispatch("grant_access_7")).isEqualTo(CallbackRouter.Result.NOT_FOUND);
+        assertThat(dispatch("")).isEqualTo(CallbackRouter.Result.NOT_FOUND);
+        assertThat(dispatch(null)).isEqualTo(CallbackRouter.Result.NOT_FOUND);
+        assertThat(calls.isEmpty()).isTrue();
+    }
+
+    @Test
+    void testInvalidArgument() {
+        assertThat(dispatch("grant_access_active_")).isEqualTo(CallbackRouter.Result.INVALID_ARGUMENT);
+        assertThat(dispatch("grant_access_active_12a")).isEqualTo(CallbackRouter.Result.INVALID_ARGUMENT);
+        assertThat(dispatch("grant_access_active_99999999999999999999")).isEqualTo(CallbackRouter.Result.INVALID_ARGUMENT);
+        assertThat(calls.isEmpty()).isTrue();
+    }
+
+    @Test
+    void testDuplicateRoute() {
+        assertThrows(IllegalArgumentException.class, () -> router.route("menu_send", c -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> router.routeNumeric("history_", 10, (c, argument) -> {
+        }));
+    }
+}
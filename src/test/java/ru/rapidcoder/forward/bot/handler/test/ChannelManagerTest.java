@@ -4,14 +4,34 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import ru.rapidcoder.forward.bot.Bot;
 import ru.rapidcoder.forward.bot.dto.ChatMembership;
 import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
 import ru.rapidcoder.forward.bot.handler.ChannelManager;
 import ru.rapidcoder.forward.bot.handler.ChannelStorage;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.PooledConnection;
+import ru.rapidcoder.forward.bot.handler.StorageExporter;
 
 import java.io.File;
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.Assert.assertThrows;
@@ -37,6 +57,10 @@ public class ChannelManagerTest {
         Field instanceField = ChannelStorage.class.getDeclaredField("instance");
         instanceField.setAccessible(true);
         instanceField.set(null, null);
+        Field exporters = StorageExporter.class.getDeclaredField("instances");
+        exporters.setAccessible(true);
+        ((Map<?, ?>) exporters.get(null)).clear();
+        ConnectionPool.closeAll();
     }
 
     @Test
@@ -123,6 +147,149 @@ public class ChannelManagerTest {
 
     }
 
+    @Test
+    void testGetAllServedFromSnapshotUntilChatsChange() {
+        channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", "left");
+        List<ChatMembership> chats = channelManager.getAll();
+        long version = channelManager.getVersion();
+
+        assertThat(channelManager.getAll()).isSameAs(chats);
+        assertThat(channelManager.getVersion()).isEqualTo(version);
+
+        channelManager.save(3L, 2L, "userName", "OtherChannel", "channel", "administrator", "left");
+        assertThat(channelManager.getVersion()).isGreaterThan(version);
+        assertThat(channelManager.getAll()
+                .size()).isEqualTo(2);
+
+        channelManager.delete(1L);
+        assertThat(channelManager.getAll()
+                .size()).isEqualTo(1);
+        assertThat(channelManager.getAll()
+                .get(0)
+                .getChatId()).isEqualTo(3L);
+    }
+
+    @Test
+    void testHistorySendingPages() {
+        for (int i = 1; i <= 45; i++) {
+            channelManager.saveHistorySending(-100L - i, 2L, "userName", "TestChannel", i, "text" + i);
+        }
+
+        HistoryPage<HistorySending> first = channelManager.getHistorySendingPage(null, true);
+        assertThat(first.items()
+                .size()).isEqualTo(20);
+        assertThat(first.items()
+                .get(0)
+                .getMessageId()).isEqualTo(45);
+        assertThat(first.newerCursor()).isNull();
+
+        HistoryPage<HistorySending> second = channelManager.getHistorySendingPage(first.olderCursor(), true);
+        assertThat(second.items()
+                .get(0)
+                .getMessageId()).isEqualTo(25);
+        HistoryPage<HistorySending> last = channelManager.getHistorySendingPage(second.olderCursor(), true);
+        assertThat(last.items()
+                .size()).isEqualTo(5);
+        assertThat(last.items()
+                .get(4)
+                .getMessageId()).isEqualTo(1);
+        assertThat(last.olderCursor()).isNull();
+
+        HistoryPage<HistorySending> back = channelManager.getHistorySendingPage(last.newerCursor(), false);
+        assertThat(back.items()
+                .get(0)
+                .getMessageId()).isEqualTo(25);
+        assertThat(back.items()
+                .get(19)
+                .getMessageId()).isEqualTo(6);
+        HistoryPage<HistorySending> top = channelManager.getHistorySendingPage(back.newerCursor(), false);
+        assertThat(top.items()
+                .get(0)
+                .getMessageId()).isEqualTo(45);
+        assertThat(top.newerCursor()).isNull();
+        assertThat(top.olderCursor()).isEqualTo(first.olderCursor());
+    }
+
+    @Test
+    void testHistoryChatsPages() {
+        for (long i = 1; i <= 21; i++) {
+            channelManager.save(i, 2L, "userName", "TestChannel" + i, "channel", "administrator", "left");
+        }
+
+        HistoryPage<HistoryChatMembership> first = channelManager.getHistoryPage(null, true);
+        assertThat(first.items()
+                .size()).isEqualTo(20);
+        assertThat(first.items()
+                .get(0)
+                .getChatId()).isEqualTo(21L);
+
+        HistoryPage<HistoryChatMembership> second = channelManager.getHistoryPage(first.olderCursor(), true);
+        assertThat(second.items()
+                .size()).isEqualTo(1);
+        assertThat(second.items()
+                .get(0)
+                .getChatId()).isEqualTo(1L);
+        assertThat(second.olderCursor()).isNull();
+        assertThat(second.newerCursor()).isNotNull();
+    }
+
+    @Test
+    void testHistoryChatsRecordedWithoutTriggers() throws SQLException {
+        channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", "left");
+        channelManager.updateStatus(1L, "member", "administrator");
+        channelManager.delete(1L);
+        channelManager.save(1L, 2L, "userName", "Renamed", "channel", "administrator", "member");
+        channelManager.updateStatus(404L, "member", "administrator");
+
+        List<HistoryChatMembership> history = channelManager.getHistory();
+        assertThat(history.size()).isEqualTo(4);
+        assertThat(history.get(0)
+                .getChatTitle()).isEqualTo("Renamed");
+        assertThat(history.get(0)
+                .isDeleted()).isFalse();
+        assertThat(history.get(1)
+                .isDeleted()).isTrue();
+        assertThat(history.get(2)
+                .getBotNewStatus()).isEqualTo("member");
+        assertThat(channelManager.get(1L)
+                .getChatTitle()).isEqualTo("Renamed");
+
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT count(*) FROM sqlite_master WHERE type = 'trigger' AND tbl_name = 'monitored_chats'")) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt(1)).isEqualTo(0);
+        }
+    }
+
+    @Test
+    void testHistoryPageQueryUsesIndex() throws SQLException {
+        String plan;
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("""
+                EXPLAIN QUERY PLAN SELECT rowid FROM history_sending_to_chat
+                WHERE (created_at, rowid) < (SELECT created_at, rowid FROM history_sending_to_chat WHERE rowid = 1)
+                ORDER BY created_at DESC, rowid DESC LIMIT 21
+                """)) {
+            StringBuilder sb = new StringBuilder();
+            while (rs.next()) {
+                sb.append(rs.getString("detail"))
+                        .append('\n');
+            }
+            plan = sb.toString();
+        }
+
+        assertThat(plan).contains("history_sending_to_chat_created_at");
+        assertThat(plan).doesNotContain("TEMP B-TREE");
+    }
+
+    @Test
+    void testHistoryCursorFitsCallbackData() {
+        String callbackData = Bot.SENDING_HISTORY_OLDER_CALLBACK_DATA + HistoryPage.encodeCursor(Long.MAX_VALUE);
+
+        assertThat(callbackData.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(64);
+        assertThat(HistoryPage.decodeCursor(HistoryPage.encodeCursor(123456789L))).isEqualTo(123456789L);
+    }
+
     @Test
     void testGetAllChat() {
         channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "left", "administrator");
@@ -190,6 +357,103 @@ public class ChannelManagerTest {
         assertThat(document.getDocument()).isNotNull();
     }
 
+    @Test
+    void testUploadDataSendsCompressedSnapshot() throws Exception {
+        channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", null);
+        channelManager.save(3L, 2L, "userName", "TestGroup", "group", "administrator", null);
+
+        InputFile file = channelManager.uploadData(1L)
+                .getDocument();
+        assertThat(file.isNew()).isTrue();
+        assertThat(file.getMediaName()).isEqualTo(TEST_DB + ".gz");
+
+        Path snapshot = Files.createTempFile("snapshot-", ".db");
+        try {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file.getNewMediaFile()
+                    .toPath()))) {
+                Files.write(snapshot, in.readAllBytes());
+            }
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + snapshot); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM monitored_chats")) {
+                assertThat(rs.getInt(1)).isEqualTo(2);
+            }
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    void testUploadDataReusesFileIdUntilDataChanges() {
+        channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", null);
+
+        SendDocument first = channelManager.uploadData(1L);
+        File archive = first.getDocument()
+                .getNewMediaFile();
+        channelManager.uploadCompleted(first, documentMessage("file-1"));
+        assertThat(archive.exists()).isFalse();
+
+        InputFile cached = channelManager.uploadData(1L)
+                .getDocument();
+        assertThat(cached.isNew()).isFalse();
+        assertThat(cached.getAttachName()).isEqualTo("file-1");
+
+        channelManager.save(3L, 2L, "userName", "TestGroup", "group", "administrator", null);
+        SendDocument changed = channelManager.uploadData(1L);
+        assertThat(changed.getDocument()
+                .isNew()).isTrue();
+        channelManager.uploadCompleted(changed, documentMessage("file-2"));
+
+        assertThat(channelManager.uploadData(1L)
+                .getDocument()
+                .getAttachName()).isEqualTo("file-2");
+    }
+
+    @Test
+    void testUploadDataNotCachedWhenSendFailed() {
+        channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", null);
+
+        SendDocument failed = channelManager.uploadData(1L);
+        File archive = failed.getDocument()
+                .getNewMediaFile();
+        channelManager.uploadCompleted(failed, null);
+
+        assertThat(archive.exists()).isFalse();
+        assertThat(channelManager.uploadData(1L)
+                .getDocument()
+                .isNew()).isTrue();
+    }
+
+    @Test
+    void testConcurrentUploadsKeepOwnArchives() {
+        channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", null);
+
+        SendDocument first = channelManager.uploadData(1L);
+        SendDocument second = channelManager.uploadData(1L);
+        File firstArchive = first.getDocument()
+                .getNewMediaFile();
+        File secondArchive = second.getDocument()
+                .getNewMediaFile();
+        // Вторая выгрузка не удаляет архив первой, пока тот отправляется
+        assertThat(firstArchive.exists()).isTrue();
+
+        channelManager.uploadCompleted(second, documentMessage("file-2"));
+        assertThat(secondArchive.exists()).isFalse();
+        assertThat(firstArchive.exists()).isTrue();
+        channelManager.uploadCompleted(first, null);
+        assertThat(firstArchive.exists()).isFalse();
+
+        assertThat(channelManager.uploadData(1L)
+                .getDocument()
+                .getAttachName()).isEqualTo("file-2");
+    }
+
+    private static Message documentMessage(String fileId) {
+        Document document = new Document();
+        document.setFileId(fileId);
+        Message message = new Message();
+        message.setDocument(document);
+        return message;
+    }
+
     @Test
     void testGetHistory() {
         channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", null);
@@ -0,0 +1,86 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.PooledConnection;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class ConnectionPoolTest {
+
+    private static final String TEST_DB = "test_pool.db";
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @AfterEach
+    void tearDown() {
+        ConnectionPool.closeAll();
+        new File(TEST_DB).delete();
+    }
+
+    @Test
+    void testSameInstanceForStorageFile() {
+        assertThat(ConnectionPool.getInstance(TEST_DB)).isSameAs(ConnectionPool.getInstance(TEST_DB));
+    }
+
+    @Test
+    void testConnectionReused() throws SQLException {
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_DB);
+        Connection first;
+        try (PooledConnection conn = pool.acquire()) {
+            first = conn.getConnection();
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            assertThat(conn.getConnection()).isSameAs(first);
+        }
+    }
+
+    @Test
+    void testPreparedStatementCached() throws SQLException {
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_DB);
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT ?");
+            assertThat(conn.prepareStatement("SELECT ?")).isSameAs(stmt);
+        }
+    }
+
+    @Test
+    void testOpenTransactionRolledBackOnRelease() throws SQLException {
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_DB);
+        try (PooledConnection conn = pool.acquire()) {
+            conn.createStatement()
+                    .execute("CREATE TABLE IF NOT EXISTS pool_test (id INTEGER)");
+            conn.getConnection()
+                    .setAutoCommit(false);
+            conn.createStatement()
+                    .execute("INSERT INTO pool_test (id) VALUES (1)");
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            assertThat(conn.getConnection()
+                    .getAutoCommit()).isTrue();
+            assertThat(conn.createStatement()
+                    .executeQuery("SELECT COUNT(*) FROM pool_test")
+                    .getInt(1)).isZero();
+        }
+    }
+
+    @Test
+    void testCloseReopensLazily() throws SQLException {
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_DB);
+        Connection first;
+        try (PooledConnection conn = pool.acquire()) {
+            first = conn.getConnection();
+        }
+        pool.close();
+        assertThat(first.isClosed()).isTrue();
+        try (PooledConnection conn = pool.acquire()) {
+            assertThat(conn.getConnection()
+                    .isClosed()).isFalse();
+        }
+    }
+}
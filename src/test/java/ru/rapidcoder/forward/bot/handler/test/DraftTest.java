@@ -0,0 +1,144 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.MessageEntity;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.api.objects.Video;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.handler.BroadcastStorage;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.SessionStore;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class DraftTest {
+
+    private static final String TEST_DB = "test_draft.db";
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @AfterEach
+    void tearDown() throws Exception {
+        Field instanceField = BroadcastStorage.class.getDeclaredField("instance");
+        instanceField.setAccessible(true);
+        instanceField.set(null, null);
+        ConnectionPool.closeAll();
+        new File(TEST_DB).delete();
+    }
+
+    private Message createPhotoMessage() {
+        Chat chat = new Chat();
+        chat.setId(1L);
+        User user = new User();
+        user.setId(100L);
+        user.setFirstName("user");
+        Message message = new Message();
+        message.setChat(chat);
+        message.setFrom(user);
+        message.setMessageId(10);
+        message.setMediaGroupId("album");
+        message.setCaption("caption");
+        MessageEntity entity = new MessageEntity();
+        entity.setType("bold");
+        entity.setOffset(0);
+        entity.setLength(7);
+        message.setCaptionEntities(List.of(entity));
+        List<PhotoSize> photos = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            PhotoSize photo = new PhotoSize();
+            photo.setFileId("photo" + i);
+            photo.setWidth(90 * i);
+            photo.setHeight(90 * i);
+            photos.add(photo);
+        }
+        message.setPhoto(photos);
+        return message;
+    }
+
+    @Test
+    void testPhotoKeepsLargestSize() {
+        Draft draft = Draft.of(createPhotoMessage());
+
+        assertThat(draft.mediaType()).isEqualTo(Draft.MediaType.PHOTO);
+        assertThat(draft.fileId()).isEqualTo("photo4");
+        assertThat(draft.chatId()).isEqualTo(1L);
+        assertThat(draft.messageId()).isEqualTo(10);
+        assertThat(draft.mediaGroupId()).isEqualTo("album");
+        assertThat(draft.caption()).isEqualTo("caption");
+        assertThat(draft.captionEntities()
+                .size()).isEqualTo(1);
+        assertThat(draft.preview()).isEqualTo("caption");
+    }
+
+    @Test
+    void testVideo() {
+        Chat chat = new Chat();
+        chat.setId(1L);
+        Video video = new Video();
+        video.setFileId("video");
+        Message message = new Message();
+        message.setChat(chat);
+        message.setMessageId(11);
+        message.setVideo(video);
+
+        Draft draft = Draft.of(message);
+        assertThat(draft.mediaType()).isEqualTo(Draft.MediaType.VIDEO);
+        assertThat(draft.fileId()).isEqualTo("video");
+        assertThat(draft.preview()).isNull();
+    }
+
+    @Test
+    void testPreview() {
+        String text = "a".repeat(Draft.PREVIEW_LENGTH + 10);
+
+        assertThat(Draft.preview(null, null)).isNull();
+        assertThat(Draft.preview("", "")).isNull();
+        assertThat(Draft.preview("text", "caption")).isEqualTo("text");
+        assertThat(Draft.preview("", "caption")).isEqualTo("caption");
+        assertThat(Draft.preview(text, null)).isEqualTo(text.substring(0, Draft.PREVIEW_LENGTH));
+    }
+
+    @Test
+    void testEstimatedSizeGrowsWithCaption() {
+        Message message = createPhotoMessage();
+        long small = SessionStore.estimateBytes(Draft.of(message));
+        message.setCaption("caption".repeat(100));
+
+        assertThat(SessionStore.estimateBytes(Draft.of(message))).isGreaterThan(small);
+        assertThat(small).isLessThan(1024L);
+    }
+
+    @Test
+    void testJsonRoundTrip() {
+        Draft draft = Draft.of(createPhotoMessage());
+        ChatMembership chat = new ChatMembership();
+        chat.setChatId(-1L);
+        chat.setChatTitle("chat");
+        chat.setChatType("channel");
+
+        BroadcastStorage storage = BroadcastStorage.getInstance(TEST_DB);
+        long jobId = storage.createJob(100L, "user", List.of(draft), List.of(chat));
+
+        Draft stored = storage.getJob(jobId)
+                .drafts()
+                .get(0);
+        assertThat(stored.fileId()).isEqualTo(draft.fileId());
+        assertThat(stored.mediaType()).isEqualTo(draft.mediaType());
+        assertThat(stored.caption()).isEqualTo(draft.caption());
+        assertThat(stored.mediaGroupId()).isEqualTo(draft.mediaGroupId());
+        assertThat(stored.preview()).isEqualTo(draft.preview());
+        MessageEntity entity = stored.captionEntities()
+                .get(0);
+        assertThat(entity.getType()).isEqualTo("bold");
+        assertThat(entity.getLength()).isEqualTo(7);
+    }
+}
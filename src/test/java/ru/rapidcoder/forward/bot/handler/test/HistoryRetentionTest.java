@@ -0,0 +1,139 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.HistoryRetention;
+import ru.rapidcoder.forward.bot.handler.PooledConnection;
+import ru.rapidcoder.forward.bot.handler.SchemaMigrations;
+import ru.rapidcoder.forward.bot.handler.StorageWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class HistoryRetentionTest {
+
+    private static final String TEST_DB = "test_retention.db";
+    @TempDir
+    Path archiveDir;
+
+    @BeforeEach
+    void setUp() {
+        SchemaMigrations.migrate(ConnectionPool.getInstance(TEST_DB));
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @AfterEach
+    void tearDown() {
+        StorageWriter.closeAll();
+        ConnectionPool.closeAll();
+        new File(TEST_DB).delete();
+    }
+
+    private void insertSending(int messageId, String createdAt) throws SQLException {
+        execute("INSERT INTO history_sending_to_chat (chat_id, user_id, user_name, chat_title, message_id, msg, created_at) VALUES (1, 2, 'user', 'chat', '" + messageId + "', 'text', " + createdAt + ")");
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private List<String> readArchive() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            for (Path file : files.toList()) {
+                assertThat(file.getFileName()
+                        .toString()).startsWith(HistoryRetention.SENDING_HISTORY + "-");
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                    reader.lines()
+                            .forEach(lines::add);
+                }
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void testExpiredRowsArchived() throws Exception {
+        insertSending(1, "'2000-01-01 00:00:00'");
+        insertSending(2, "'2000-01-02 00:00:00'");
+        insertSending(3, "CURRENT_TIMESTAMP");
+        HistoryRetention retention = new HistoryRetention(TEST_DB, archiveDir, List.of(new HistoryRetention.Policy(HistoryRetention.SENDING_HISTORY, Duration.ofDays(30), 0)), 10);
+
+        assertThat(retention.run()).isEqualTo(2);
+
+        assertThat(queryLong("SELECT count(*) FROM history_sending_to_chat")).isEqualTo(1L);
+        assertThat(queryLong("SELECT message_id FROM history_sending_to_chat")).isEqualTo(3L);
+        List<String> archive = readArchive();
+        assertThat(archive.size()).isEqualTo(2);
+        assertThat(archive.get(0)).contains("\"message_id\":\"1\"");
+        assertThat(archive.get(0)).contains("\"created_at\":\"2000-01-01 00:00:00\"");
+        assertThat(retention.run()).isEqualTo(0);
+    }
+
+    @Test
+    void testRowLimitArchivedInBatches() throws Exception {
+        for (int i = 1; i <= 10; i++) {
+            insertSending(i, "CURRENT_TIMESTAMP");
+        }
+        HistoryRetention retention = new HistoryRetention(TEST_DB, archiveDir, List.of(new HistoryRetention.Policy(HistoryRetention.SENDING_HISTORY, null, 4)), 3);
+
+        assertThat(retention.run()).isEqualTo(6);
+
+        assertThat(queryLong("SELECT count(*) FROM history_sending_to_chat")).isEqualTo(4L);
+        assertThat(queryLong("SELECT min(CAST(message_id AS INTEGER)) FROM history_sending_to_chat")).isEqualTo(7L);
+        assertThat(readArchive().size()).isEqualTo(6);
+    }
+
+    @Test
+    void testIncrementalVacuum() throws Exception {
+        StringBuilder text = new StringBuilder();
+        text.append("x".repeat(2000));
+        // Освобождается больше страниц, чем в одной порции вакуума
+        for (int i = 1; i <= 1000; i++) {
+            execute("INSERT INTO history_sending_to_chat (chat_id, user_id, user_name, chat_title, message_id, msg) VALUES (1, 2, 'user', 'chat', '" + i + "', '" + text + "')");
+        }
+        long pages = queryLong("PRAGMA page_count");
+        HistoryRetention retention = new HistoryRetention(TEST_DB, archiveDir, List.of(new HistoryRetention.Policy(HistoryRetention.SENDING_HISTORY, null, 1)), 500);
+
+        retention.run();
+
+        assertThat(queryLong("PRAGMA auto_vacuum")).isEqualTo(2L);
+        assertThat(queryLong("PRAGMA freelist_count")).isEqualTo(0L);
+        assertThat(queryLong("PRAGMA page_count")).isLessThan(pages / 2);
+    }
+
+    @Test
+    void testUnknownTableRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HistoryRetention.Policy("users", null, 1));
+    }
+}
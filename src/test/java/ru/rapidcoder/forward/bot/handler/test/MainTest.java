@@ -11,9 +11,11 @@ import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import ru.rapidcoder.forward.bot.Bot;
 import ru.rapidcoder.forward.bot.Main;
+import ru.rapidcoder.forward.bot.WebhookServer;
 import uk.org.webcompere.systemstubs.environment.EnvironmentVariables;
 import uk.org.webcompere.systemstubs.jupiter.SystemStub;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
@@ -175,4 +177,37 @@ public class MainTest {
         }
     }
 
+    @Test
+    void testMainWithWebhookMode() throws Exception {
+        environmentVariables.set("botEnv", "dev");
+        environmentVariables.set("botMode", "webhook");
+        environmentVariables.set("devBotName", "testBot");
+        environmentVariables.set("devTokenId", "testToken");
+        environmentVariables.set("devStorageFile", "storage.json");
+        environmentVariables.set("devAdmins", "1,2");
+        environmentVariables.set("devWebhookUrl", "https://bot.example.com/");
+        environmentVariables.set("devWebhookSecret", "secret");
+        environmentVariables.set("PORT", "8443");
+        try (MockedStatic<Main> mainStatic = mockStatic(Main.class, CALLS_REAL_METHODS)) {
+            TelegramBotsApi mockApi = mock(TelegramBotsApi.class);
+            Bot mockBot = mock(Bot.class);
+            WebhookServer mockServer = mock(WebhookServer.class);
+
+            mainStatic.when(() -> Main.createTelegramBotsApi())
+                    .thenReturn(mockApi);
+            mainStatic.when(() -> Main.createBot(anyString(), anyString(), anyString(), anyList()))
+                    .thenReturn(mockBot);
+            mainStatic.when(() -> Main.createWebhookServer(mockBot, 8443, "secret"))
+                    .thenReturn(mockServer);
+
+            Main.main(new String[]{});
+
+            verify(mockServer).start();
+            verify(mockBot).execute(SetWebhook.builder()
+                    .url("https://bot.example.com/webhook")
+                    .secretToken("secret")
+                    .build());
+            verify(mockApi, never()).registerBot(mockBot);
+        }
+    }
 }
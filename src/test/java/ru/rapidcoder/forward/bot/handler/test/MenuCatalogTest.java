@@ -0,0 +1,55 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+import ru.rapidcoder.forward.bot.component.KeyboardButton;
+import ru.rapidcoder.forward.bot.component.MenuCatalog;
+
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MenuCatalogTest {
+
+    private List<String> callbacks(InlineKeyboardMarkup keyboard) {
+        return keyboard.getKeyboard()
+                .stream()
+                .flatMap(List::stream)
+                .map(InlineKeyboardButton::getCallbackData)
+                .toList();
+    }
+
+    @Test
+    void testMainKeyboardVariants() {
+        assertThat(callbacks(MenuCatalog.mainKeyboard(false, false))).isEqualTo(List.of("menu_chats", "menu_sending_history", "menu_help"));
+        assertThat(callbacks(MenuCatalog.mainKeyboard(true, false))).isEqualTo(List.of("menu_send", "menu_chats", "menu_sending_history", "menu_help"));
+        assertThat(callbacks(MenuCatalog.mainKeyboard(false, true))).isEqualTo(List.of("menu_chats", "menu_access", "menu_access_requests", "menu_sending_history", "menu_help"));
+        assertThat(callbacks(MenuCatalog.mainKeyboard(true, true))).isEqualTo(List.of("menu_send", "menu_chats", "menu_access", "menu_access_requests", "menu_sending_history", "menu_help"));
+    }
+
+    @Test
+    void testStaticMenusShared() {
+        assertThat(MenuCatalog.mainKeyboard(true, true)).isSameAs(MenuCatalog.mainKeyboard(true, true));
+        assertThat(callbacks(MenuCatalog.HELP_KEYBOARD)).isEqualTo(List.of("back_to_main"));
+        assertThat(callbacks(MenuCatalog.SETTINGS_KEYBOARD)).isEqualTo(List.of("settings_reset", "settings_save", "back_to_main"));
+    }
+
+    @Test
+    void testStaticRowsImmutable() {
+        assertThrows(UnsupportedOperationException.class, () -> MenuCatalog.mainKeyboard(false, false)
+                .getKeyboard()
+                .add(MenuCatalog.BACK_TO_MAIN_ROW));
+        assertThrows(UnsupportedOperationException.class, () -> MenuCatalog.BACK_TO_MAIN_ROW.add(new KeyboardButton("button", "menu")));
+    }
+
+    @Test
+    void testDynamicKeyboardWithFooter() {
+        List<List<InlineKeyboardButton>> rows = List.of(List.of(new KeyboardButton("chat", "chat_toggle_0")));
+
+        InlineKeyboardMarkup keyboard = MenuCatalog.keyboard(rows, MenuCatalog.SEND_MENU_FOOTER);
+
+        assertThat(callbacks(keyboard)).isEqualTo(List.of("chat_toggle_0", "menu_send_message", "menu_send_message_clear", "back_to_main"));
+    }
+}
@@ -3,6 +3,7 @@ package ru.rapidcoder.forward.bot.handler.test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.CopyMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.objects.*;
 import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
@@ -10,16 +11,21 @@ import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import ru.rapidcoder.forward.bot.Bot;
 import ru.rapidcoder.forward.bot.dto.AccessRequest;
 import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+import ru.rapidcoder.forward.bot.handler.BroadcastStorage;
 import ru.rapidcoder.forward.bot.handler.ChannelManager;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
 import ru.rapidcoder.forward.bot.handler.MessageHandler;
 import ru.rapidcoder.forward.bot.handler.PermissionManager;
 
 import java.io.File;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.Assert.assertThrows;
@@ -43,12 +49,22 @@ public class MessageHandlerTest {
 
     @AfterEach
     void cleanup() {
+        messageHandler.shutdown();
         new File(TEST_DB).delete();
     }
 
     @BeforeEach
     void setUp() throws IllegalAccessException, NoSuchFieldException, TelegramApiException {
+        Field broadcastStorageField = BroadcastStorage.class.getDeclaredField("instance");
+        broadcastStorageField.setAccessible(true);
+        broadcastStorageField.set(null, null);
+        ConnectionPool.closeAll();
+
         Bot bot = new Bot("testBot", "testToken", TEST_DB, List.of(adminUserId));
+        // Рассылки теста обрабатывает только проверяемый обработчик
+        Field botHandlerField = Bot.class.getDeclaredField("messageHandler");
+        botHandlerField.setAccessible(true);
+        ((MessageHandler) botHandlerField.get(bot)).shutdown();
         botSpy = spy(bot);
 
         doNothing().when(botSpy)
@@ -57,6 +73,8 @@ public class MessageHandlerTest {
                 .updateMessage(any(), any(), any(), any());
         doNothing().when(botSpy)
                 .showNotification(any(), any());
+        doReturn(CompletableFuture.completedFuture(30)).when(botSpy)
+                .sendStatusMessage(any(), any());
 
         messageHandler = new MessageHandler(botSpy, TEST_DB, List.of(adminUserId));
 
@@ -164,6 +182,7 @@ public class MessageHandlerTest {
 
     @Test
     void testHandleCallbackMenuChatHistory() {
+        when(mockChannelManager.getHistoryPage(null, true)).thenReturn(new HistoryPage<>(List.of(), null, null));
         Update update = createUpdateWithCallbackQuery(1L, adminUserId, "menu_chats_history");
         messageHandler.handleCallback(update);
         verify(botSpy).showChatsHistoryMenu(any(), any(), any());
@@ -171,11 +190,36 @@ public class MessageHandlerTest {
 
     @Test
     void testHandleCallbackMenuSendingHistory() {
+        when(mockChannelManager.getHistorySendingPage(null, true)).thenReturn(new HistoryPage<>(List.of(), null, null));
         Update update = createUpdateWithCallbackQuery(1L, adminUserId, "menu_sending_history");
         messageHandler.handleCallback(update);
         verify(botSpy).showSendingHistoryMenu(any(), any(), any());
     }
 
+    @Test
+    void testHandleCallbackSendingHistoryOlderPage() {
+        HistoryPage<HistorySending> page = new HistoryPage<>(List.of(), null, 36L);
+        when(mockChannelManager.getHistorySendingPage(36L, true)).thenReturn(page);
+        doNothing().when(botSpy)
+                .showSendingHistoryMenu(any(), any(), any());
+
+        messageHandler.handleCallback(createUpdateWithCallbackQuery(1L, adminUserId, Bot.SENDING_HISTORY_OLDER_CALLBACK_DATA + "10"));
+
+        verify(botSpy).showSendingHistoryMenu(1L, null, page);
+    }
+
+    @Test
+    void testHandleCallbackChatsHistoryNewerPage() {
+        HistoryPage<HistoryChatMembership> page = new HistoryPage<>(List.of(), 5L, null);
+        when(mockChannelManager.getHistoryPage(5L, false)).thenReturn(page);
+        doNothing().when(botSpy)
+                .showChatsHistoryMenu(any(), any(), any());
+
+        messageHandler.handleCallback(createUpdateWithCallbackQuery(1L, adminUserId, Bot.CHATS_HISTORY_NEWER_CALLBACK_DATA + "5"));
+
+        verify(botSpy).showChatsHistoryMenu(1L, null, page);
+    }
+
     @Test
     void testHandleCallbackMenuChats() {
         Update update = createUpdateWithCallbackQuery(1L, adminUserId, "menu_chats");
@@ -228,6 +272,22 @@ public class MessageHandlerTest {
         verify(botSpy).showSendMenu(any(), any(), any());
     }
 
+    @Test
+    void testHandleCallbackChatToggleAfterChatsChanged() {
+        when(mockChannelManager.getVersion()).thenReturn(1L, 2L);
+        messageHandler.handleCallback(createUpdateWithCallbackQuery(1L, adminUserId, "menu_send"));
+        botSpy.getSessions()
+                .toggleSelection(1L, 0);
+
+        messageHandler.handleCallback(createUpdateWithCallbackQuery(1L, adminUserId, "chat_toggle_1"));
+
+        assertThat(botSpy.getSessions()
+                .getSelection(1L)
+                .isEmpty()).isTrue();
+        verify(botSpy).showNotification(any(), contains("Список каналов изменился"));
+        verify(botSpy, times(2)).showSendMenu(any(), any(), any());
+    }
+
     @Test
     void testHandleCallbackMenuSendMessage() {
         List<ChatMembership> chats = new ArrayList<>();
@@ -236,10 +296,6 @@ public class MessageHandlerTest {
         chats.add(chat);
         when(mockChannelManager.getAll()).thenReturn(chats);
 
-        Map<Long, List<Message>> map = new HashMap<>();
-        map.put(1L, new ArrayList<>());
-        when(botSpy.getMessagesForSend()).thenReturn(map);
-
         Update update = createUpdateWithCallbackQuery(1L, adminUserId, "menu_send_message");
         messageHandler.handleCallback(update);
 
@@ -247,6 +303,42 @@ public class MessageHandlerTest {
         verify(botSpy).showMainMenu(1L, null, false);
     }
 
+    @Test
+    void testHandleCallbackMenuSendMessageCopiesToSelectedChats() throws TelegramApiException {
+        List<ChatMembership> chats = new ArrayList<>();
+        for (long i = 1; i <= 3; i++) {
+            ChatMembership chat = new ChatMembership();
+            chat.setChatId(-i);
+            chat.setChatTitle("chat" + i);
+            chat.setChatType("channel");
+            chats.add(chat);
+        }
+        when(mockChannelManager.getAll()).thenReturn(chats);
+
+        Message message = new Message();
+        Chat chat = new Chat();
+        chat.setId(1L);
+        message.setChat(chat);
+        message.setMessageId(10);
+        message.setText("TEST");
+        botSpy.getSessions()
+                .addDrafts(1L, List.of(Draft.of(message)));
+        botSpy.getSessions()
+                .toggleSelection(1L, 1);
+        doReturn(new MessageId(20L)).when(botSpy)
+                .execute(any(CopyMessage.class));
+        when(mockChannelManager.saveHistorySendingAsync(any(), any(), any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(1));
+
+        Update update = createUpdateWithCallbackQuery(1L, adminUserId, "menu_send_message");
+        messageHandler.handleCallback(update);
+
+        verify(botSpy, timeout(5000).times(2)).execute(any(CopyMessage.class));
+        verify(mockChannelManager, timeout(5000)).saveHistorySendingAsync(-1L, adminUserId, "null null", "chat1", 20, "TEST");
+        verify(mockChannelManager, timeout(5000)).saveHistorySendingAsync(-3L, adminUserId, "null null", "chat3", 20, "TEST");
+        verify(mockChannelManager, never()).saveHistorySendingAsync(eq(-2L), any(), any(), any(), any(), any());
+        verify(botSpy).sendStatusMessage(eq(1L), contains("Отправлено: 0 из 2"));
+    }
+
     @Test
     void testHandleCallbackGrantAccessBlocked() {
         Update update = createUpdateWithCallbackQuery(1L, adminUserId, "grant_access_blocked_2");
@@ -358,6 +450,17 @@ public class MessageHandlerTest {
         verify(mockPermissionManager).hasAccess(adminUserId);
     }
 
+    @Test
+    void testHandleForwardMessageShowsSendMenuWithoutDelay() {
+        Update update = createUpdateWithText(1L, adminUserId, "TEST");
+        messageHandler.handleForwardMessage(update);
+
+        verify(botSpy).showSendMenu(eq(1L), isNull(), any());
+        assertThat(botSpy.getSessions()
+                .getDrafts(1L)
+                .size()).isEqualTo(1);
+    }
+
     @Test
     void testHandleChatMember() {
         Update update = mock(Update.class);
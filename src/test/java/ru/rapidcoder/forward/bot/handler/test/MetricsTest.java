@@ -0,0 +1,72 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import io.prometheus.metrics.exporter.httpserver.HTTPServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.rapidcoder.forward.bot.metrics.Metrics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetricsTest {
+
+    private static HTTPServer server;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        server = Metrics.startServer(0);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void testApiCallOutcomes() throws Exception {
+        assertThat(Metrics.apiCall("sendMessage", () -> "ok")).isEqualTo("ok");
+        TelegramApiRequestException tooManyRequests = mock(TelegramApiRequestException.class);
+        when(tooManyRequests.getErrorCode()).thenReturn(429);
+        assertThrows(TelegramApiRequestException.class, () -> Metrics.apiCall("copyMessage", () -> {
+            throw tooManyRequests;
+        }));
+
+        String metrics = scrape();
+
+        assertThat(metrics).contains("bot_api_request_duration_seconds_count{method=\"sendmessage\",outcome=\"ok\"} ");
+        assertThat(metrics).contains("bot_api_request_duration_seconds_count{method=\"copymessage\",outcome=\"too_many_requests\"} ");
+    }
+
+    @Test
+    void testStorageAndUpdateMetricsExported() throws Exception {
+        Metrics.observeStorageQuery("channel", "getAllChats", System.nanoTime());
+        Metrics.observeUpdate("callback_query", System.nanoTime());
+        Metrics.incUpdateErrors("callback_query");
+
+        String metrics = scrape();
+
+        assertThat(metrics).contains("bot_storage_query_duration_seconds_bucket{query=\"getAllChats\",storage=\"channel\",le=\"0.001\"}");
+        assertThat(metrics).contains("bot_update_duration_seconds_count{type=\"callback_query\"}");
+        assertThat(metrics).contains("bot_update_errors_total{type=\"callback_query\"} 1.0");
+        assertThat(metrics).contains("bot_broadcast_queue_depth");
+    }
+
+    private static String scrape() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/metrics"))
+                .GET()
+                .build();
+        return HttpClient.newHttpClient()
+                .send(request, HttpResponse.BodyHandlers.ofString())
+                .body();
+    }
+}
@@ -3,6 +3,7 @@ package ru.rapidcoder.forward.bot.handler.test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
 import ru.rapidcoder.forward.bot.handler.NavigationManager;
 import ru.rapidcoder.forward.bot.handler.NavigationStorage;
 
@@ -33,6 +34,7 @@ public class NavigationManagerTest {
         Field instanceField = NavigationStorage.class.getDeclaredField("instance");
         instanceField.setAccessible(true);
         instanceField.set(null, null);
+        ConnectionPool.closeAll();
     }
 
     @Test
@@ -0,0 +1,53 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.dto.PermissionUser;
+import ru.rapidcoder.forward.bot.handler.PermissionIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class PermissionIndexTest {
+
+    @Test
+    void testPutAndGet() {
+        PermissionIndex index = new PermissionIndex();
+        assertThat(index.getStatus(1L)).isNull();
+        assertThat(index.isActive(1L)).isFalse();
+
+        index.put(1L, PermissionUser.UserStatus.ACTIVE, PermissionUser.UserRole.ADMIN);
+        assertThat(index.getStatus(1L)).isEqualTo(PermissionUser.UserStatus.ACTIVE);
+        assertThat(index.getRole(1L)).isEqualTo(PermissionUser.UserRole.ADMIN);
+        assertThat(index.isActive(1L)).isTrue();
+
+        index.updateStatus(1L, PermissionUser.UserStatus.BLOCKED);
+        assertThat(index.getStatus(1L)).isEqualTo(PermissionUser.UserStatus.BLOCKED);
+        assertThat(index.getRole(1L)).isEqualTo(PermissionUser.UserRole.ADMIN);
+        assertThat(index.isActive(1L)).isFalse();
+
+        index.updateStatus(2L, PermissionUser.UserStatus.ACTIVE);
+        assertThat(index.getStatus(2L)).isNull();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testLoadGrowsTable() {
+        List<PermissionUser> users = new ArrayList<>();
+        for (long userId = -500; userId < 500; userId++) {
+            PermissionUser user = new PermissionUser();
+            user.setUserId(userId);
+            user.setStatus(userId % 2 == 0 ? PermissionUser.UserStatus.ACTIVE : PermissionUser.UserStatus.BLOCKED);
+            user.setRole(PermissionUser.UserRole.MEMBER);
+            users.add(user);
+        }
+        PermissionIndex index = new PermissionIndex();
+        index.load(users);
+        assertThat(index.size()).isEqualTo(1000);
+        for (long userId = -500; userId < 500; userId++) {
+            assertThat(index.isActive(userId)).isEqualTo(userId % 2 == 0);
+        }
+        assertThat(index.getStatus(500L)).isNull();
+    }
+}
@@ -5,8 +5,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.rapidcoder.forward.bot.dto.AccessRequest;
 import ru.rapidcoder.forward.bot.dto.PermissionUser;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
 import ru.rapidcoder.forward.bot.handler.PermissionManager;
 import ru.rapidcoder.forward.bot.handler.PermissionStorage;
+import ru.rapidcoder.forward.bot.handler.PermissionStore;
 
 import java.io.File;
 import java.lang.reflect.Field;
@@ -16,6 +18,10 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.Assert.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class PermissionManagerTest {
 
@@ -38,6 +44,7 @@ public class PermissionManagerTest {
         Field instanceField = PermissionStorage.class.getDeclaredField("instance");
         instanceField.setAccessible(true);
         instanceField.set(null, null);
+        ConnectionPool.closeAll();
     }
 
     @Test
@@ -176,4 +183,73 @@ public class PermissionManagerTest {
         user = permissionManager.findUserById(1L);
         assertThat(user.getStatus()).isEqualTo(PermissionUser.UserStatus.BLOCKED);
     }
+
+    @Test
+    void testHasAccessAfterStatusChange() {
+        permissionManager.saveUser(1L, "userName");
+        assertTrue(permissionManager.hasAccess(1L));
+
+        permissionManager.blockedUser(1L);
+        assertFalse(permissionManager.hasAccess(1L));
+
+        permissionManager.activeUser(1L);
+        assertTrue(permissionManager.hasAccess(1L));
+
+        permissionManager.activeUser(2L);
+        assertFalse(permissionManager.hasAccess(2L));
+    }
+
+    @Test
+    void testHasAccessLoadedOnStartup() {
+        permissionManager.saveUser(1L, "userName");
+        permissionManager.saveUser(2L, "blockedUser");
+        permissionManager.blockedUser(2L);
+
+        PermissionManager restarted = new PermissionManager(TEST_DB, List.of(100L));
+        assertTrue(restarted.hasAccess(1L));
+        assertFalse(restarted.hasAccess(2L));
+        assertFalse(restarted.hasAccess(3L));
+        assertTrue(restarted.isAdmin(100L));
+        assertFalse(restarted.isAdmin(1L));
+    }
+
+    @Test
+    void testFailedStatusChangeKeepsAccess() {
+        PermissionUser user = new PermissionUser();
+        user.setUserId(1L);
+        user.setUserName("userName");
+        user.setStatus(PermissionUser.UserStatus.ACTIVE);
+        user.setRole(PermissionUser.UserRole.MEMBER);
+        PermissionStore storage = mock(PermissionStore.class);
+        when(storage.getAllUsers()).thenReturn(List.of(user));
+        when(storage.updateUserStatus(1L, PermissionUser.UserStatus.BLOCKED)).thenReturn(false);
+
+        PermissionManager manager = new PermissionManager(storage, List.of(100L));
+        manager.blockedUser(1L);
+
+        // Статус в базе не изменился, поэтому индекс тоже остается прежним
+        assertTrue(manager.hasAccess(1L));
+    }
+
+    @Test
+    void testRefreshFailureKeepsIndex() {
+        PermissionUser user = new PermissionUser();
+        user.setUserId(1L);
+        user.setUserName("userName");
+        user.setStatus(PermissionUser.UserStatus.ACTIVE);
+        user.setRole(PermissionUser.UserRole.MEMBER);
+        PermissionStore storage = mock(PermissionStore.class);
+        when(storage.getUsersVersion()).thenReturn(1L)
+                .thenReturn(2L);
+        when(storage.getAllUsers()).thenReturn(List.of(user));
+        when(storage.loadAllUsers()).thenThrow(new IllegalStateException("connection lost"));
+
+        PermissionManager manager = new PermissionManager(storage, List.of(100L));
+        manager.refresh();
+
+        assertTrue(manager.hasAccess(1L));
+        // Проверка доступа не обращается к базе: версия читалась только при создании и при сверке
+        verify(storage, times(2)).getUsersVersion();
+        manager.shutdown();
+    }
 }
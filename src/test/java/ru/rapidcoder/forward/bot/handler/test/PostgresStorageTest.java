@@ -0,0 +1,243 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.dto.ChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryChatMembership;
+import ru.rapidcoder.forward.bot.dto.HistoryPage;
+import ru.rapidcoder.forward.bot.dto.HistorySending;
+import ru.rapidcoder.forward.bot.dto.PermissionUser;
+import ru.rapidcoder.forward.bot.handler.ChannelManager;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.NavigationManager;
+import ru.rapidcoder.forward.bot.handler.PermissionManager;
+import ru.rapidcoder.forward.bot.handler.PooledConnection;
+import ru.rapidcoder.forward.bot.handler.PostgresChannelStorage;
+import ru.rapidcoder.forward.bot.handler.PostgresNavigationStorage;
+import ru.rapidcoder.forward.bot.handler.PostgresPermissionStorage;
+import ru.rapidcoder.forward.bot.handler.PostgresSchema;
+import ru.rapidcoder.forward.bot.handler.StorageBackend;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Хранилища на сервере баз данных. Вместо PostgreSQL используется H2 в режиме совместимости с PostgreSQL
+ */
+public class PostgresStorageTest {
+
+    private static final String TEST_URL = "jdbc:h2:mem:bot;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        resetSingletons();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_URL)
+                .acquire(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        resetSingletons();
+    }
+
+    private void resetSingletons() throws Exception {
+        for (Class<?> storage : List.of(PostgresChannelStorage.class, PostgresPermissionStorage.class, PostgresNavigationStorage.class)) {
+            Field instanceField = storage.getDeclaredField("instance");
+            instanceField.setAccessible(true);
+            instanceField.set(null, null);
+        }
+        ConnectionPool.closeAll();
+    }
+
+    @Test
+    void testBackendSelectedByLocation() {
+        assertThat(StorageBackend.isServer(TEST_URL)).isTrue();
+        assertThat(StorageBackend.isServer("test_chat.db")).isFalse();
+        assertThat(StorageBackend.channels(TEST_URL)).isInstanceOf(PostgresChannelStorage.class);
+        assertThat(StorageBackend.exporter(TEST_URL)).isNull();
+        assertThat(StorageBackend.queueFile("test_chat.db", "queue.db")).isEqualTo("test_chat.db");
+        assertThat(StorageBackend.queueFile(TEST_URL, null)).isEqualTo(StorageBackend.DEFAULT_SERVER_QUEUE_FILE);
+        assertThat(StorageBackend.queueFile(TEST_URL, "/var/lib/bot/queue.db")).isEqualTo("/var/lib/bot/queue.db");
+        assertThat(StorageBackend.describe("jdbc:postgresql://bot:secret@db:5432/bot?password=secret")).isEqualTo("jdbc:postgresql://db:5432/bot");
+    }
+
+    @Test
+    void testSchemaMigratedOnce() throws SQLException {
+        new NavigationManager(TEST_URL);
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_URL);
+        try (PooledConnection conn = pool.acquire()) {
+            assertThat(PostgresSchema.readVersion(conn.getConnection())).isEqualTo(PostgresSchema.latestVersion());
+        }
+        pool.close();
+
+        PostgresSchema.migrate(pool);
+        try (PooledConnection conn = pool.acquire()) {
+            assertThat(PostgresSchema.readVersion(conn.getConnection())).isEqualTo(PostgresSchema.latestVersion());
+        }
+    }
+
+    @Test
+    void testChats() {
+        ChannelManager channelManager = new ChannelManager(TEST_URL);
+        assertThrows(IllegalArgumentException.class, () -> channelManager.save(1L, 2L, null, null, null, null, null));
+
+        channelManager.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", "left");
+        channelManager.save(1L, 2L, "userName", "Renamed", "channel", "administrator", "left");
+        channelManager.updateStatus(1L, "member", "administrator");
+
+        ChatMembership chat = channelManager.get(1L);
+        assertThat(chat.getChatTitle()).isEqualTo("Renamed");
+        assertThat(chat.getBotNewStatus()).isEqualTo("member");
+        assertThat(chat.getAddedDate()).isNotNull();
+        assertThat(channelManager.getAll()
+                .size()).isEqualTo(1);
+
+        channelManager.delete(1L);
+        assertThat(channelManager.get(1L)).isNull();
+        assertThat(channelManager.getAll()
+                .size()).isEqualTo(0);
+        List<HistoryChatMembership> history = channelManager.getHistory();
+        assertThat(history.size()).isEqualTo(4);
+        assertThat(history.get(0)
+                .isDeleted()).isTrue();
+        assertThat(channelManager.uploadData(1L)).isNull();
+    }
+
+    @Test
+    void testChatsVersionSharedBetweenWorkers() throws Exception {
+        ChannelManager first = new ChannelManager(TEST_URL);
+        first.save(1L, 2L, "userName", "TestChannel", "channel", "administrator", "left");
+        long version = first.getVersion();
+        assertThat(first.getAll()
+                .size()).isEqualTo(1);
+
+        // Второй процесс бота: свое хранилище со своим кэшем списка каналов над той же базой
+        resetSingletons();
+        ChannelManager second = new ChannelManager(TEST_URL);
+        second.save(2L, 2L, "userName", "OtherChannel", "channel", "administrator", "left");
+
+        assertThat(first.getVersion()).isGreaterThan(version);
+        assertThat(first.getAll()
+                .size()).isEqualTo(2);
+        assertThat(first.getVersion()).isEqualTo(second.getVersion());
+    }
+
+    @Test
+    void testHistorySendingPages() throws Exception {
+        ChannelManager channelManager = new ChannelManager(TEST_URL);
+        for (int i = 1; i <= 45; i++) {
+            channelManager.saveHistorySending(-100L - i, 2L, "userName", "TestChannel", i, "text" + i);
+        }
+        assertThat(channelManager.saveHistorySendingAsync(-200L, 2L, "userName", "TestChannel", 46, "text")
+                .get()).isEqualTo(1);
+
+        HistoryPage<HistorySending> first = channelManager.getHistorySendingPage(null, true);
+        assertThat(first.items()
+                .size()).isEqualTo(20);
+        assertThat(first.items()
+                .get(0)
+                .getMessageId()).isEqualTo(46);
+        assertThat(first.newerCursor()).isNull();
+
+        HistoryPage<HistorySending> second = channelManager.getHistorySendingPage(first.olderCursor(), true);
+        assertThat(second.items()
+                .get(0)
+                .getMessageId()).isEqualTo(26);
+        HistoryPage<HistorySending> last = channelManager.getHistorySendingPage(second.olderCursor(), true);
+        assertThat(last.items()
+                .size()).isEqualTo(6);
+        assertThat(last.items()
+                .get(5)
+                .getMessageId()).isEqualTo(1);
+        assertThat(last.olderCursor()).isNull();
+
+        HistoryPage<HistorySending> back = channelManager.getHistorySendingPage(last.newerCursor(), false);
+        assertThat(back.items()
+                .get(0)
+                .getMessageId()).isEqualTo(26);
+        HistoryPage<HistorySending> top = channelManager.getHistorySendingPage(back.newerCursor(), false);
+        assertThat(top.items()
+                .get(0)
+                .getMessageId()).isEqualTo(46);
+        assertThat(top.newerCursor()).isNull();
+        assertThat(top.olderCursor()).isEqualTo(first.olderCursor());
+    }
+
+    @Test
+    void testPermissions() {
+        PermissionManager permissionManager = new PermissionManager(TEST_URL, List.of(1L));
+        permissionManager.saveUser(2L, "user");
+        permissionManager.saveRequest(3L, "requester");
+
+        assertThat(permissionManager.hasAccess(2L)).isTrue();
+        permissionManager.blockedUser(2L);
+        assertThat(permissionManager.hasAccess(2L)).isFalse();
+        assertThat(permissionManager.findUserById(2L)
+                .getStatus()).isEqualTo(PermissionUser.UserStatus.BLOCKED);
+        permissionManager.saveUser(2L, "user");
+        assertThat(permissionManager.getUsers()
+                .size()).isEqualTo(1);
+
+        assertThat(permissionManager.getRequests()
+                .size()).isEqualTo(1);
+        permissionManager.approvedRequest(3L);
+        assertThat(permissionManager.getRequests()
+                .size()).isEqualTo(0);
+        assertThat(permissionManager.findRequestById(3L)
+                .getUserName()).isEqualTo("requester");
+
+        // Новый процесс загружает индекс прав из общей базы
+        assertThat(new PermissionManager(TEST_URL, List.of(1L)).hasAccess(2L)).isTrue();
+    }
+
+    @Test
+    void testPermissionsSharedBetweenWorkers() throws Exception {
+        PermissionManager first = new PermissionManager(TEST_URL, List.of(1L));
+        first.saveUser(2L, "user");
+        first.saveRequest(3L, "requester");
+
+        // Второй процесс бота: свое хранилище и свой индекс прав над той же базой
+        resetSingletons();
+        PermissionManager second = new PermissionManager(TEST_URL, List.of(1L));
+        assertThat(second.hasAccess(2L)).isTrue();
+        assertThat(second.hasAccess(3L)).isFalse();
+
+        first.blockedUser(2L);
+        first.saveUser(3L, "requester");
+        // Индекс второго процесса меняется только при фоновой сверке версии
+        assertThat(second.hasAccess(2L)).isTrue();
+        second.refresh();
+        assertThat(second.hasAccess(2L)).isFalse();
+        assertThat(second.hasAccess(3L)).isTrue();
+
+        second.activeUser(2L);
+        first.refresh();
+        assertThat(first.hasAccess(2L)).isTrue();
+        first.shutdown();
+        second.shutdown();
+    }
+
+    @Test
+    void testNavigation() {
+        NavigationManager navigationManager = new NavigationManager(TEST_URL);
+        assertThrows(IllegalArgumentException.class, () -> navigationManager.setState(1L, null, null));
+
+        navigationManager.setState(1L, "state");
+        navigationManager.setState(1L, "other", "context");
+        assertThat(navigationManager.getState(1L)
+                .orElse("not found")).isEqualTo("other");
+        assertThat(navigationManager.getContext(1L)
+                .orElse("not found")).isEqualTo("context");
+
+        navigationManager.clearState(1L);
+        assertThat(navigationManager.hasState(1L)).isFalse();
+    }
+}
@@ -0,0 +1,101 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.handler.RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final RateLimiter rateLimiter = new RateLimiter(10, clock::get);
+
+    @Test
+    void testGlobalLimit() {
+        assertThat(rateLimiter.reserve(1L, "channel")).isZero();
+        assertThat(rateLimiter.reserve(2L, "channel")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(rateLimiter.reserve(3L, "channel")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+
+        clock.set(TimeUnit.SECONDS.toNanos(10));
+        assertThat(rateLimiter.reserve(4L, "channel")).isZero();
+    }
+
+    @Test
+    void testChatLimit() {
+        assertThat(rateLimiter.reserve(1L, "channel")).isZero();
+        assertThat(rateLimiter.reserve(1L, "channel")).isEqualTo(RateLimiter.CHAT_INTERVAL_NANOS);
+
+        assertThat(rateLimiter.reserve(2L, "group")).isEqualTo(RateLimiter.CHAT_INTERVAL_NANOS + TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(rateLimiter.reserve(2L, "group")).isEqualTo(RateLimiter.CHAT_INTERVAL_NANOS + TimeUnit.MILLISECONDS.toNanos(100) + RateLimiter.GROUP_INTERVAL_NANOS);
+        assertThat(rateLimiter.reserve(3L, "channel")).isEqualTo(RateLimiter.CHAT_INTERVAL_NANOS + RateLimiter.GROUP_INTERVAL_NANOS + TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void testChatDelayedCallsTakeGlobalSlot() {
+        rateLimiter.penalize(1L, 5);
+        rateLimiter.penalize(2L, 5);
+
+        assertThat(rateLimiter.reserve(1L, "channel")).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+        assertThat(rateLimiter.reserve(2L, "channel")).isEqualTo(TimeUnit.SECONDS.toNanos(5) + TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void testPenalize() {
+        rateLimiter.penalize(1L, 5);
+        assertThat(rateLimiter.reserve(1L, "channel")).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+        assertThat(rateLimiter.reserve(2L, "channel")).isEqualTo(TimeUnit.SECONDS.toNanos(5) + TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void testEstimate() {
+        assertThat(rateLimiter.estimate(0)).isZero();
+        assertThat(rateLimiter.estimate(1)).isZero();
+        assertThat(rateLimiter.estimate(201)).isEqualTo(TimeUnit.SECONDS.toNanos(20));
+    }
+
+    @Test
+    void testAcquireFailFast() throws Exception {
+        assertThat(rateLimiter.reserve(1L, "channel")).isZero();
+
+        RateLimiter.LimitExceededException e = assertThrows(RateLimiter.LimitExceededException.class, () -> rateLimiter.acquire(1L, "channel", RateLimiter.Mode.FAIL_FAST));
+        assertThat(e.getWaitNanos()).isEqualTo(RateLimiter.CHAT_INTERVAL_NANOS);
+        assertThrows(RateLimiter.LimitExceededException.class, () -> rateLimiter.acquire(2L, "channel", RateLimiter.Mode.FAIL_FAST));
+
+        // Отклоненный вызов не занимает слот
+        clock.set(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(rateLimiter.acquire(2L, "channel", RateLimiter.Mode.FAIL_FAST)).isZero();
+        assertThat(rateLimiter.reserve(3L, "channel")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void testAcquireWithoutChatOrReserved() throws Exception {
+        assertThat(rateLimiter.reserve(1L, "channel")).isZero();
+
+        assertThat(rateLimiter.acquire(null, null, RateLimiter.Mode.FAIL_FAST)).isZero();
+        assertThat(rateLimiter.acquire(1L, "channel", RateLimiter.Mode.RESERVED)).isZero();
+        assertThat(rateLimiter.reserve(2L, "channel")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void testAcquireWaits() throws Exception {
+        assertThat(rateLimiter.acquire(-1L, null, RateLimiter.Mode.WAIT)).isZero();
+        // Чат с отрицательным идентификатором без типа считается группой
+        clock.set(TimeUnit.SECONDS.toNanos(1));
+        assertThat(rateLimiter.reserve(-1L, "group")).isEqualTo(RateLimiter.GROUP_INTERVAL_NANOS - TimeUnit.SECONDS.toNanos(1));
+
+        // Каналы и супергруппы (-100...) без типа ограничиваются как личные чаты
+        clock.set(TimeUnit.SECONDS.toNanos(4));
+        assertThat(rateLimiter.acquire(-1001234567890L, null, RateLimiter.Mode.WAIT)).isZero();
+        clock.set(TimeUnit.SECONDS.toNanos(5));
+        assertThat(rateLimiter.reserve(-1001234567890L, "channel")).isZero();
+
+        assertThat(rateLimiter.reserve(6L, "channel")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        long start = System.nanoTime();
+        assertThat(rateLimiter.acquire(5L, null, RateLimiter.Mode.WAIT)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+}
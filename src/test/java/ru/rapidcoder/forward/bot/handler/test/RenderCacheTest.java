@@ -0,0 +1,65 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import ru.rapidcoder.forward.bot.component.KeyboardButton;
+import ru.rapidcoder.forward.bot.handler.RenderCache;
+
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class RenderCacheTest {
+
+    private InlineKeyboardMarkup createKeyboard(String text) {
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+        keyboard.setKeyboard(List.of(List.of(new KeyboardButton(text, "menu"))));
+        return keyboard;
+    }
+
+    @Test
+    void testDiff() {
+        RenderCache cache = new RenderCache();
+        assertThat(cache.diff(1L, 10, "menu", createKeyboard("a"))).isEqualTo(RenderCache.Change.TEXT);
+
+        cache.remember(1L, 10, "menu", createKeyboard("a"));
+
+        assertThat(cache.diff(1L, 10, "menu", createKeyboard("a"))).isEqualTo(RenderCache.Change.NONE);
+        assertThat(cache.diff(1L, 10, "menu", createKeyboard("b"))).isEqualTo(RenderCache.Change.MARKUP);
+        assertThat(cache.diff(1L, 10, "other", createKeyboard("a"))).isEqualTo(RenderCache.Change.TEXT);
+        assertThat(cache.diff(1L, 11, "menu", createKeyboard("a"))).isEqualTo(RenderCache.Change.TEXT);
+        assertThat(cache.diff(2L, 10, "menu", createKeyboard("a"))).isEqualTo(RenderCache.Change.TEXT);
+    }
+
+    @Test
+    void testWithoutKeyboard() {
+        RenderCache cache = new RenderCache();
+        cache.remember(1L, 10, "menu", null);
+
+        assertThat(cache.diff(1L, 10, "menu", null)).isEqualTo(RenderCache.Change.NONE);
+        assertThat(cache.diff(1L, 10, "menu", createKeyboard("a"))).isEqualTo(RenderCache.Change.MARKUP);
+    }
+
+    @Test
+    void testForget() {
+        RenderCache cache = new RenderCache();
+        cache.remember(1L, 10, "menu", createKeyboard("a"));
+        cache.forget(1L, 10);
+
+        assertThat(cache.diff(1L, 10, "menu", createKeyboard("a"))).isEqualTo(RenderCache.Change.TEXT);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvicted() {
+        RenderCache cache = new RenderCache(2);
+        cache.remember(1L, 1, "a", null);
+        cache.remember(1L, 2, "b", null);
+        cache.diff(1L, 1, "a", null);
+        cache.remember(1L, 3, "c", null);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.diff(1L, 1, "a", null)).isEqualTo(RenderCache.Change.NONE);
+        assertThat(cache.diff(1L, 2, "b", null)).isEqualTo(RenderCache.Change.TEXT);
+    }
+}
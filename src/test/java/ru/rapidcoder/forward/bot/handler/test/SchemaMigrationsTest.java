@@ -0,0 +1,125 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.PooledConnection;
+import ru.rapidcoder.forward.bot.handler.SchemaMigrations;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class SchemaMigrationsTest {
+
+    private static final String TEST_DB = "test_schema.db";
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @AfterEach
+    void tearDown() {
+        ConnectionPool.closeAll();
+        new File(TEST_DB).delete();
+    }
+
+    private int readVersion() throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire()) {
+            return SchemaMigrations.readVersion(conn.getConnection());
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '" + table + "'")) {
+            return rs.next();
+        }
+    }
+
+    private int readAutoVacuum() throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Test
+    void testFreshDatabaseMigratedToLatest() throws SQLException {
+        SchemaMigrations.migrate(ConnectionPool.getInstance(TEST_DB));
+
+        assertThat(readVersion()).isEqualTo(SchemaMigrations.latestVersion());
+        assertThat(tableExists("users")).isTrue();
+        assertThat(tableExists("monitored_chats")).isTrue();
+        assertThat(tableExists("navigation_history")).isTrue();
+        assertThat(tableExists("broadcast_tasks")).isTrue();
+        execute("INSERT INTO history_sending_to_chat (chat_id, user_id, user_name, chat_title, message_id, msg) VALUES (1, 1, 'user', 'chat', '1', 'text')");
+    }
+
+    @Test
+    void testLegacyDatabaseUpgraded() throws SQLException {
+        // База, созданная до миграций: версия 0, колонка msg уже добавлена
+        execute("CREATE TABLE history_sending_to_chat (chat_id INTEGER NOT NULL, user_id INTEGER NOT NULL, user_name TEXT NOT NULL, chat_title TEXT NOT NULL, message_id TEXT NOT NULL, created_at DATETIME DEFAULT CURRENT_TIMESTAMP, msg TEXT)");
+        execute("INSERT INTO history_sending_to_chat (chat_id, user_id, user_name, chat_title, message_id, msg) VALUES (1, 1, 'user', 'chat', '1', 'text')");
+
+        SchemaMigrations.migrate(ConnectionPool.getInstance(TEST_DB));
+
+        assertThat(readVersion()).isEqualTo(SchemaMigrations.latestVersion());
+        assertThat(tableExists("broadcast_jobs")).isTrue();
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT msg FROM history_sending_to_chat")) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("text");
+        }
+    }
+
+    @Test
+    void testMigratedDatabaseNotChanged() throws SQLException {
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_DB);
+        SchemaMigrations.migrate(pool);
+        execute("DROP TABLE navigation_history");
+
+        SchemaMigrations.migrate(pool);
+        assertThat(tableExists("navigation_history")).isFalse();
+
+        // После закрытия пула проверяется только версия схемы, миграции не повторяются
+        pool.close();
+        SchemaMigrations.migrate(pool);
+        assertThat(tableExists("navigation_history")).isFalse();
+    }
+
+    @Test
+    void testPendingMigrationsApplied() throws SQLException {
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_DB);
+        SchemaMigrations.migrate(pool);
+        execute("DROP TABLE broadcast_tasks");
+        execute("PRAGMA user_version = 0");
+        pool.close();
+
+        SchemaMigrations.migrate(pool);
+        assertThat(tableExists("broadcast_tasks")).isTrue();
+        assertThat(readVersion()).isEqualTo(SchemaMigrations.latestVersion());
+    }
+
+    @Test
+    void testExistingDatabaseSwitchedToIncrementalVacuum() throws SQLException {
+        ConnectionPool pool = ConnectionPool.getInstance(TEST_DB);
+        SchemaMigrations.migrate(pool);
+        // База, созданная до включения incremental_vacuum
+        execute("PRAGMA auto_vacuum = NONE");
+        execute("VACUUM");
+        assertThat(readAutoVacuum()).isEqualTo(0);
+        pool.close();
+
+        SchemaMigrations.migrate(pool);
+        assertThat(readAutoVacuum()).isEqualTo(2);
+    }
+}
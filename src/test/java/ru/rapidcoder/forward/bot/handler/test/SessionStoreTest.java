@@ -0,0 +1,144 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import ru.rapidcoder.forward.bot.dto.Draft;
+import ru.rapidcoder.forward.bot.handler.SessionStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class SessionStoreTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private Draft createDraft(int messageId, String text) {
+        Chat chat = new Chat();
+        chat.setId(1L);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setMessageId(messageId);
+        message.setText(text);
+        return Draft.of(message);
+    }
+
+    @Test
+    void testDraftsAndSelection() {
+        SessionStore store = new SessionStore();
+        store.addDrafts(1L, List.of(createDraft(1, "first")));
+        store.addDrafts(1L, List.of(createDraft(2, "second")));
+
+        assertThat(store.hasDrafts(1L)).isTrue();
+        assertThat(store.getDrafts(1L)
+                .size()).isEqualTo(2);
+        assertThat(store.toggleSelection(1L, 3)).isTrue();
+        assertThat(store.getSelection(1L)).isEqualTo(Set.of(3));
+        assertThat(store.toggleSelection(1L, 3)).isFalse();
+        assertThat(store.getSelection(1L)
+                .isEmpty()).isTrue();
+
+        List<Draft> taken = store.takeDrafts(1L);
+        assertThat(taken.size()).isEqualTo(2);
+        assertThat(store.hasDrafts(1L)).isFalse();
+        assertThat(store.size()).isZero();
+        assertThat(store.getBytes()).isZero();
+    }
+
+    @Test
+    void testIdleSessionExpired() {
+        SessionStore store = new SessionStore(Duration.ofMinutes(10), 100, Long.MAX_VALUE, clock::get);
+        store.addDrafts(1L, List.of(createDraft(1, "old")));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        store.addDrafts(2L, List.of(createDraft(2, "new")));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(6));
+
+        assertThat(store.hasDrafts(1L)).isFalse();
+        assertThat(store.hasDrafts(2L)).isTrue();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getBytes()).isEqualTo(SessionStore.estimateBytes(createDraft(2, "new")));
+    }
+
+    @Test
+    void testSendMenuVersionExpiredWithSession() {
+        SessionStore store = new SessionStore(Duration.ofMinutes(10), 100, Long.MAX_VALUE, clock::get);
+        store.setSendMenuVersion(1L, 7);
+        assertThat(store.getSendMenuVersion(1L)).isEqualTo(7L);
+        assertThat(store.size()).isEqualTo(1);
+
+        // Меню брошено: версия удаляется вместе с сессией
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        assertThat(store.getSendMenuVersion(1L)).isNull();
+        assertThat(store.size()).isZero();
+
+        store.setSendMenuVersion(2L, 3);
+        store.clearSendMenuVersion(2L);
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void testAccessExtendsTtl() {
+        SessionStore store = new SessionStore(Duration.ofMinutes(10), 100, Long.MAX_VALUE, clock::get);
+        store.addDrafts(1L, List.of(createDraft(1, "draft")));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(8));
+        store.getDrafts(1L);
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(8));
+
+        assertThat(store.hasDrafts(1L)).isTrue();
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvictedOverSessionLimit() {
+        SessionStore store = new SessionStore(Duration.ofHours(1), 2, Long.MAX_VALUE, clock::get);
+        store.addDrafts(1L, List.of(createDraft(1, "a")));
+        store.addDrafts(2L, List.of(createDraft(2, "b")));
+        store.getDrafts(1L);
+        store.addDrafts(3L, List.of(createDraft(3, "c")));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.hasDrafts(1L)).isTrue();
+        assertThat(store.hasDrafts(2L)).isFalse();
+        assertThat(store.hasDrafts(3L)).isTrue();
+    }
+
+    @Test
+    void testEvictedOverByteBudget() {
+        long draftBytes = SessionStore.estimateBytes(createDraft(1, "x"));
+        SessionStore store = new SessionStore(Duration.ofHours(1), 100, draftBytes * 3, clock::get);
+        for (long chatId = 1; chatId <= 5; chatId++) {
+            store.addDrafts(chatId, List.of(createDraft((int) chatId, "x")));
+        }
+
+        assertThat(store.size()).isEqualTo(3);
+        assertThat(store.getBytes()).isEqualTo(draftBytes * 3);
+        assertThat(store.hasDrafts(5L)).isTrue();
+        assertThat(store.hasDrafts(1L)).isFalse();
+    }
+
+    @Test
+    void testConcurrentAppends() throws Exception {
+        SessionStore store = new SessionStore();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            int messageId = i;
+            futures.add(executor.submit(() -> store.addDrafts(1L, List.of(createDraft(messageId, "text")))));
+        }
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(store.getDrafts(1L)
+                .size()).isEqualTo(800);
+    }
+}
@@ -0,0 +1,119 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.rapidcoder.forward.bot.handler.ConnectionPool;
+import ru.rapidcoder.forward.bot.handler.PooledConnection;
+import ru.rapidcoder.forward.bot.handler.StorageWriter;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class StorageWriterTest {
+
+    private static final String TEST_DB = "test_writer.db";
+    private StorageWriter writer;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire()) {
+            conn.createStatement()
+                    .execute("CREATE TABLE IF NOT EXISTS writer_test (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+        }
+        writer = StorageWriter.getInstance(TEST_DB);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @AfterEach
+    void tearDown() {
+        StorageWriter.closeAll();
+        ConnectionPool.closeAll();
+        new File(TEST_DB).delete();
+    }
+
+    private StorageWriter.Write insert(long id, String name) {
+        return conn -> {
+            PreparedStatement stmt = conn.prepareStatement("INSERT INTO writer_test (id, name) VALUES (?, ?)");
+            stmt.setLong(1, id);
+            stmt.setString(2, name);
+            return stmt.executeUpdate();
+        };
+    }
+
+    private int count() throws SQLException {
+        try (PooledConnection conn = ConnectionPool.getInstance(TEST_DB)
+                .acquire()) {
+            return conn.createStatement()
+                    .executeQuery("SELECT COUNT(*) FROM writer_test")
+                    .getInt(1);
+        }
+    }
+
+    @Test
+    void testExecuteVisibleToReaders() throws SQLException {
+        assertThat(writer.execute(insert(1, "name"))).isEqualTo(1);
+        assertThat(count()).isEqualTo(1);
+    }
+
+    @Test
+    void testExecuteRethrowsFailure() {
+        assertThrows(SQLException.class, () -> writer.execute(insert(1, null)));
+        assertThrows(NullPointerException.class, () -> writer.execute(conn -> {
+            throw new NullPointerException();
+        }));
+    }
+
+    @Test
+    void testFailedWriteDoesNotRollbackBatch() throws Exception {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        futures.add(writer.submit(insert(1, "first")));
+        futures.add(writer.submit(insert(2, null)));
+        futures.add(writer.submit(insert(3, "third")));
+        writer.flush();
+
+        assertThat(futures.get(0)
+                .get()).isEqualTo(1);
+        assertThat(futures.get(1)
+                .isCompletedExceptionally()).isTrue();
+        assertThat(futures.get(2)
+                .get()).isEqualTo(1);
+        assertThat(count()).isEqualTo(2);
+    }
+
+    @Test
+    void testConcurrentWriters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (long i = 0; i < 500; i++) {
+            long id = i;
+            futures.add(CompletableFuture.supplyAsync(() -> writer.submit(insert(id, "name" + id)), executor)
+                    .thenCompose(future -> future));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertThat(count()).isEqualTo(500);
+    }
+
+    @Test
+    void testCloseDrainsQueue() throws SQLException {
+        CompletableFuture<Integer> future = writer.submit(insert(1, "name"));
+        writer.close();
+        assertThat(future.isDone()).isTrue();
+        assertThat(count()).isEqualTo(1);
+        assertThat(writer.submit(insert(2, "name"))
+                .isCompletedExceptionally()).isTrue();
+    }
+}
@@ -0,0 +1,157 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.rapidcoder.forward.bot.handler.UpdateDispatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class UpdateDispatcherTest {
+
+    @Test
+    void testUpdatesOfChatHandledInOrder() {
+        Map<Long, List<Integer>> handled = new ConcurrentHashMap<>();
+        Consumer<Update> handler = update -> {
+            sleep(1);
+            handled.computeIfAbsent(update.getMessage()
+                            .getChatId(), chatId -> new ArrayList<>())
+                    .add(update.getUpdateId());
+        };
+        UpdateDispatcher dispatcher = new UpdateDispatcher(16);
+
+        for (int i = 0; i < 50; i++) {
+            dispatcher.dispatch(createUpdate(i % 3, i), handler);
+        }
+        dispatcher.shutdown();
+
+        for (long chatId = 0; chatId < 3; chatId++) {
+            List<Integer> ids = handled.get(chatId);
+            assertThat(ids.size()).isEqualTo(chatId == 2 ? 16 : 17);
+            for (int i = 1; i < ids.size(); i++) {
+                assertThat(ids.get(i)).isGreaterThan(ids.get(i - 1));
+            }
+        }
+    }
+
+    @Test
+    void testSlowChatDoesNotBlockOtherChats() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherHandled = new CountDownLatch(1);
+        Consumer<Update> handler = update -> {
+            if (update.getMessage()
+                    .getChatId() == 1L) {
+                await(release);
+            } else {
+                otherHandled.countDown();
+            }
+        };
+        UpdateDispatcher dispatcher = new UpdateDispatcher(16);
+
+        dispatcher.dispatch(createUpdate(1L, 1), handler);
+        dispatcher.dispatch(createUpdate(2L, 2), handler);
+
+        assertThat(otherHandled.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.getInFlight()).isGreaterThanOrEqualTo(1);
+        release.countDown();
+        dispatcher.shutdown();
+        assertThat(dispatcher.getInFlight()).isZero();
+    }
+
+    @Test
+    void testInFlightBounded() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger dispatched = new AtomicInteger();
+        Consumer<Update> handler = update -> await(release);
+        UpdateDispatcher dispatcher = new UpdateDispatcher(2);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                dispatcher.dispatch(createUpdate(i, i), handler);
+                dispatched.incrementAndGet();
+            }
+        });
+        producer.start();
+        producer.join(300);
+
+        assertThat(dispatched.get()).isEqualTo(2);
+        release.countDown();
+        producer.join(1000);
+        assertThat(dispatched.get()).isEqualTo(3);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testHandlerErrorDoesNotStopChatQueue() {
+        List<Integer> handled = new ArrayList<>();
+        Consumer<Update> handler = update -> {
+            if (update.getUpdateId() == 1) {
+                throw new IllegalStateException("test");
+            }
+            handled.add(update.getUpdateId());
+        };
+        UpdateDispatcher dispatcher = new UpdateDispatcher(16);
+
+        dispatcher.dispatch(createUpdate(1L, 1), handler);
+        dispatcher.dispatch(createUpdate(1L, 2), handler);
+        dispatcher.shutdown();
+
+        assertThat(handled.toString()).isEqualTo("[2]");
+    }
+
+    @Test
+    void testSubmittedTaskOrderedWithChatUpdates() {
+        List<Integer> handled = new ArrayList<>();
+        Consumer<Update> handler = update -> {
+            sleep(20);
+            handled.add(update.getUpdateId());
+        };
+        UpdateDispatcher dispatcher = new UpdateDispatcher(16);
+
+        dispatcher.dispatch(createUpdate(1L, 1), handler);
+        dispatcher.submit(1L, () -> handled.add(0));
+        dispatcher.dispatch(createUpdate(1L, 2), handler);
+        dispatcher.shutdown();
+
+        assertThat(handled.toString()).isEqualTo("[1, 0, 2]");
+    }
+
+    private static Update createUpdate(long chatId, int updateId) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        Message message = new Message();
+        message.setChat(chat);
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.rapidcoder.forward.bot.handler.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.rapidcoder.forward.bot.Bot;
+import ru.rapidcoder.forward.bot.WebhookServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class WebhookServerTest {
+
+    private static final String SECRET = "secret_token-1";
+    private static final String UPDATE_JSON = "{\"update_id\":42,\"message\":{\"message_id\":7,\"date\":1700000000,\"text\":\"/start\",\"chat\":{\"id\":100,\"type\":\"private\"},\"from\":{\"id\":100,\"is_bot\":false,\"first_name\":\"Test\"}},\"unknown_field\":true}";
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Bot bot;
+    private WebhookServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        bot = mock(Bot.class);
+        server = new WebhookServer(bot, 0, SECRET);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void testUpdatePassedToBot() throws Exception {
+        HttpResponse<String> response = post(SECRET, UPDATE_JSON);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        ArgumentCaptor<List<Update>> captor = ArgumentCaptor.captor();
+        verify(bot).onUpdatesReceived(captor.capture());
+        assertThat(captor.getValue()
+                .get(0)
+                .getUpdateId()).isEqualTo(42);
+        assertThat(captor.getValue()
+                .get(0)
+                .getMessage()
+                .getText()).isEqualTo("/start");
+    }
+
+    @Test
+    void testInvalidSecretRejected() throws Exception {
+        assertThat(post("wrong", UPDATE_JSON).statusCode()).isEqualTo(401);
+        assertThat(post(null, UPDATE_JSON).statusCode()).isEqualTo(401);
+
+        verify(bot, never()).onUpdatesReceived(any());
+    }
+
+    @Test
+    void testInvalidBodyRejected() throws Exception {
+        assertThat(post(SECRET, "{not json").statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    void testOnlyPostAllowed() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri())
+                .GET()
+                .build();
+
+        assertThat(client.send(request, HttpResponse.BodyHandlers.ofString())
+                .statusCode()).isEqualTo(405);
+    }
+
+    @Test
+    void testUpdatesDispatchedInOrder() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            post(SECRET, UPDATE_JSON.replace("\"update_id\":42", "\"update_id\":" + i));
+        }
+
+        ArgumentCaptor<List<Update>> captor = ArgumentCaptor.captor();
+        verify(bot, times(5)).onUpdatesReceived(captor.capture());
+        assertThat(captor.getAllValues()
+                .stream()
+                .map(updates -> updates.get(0)
+                        .getUpdateId())
+                .toList()
+                .toString()).isEqualTo("[1, 2, 3, 4, 5]");
+    }
+
+    @Test
+    void testEmptySecretNotAllowed() {
+        assertThrows(IllegalArgumentException.class, () -> new WebhookServer(bot, 0, " "));
+    }
+
+    private HttpResponse<String> post(String secret, String body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri())
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            builder.header(WebhookServer.SECRET_TOKEN_HEADER, secret);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri() {
+        return URI.create("http://localhost:" + server.getPort() + WebhookServer.PATH);
+    }
+}